@@ -3,7 +3,13 @@ package software.coley.dextranslator.command;
 import com.android.tools.r8.graph.ProgramMethod;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.cache.TranslationCache;
+import software.coley.dextranslator.progress.ProgressListener;
+import software.coley.dextranslator.progress.ProgressPhase;
+import software.coley.dextranslator.progress.ProgressTracker;
 import software.coley.dextranslator.task.Converter;
+import software.coley.dextranslator.util.PhaseTimings;
 import software.coley.dextranslator.ir.ConversionResult;
 
 import java.io.File;
@@ -16,7 +22,21 @@ import java.util.concurrent.Callable;
  * @author Matt Coley
  */
 public abstract class AbstractConversionCommand implements Callable<Void> {
+	private ConsoleProgress progress;
+
+	/**
+	 * @return Listener to show conversion progress with, or {@code null} when {@link #isProgress()} is not set.
+	 */
+	protected ProgressListener createProgressListener() {
+		if (!isProgress())
+			return null;
+		progress = new ConsoleProgress();
+		return progress;
+	}
+
 	protected void handle(ConversionResult result, Throwable error) {
+		if (progress != null)
+			progress.complete();
 		if (result != null) {
 			List<ConversionResult.InvalidMethod> invalidMethods = result.getInvalidMethods();
 			if (!invalidMethods.isEmpty()) {
@@ -30,6 +50,11 @@ public abstract class AbstractConversionCommand implements Callable<Void> {
 			} else {
 				System.out.println("Conversion process finished successfully");
 			}
+			PhaseTimings timings = result.getTimings();
+			if (timings != null) {
+				System.out.println("Timings:");
+				System.out.print(timings.toPrettyString());
+			}
 		} else if (error != null) {
 			System.out.println("An error occurred in the conversion process:");
 			error.printStackTrace();
@@ -79,4 +104,95 @@ public abstract class AbstractConversionCommand implements Callable<Void> {
 	 * 		Value of {@link Options#setReplaceInvalidMethodBodies(boolean)}.
 	 */
 	public abstract void setReplaceInvalid(boolean replaceInvalid);
+
+	/**
+	 * @return Directory for {@link Options#setTranslationCache(TranslationCache)}, or {@code null} for no caching.
+	 */
+	public abstract File getCacheDirectory();
+
+	/**
+	 * @param cacheDirectory
+	 * 		Directory for {@link Options#setTranslationCache(TranslationCache)}, or {@code null} for no caching.
+	 */
+	public abstract void setCacheDirectory(File cacheDirectory);
+
+	/**
+	 * @return Directory for {@link Options#setJdkClassIndex(JdkClassIndex)}, or {@code null} for no index.
+	 */
+	public abstract File getJdkIndexDirectory();
+
+	/**
+	 * @param jdkIndexDirectory
+	 * 		Directory for {@link Options#setJdkClassIndex(JdkClassIndex)}, or {@code null} for no index.
+	 */
+	public abstract void setJdkIndexDirectory(File jdkIndexDirectory);
+
+	/**
+	 * @return Value of {@link Options#setCollectTimings(boolean)}.
+	 */
+	public abstract boolean isTimings();
+
+	/**
+	 * @param timings
+	 * 		Value of {@link Options#setCollectTimings(boolean)}.
+	 */
+	public abstract void setTimings(boolean timings);
+
+	/**
+	 * @return Flag to show a progress line while converting.
+	 */
+	public abstract boolean isProgress();
+
+	/**
+	 * @param progress
+	 * 		Flag to show a progress line while converting.
+	 */
+	public abstract void setProgress(boolean progress);
+
+	/**
+	 * Progress tracker that re-draws a single console line as progress is made.
+	 * Updates are limited to a few times a second, as the conversion reports progress for every method.
+	 */
+	private static class ConsoleProgress extends ProgressTracker {
+		private static final long REDRAW_INTERVAL_NANOS = 250_000_000L;
+		private long lastDraw;
+
+		@Override
+		public void onPhase(ProgressPhase phase) {
+			super.onPhase(phase);
+			draw(true);
+		}
+
+		@Override
+		public void onClassesRead(int classCount) {
+			super.onClassesRead(classCount);
+			draw(true);
+		}
+
+		@Override
+		public void onMethodLowered(int lowered, int total) {
+			super.onMethodLowered(lowered, total);
+			draw(lowered == total);
+		}
+
+		@Override
+		public void onOutputWritten(int classCount, long byteCount) {
+			super.onOutputWritten(classCount, byteCount);
+			draw(false);
+		}
+
+		private synchronized void draw(boolean force) {
+			long now = System.nanoTime();
+			if (!force && now - lastDraw < REDRAW_INTERVAL_NANOS)
+				return;
+			lastDraw = now;
+			System.out.print("\r" + this + "    ");
+			System.out.flush();
+		}
+
+		private synchronized void complete() {
+			draw(true);
+			System.out.println();
+		}
+	}
 }
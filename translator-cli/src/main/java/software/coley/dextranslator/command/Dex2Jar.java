@@ -5,21 +5,24 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.cache.TranslationCache;
 import software.coley.dextranslator.task.Converter;
 
 import java.io.File;
+import java.util.Locale;
 
 /**
- * Command to convert one or more DEX files to a JAR file.
+ * Command to convert one or more DEX files or APKs to a JAR file.
  *
  * @author Matt Coley
  */
 @SuppressWarnings("unused")
 @Command(name = "d2j",
-		description = "Convert one or more DEX files to a JAR file")
+		description = "Convert one or more DEX files or APKs to a JAR file")
 public class Dex2Jar extends AbstractConversionCommand {
 	@Parameters(index = "0",
-			description = "Path to one or more DEX files.",
+			description = "Path to one or more DEX files or APKs.",
 			arity = "1..*")
 	private File[] inputFiles;
 
@@ -39,21 +42,47 @@ public class Dex2Jar extends AbstractConversionCommand {
 					"Invalid methods will be replaced with no-op behavior.")
 	private boolean replaceInvalid;
 
+	@Option(names = {"--cache-dir"},
+			description = "Directory to cache conversion outputs in. " +
+					"Classes unchanged since a prior run with the same options are copied from the cache.")
+	private File cacheDirectory;
+
+	@Option(names = {"--jdk-index-dir"},
+			description = "Directory to keep an index of the JDK classes used by conversions in. " +
+					"Later runs read JDK classes from the index, rather than opening the JDK on startup.")
+	private File jdkIndexDirectory;
+
+	@Option(names = {"--timings"},
+			description = "Flag to print how long each phase of the conversion process took.")
+	private boolean timings;
+
+	@Option(names = {"--progress"},
+			description = "Flag to show a progress line while the conversion runs.")
+	private boolean progress;
+
 	@Override
 	public Void call() throws Exception {
 		Inputs inputs = new Inputs();
-		for (File inputFile : inputFiles)
-			inputs.addDex(inputFile.toPath());
+		for (File inputFile : inputFiles) {
+			if (inputFile.getName().toLowerCase(Locale.ROOT).endsWith(".apk"))
+				inputs.addApkArchive(inputFile.toPath());
+			else
+				inputs.addDex(inputFile.toPath());
+		}
 
 		Options options = new Options()
 				.enableLoadStoreOptimization()
 				.setReplaceInvalidMethodBodies(replaceInvalid)
 				.setLenient(lenient)
+				.setCollectTimings(timings)
+				.setTranslationCache(cacheDirectory == null ? null : new TranslationCache(cacheDirectory.toPath()))
+				.setJdkClassIndex(jdkIndexDirectory == null ? null : new JdkClassIndex(jdkIndexDirectory.toPath()))
 				.setJvmArchiveOutput(outputFile.toPath(), true);
 
 		new Converter()
 				.setInputs(inputs)
 				.setOptions(options)
+				.setProgressListener(createProgressListener())
 				.run()
 				.whenComplete(this::handle);
 		return null;
@@ -99,4 +128,44 @@ public class Dex2Jar extends AbstractConversionCommand {
 	public void setReplaceInvalid(boolean replaceInvalid) {
 		this.replaceInvalid = replaceInvalid;
 	}
+
+	@Override
+	public File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	@Override
+	public void setCacheDirectory(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	@Override
+	public File getJdkIndexDirectory() {
+		return jdkIndexDirectory;
+	}
+
+	@Override
+	public void setJdkIndexDirectory(File jdkIndexDirectory) {
+		this.jdkIndexDirectory = jdkIndexDirectory;
+	}
+
+	@Override
+	public boolean isTimings() {
+		return timings;
+	}
+
+	@Override
+	public void setTimings(boolean timings) {
+		this.timings = timings;
+	}
+
+	@Override
+	public boolean isProgress() {
+		return progress;
+	}
+
+	@Override
+	public void setProgress(boolean progress) {
+		this.progress = progress;
+	}
 }
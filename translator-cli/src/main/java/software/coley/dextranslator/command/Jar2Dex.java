@@ -5,6 +5,8 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.cache.TranslationCache;
 import software.coley.dextranslator.task.Converter;
 
 import java.io.File;
@@ -39,8 +41,26 @@ public class Jar2Dex extends AbstractConversionCommand {
 					"Invalid methods will be replaced with no-op behavior.")
 	private boolean replaceInvalid;
 
+	@Option(names = {"--cache-dir"},
+			description = "Directory to cache conversion outputs in. " +
+					"Classes unchanged since a prior run with the same options are copied from the cache.")
+	private File cacheDirectory;
+
+	@Option(names = {"--jdk-index-dir"},
+			description = "Directory to keep an index of the JDK classes used by conversions in. " +
+					"Later runs read JDK classes from the index, rather than opening the JDK on startup.")
+	private File jdkIndexDirectory;
+
+	@Option(names = {"--timings"},
+			description = "Flag to print how long each phase of the conversion process took.")
+	private boolean timings;
+
+	@Option(names = {"--progress"},
+			description = "Flag to show a progress line while the conversion runs.")
+	private boolean progress;
+
 	@Override
-	public Void call() {
+	public Void call() throws Exception {
 		Inputs inputs = new Inputs();
 		for (File inputFile : inputFiles)
 			inputs.addJarArchive(inputFile.toPath());
@@ -48,11 +68,15 @@ public class Jar2Dex extends AbstractConversionCommand {
 		Options options = new Options()
 				.setReplaceInvalidMethodBodies(replaceInvalid)
 				.setLenient(lenient)
+				.setCollectTimings(timings)
+				.setTranslationCache(cacheDirectory == null ? null : new TranslationCache(cacheDirectory.toPath()))
+				.setJdkClassIndex(jdkIndexDirectory == null ? null : new JdkClassIndex(jdkIndexDirectory.toPath()))
 				.setDexFileOutput(outputFile.toPath());
 
 		new Converter()
 				.setInputs(inputs)
 				.setOptions(options)
+				.setProgressListener(createProgressListener())
 				.run()
 				.whenComplete(this::handle);
 		return null;
@@ -97,4 +121,44 @@ public class Jar2Dex extends AbstractConversionCommand {
 	public void setReplaceInvalid(boolean replaceInvalid) {
 		this.replaceInvalid = replaceInvalid;
 	}
+
+	@Override
+	public File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	@Override
+	public void setCacheDirectory(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	@Override
+	public File getJdkIndexDirectory() {
+		return jdkIndexDirectory;
+	}
+
+	@Override
+	public void setJdkIndexDirectory(File jdkIndexDirectory) {
+		this.jdkIndexDirectory = jdkIndexDirectory;
+	}
+
+	@Override
+	public boolean isTimings() {
+		return timings;
+	}
+
+	@Override
+	public void setTimings(boolean timings) {
+		this.timings = timings;
+	}
+
+	@Override
+	public boolean isProgress() {
+		return progress;
+	}
+
+	@Override
+	public void setProgress(boolean progress) {
+		this.progress = progress;
+	}
 }
@@ -1,16 +1,22 @@
 package software.coley.dextranslator;
 
+import com.android.tools.r8.ProgramResource;
 import com.android.tools.r8.ProgramResourceProvider;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.origin.PathOrigin;
 import com.android.tools.r8.utils.AarArchiveResourceProvider;
 import com.android.tools.r8.utils.AndroidApp;
-import com.android.tools.r8.utils.ArchiveResourceProvider;
+import software.coley.dextranslator.util.ApkArchiveResourceProvider;
+import software.coley.dextranslator.util.JarArchiveResourceProvider;
+import software.coley.dextranslator.util.LazyArchiveClassFileProvider;
+import software.coley.dextranslator.util.MappedFileResourceProvider;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -40,6 +46,26 @@ public class Inputs {
 	}
 
 	/**
+	 * Only the {@code classes.dex} through {@code classesN.dex} entries of the APK are added.
+	 * Resources and other entries are skipped.
+	 *
+	 * @param archivePath
+	 * 		Path to an APK archive file to add as an input.
+	 *
+	 * @return Self
+	 */
+	@Nonnull
+	public Inputs addApkArchive(@Nonnull Path archivePath) {
+		return addResource(new Input(
+				new PathOrigin(archivePath),
+				(origin, builder) -> builder.addProgramResourceProvider(new ApkArchiveResourceProvider(archivePath)))
+		);
+	}
+
+	/**
+	 * The classes of the JAR are added as program classes, and its other entries as data resources.
+	 * When loaded, the classes of all added JARs are inflated in parallel, see {@link Options#setMaxOpenArchives(int)}.
+	 *
 	 * @param archivePath
 	 * 		Path to a JAR archive file to add as an input.
 	 *
@@ -49,7 +75,76 @@ public class Inputs {
 	public Inputs addJarArchive(@Nonnull Path archivePath) {
 		return addResource(new Input(
 				new PathOrigin(archivePath),
-				(origin, builder) -> builder.addProgramResourceProvider(ArchiveResourceProvider.fromArchive(archivePath, true)))
+				(origin, builder) -> builder.addProgramResourceProvider(new JarArchiveResourceProvider(archivePath)))
+		);
+	}
+
+	/**
+	 * Adds a JAR of classes the program depends on, such as a platform or runtime archive.
+	 * Its classes are never converted, only read when a program class references them.
+	 * The archive is not opened until the application is loaded, see {@link LazyArchiveClassFileProvider} for details.
+	 *
+	 * @param archivePath
+	 * 		Path to a JAR archive file to add as a library input.
+	 *
+	 * @return Self
+	 *
+	 * @throws IOException
+	 * 		When the path is not a readable file.
+	 */
+	@Nonnull
+	public Inputs addLibraryArchive(@Nonnull Path archivePath) throws IOException {
+		checkReadableFile(archivePath);
+		return addResource(new Input(
+				new PathOrigin(archivePath),
+				(origin, builder) -> builder.addLibraryResourceProvider(new LazyArchiveClassFileProvider(archivePath)))
+		);
+	}
+
+	/**
+	 * Adds an Android platform {@code android.jar} as a library, so that desugaring and
+	 * {@link Options#setApiLevel(com.android.tools.r8.utils.AndroidApiLevel) API level} handling can see the real
+	 * platform classes. The archive is opened once per process and {@link LazyArchiveClassFileProvider#shared(Path)
+	 * shared} by all applications loaded with it, with classes only read when first referenced.
+	 *
+	 * @param androidJarPath
+	 * 		Path to an Android platform {@code android.jar}.
+	 *
+	 * @return Self
+	 *
+	 * @throws IOException
+	 * 		When the path is not a readable file.
+	 */
+	@Nonnull
+	public Inputs addAndroidLibrary(@Nonnull Path androidJarPath) throws IOException {
+		checkReadableFile(androidJarPath);
+		LazyArchiveClassFileProvider provider = LazyArchiveClassFileProvider.shared(androidJarPath);
+		return addResource(new Input(
+				new PathOrigin(androidJarPath),
+				(origin, builder) -> builder.addLibraryResourceProvider(provider))
+		);
+	}
+
+	/**
+	 * Adds a JAR of classes the program depends on, which are available alongside the program at runtime,
+	 * such as other libraries bundled with it. Its classes are never converted, only read when a program class
+	 * references them. The archive is not opened until the application is loaded,
+	 * see {@link LazyArchiveClassFileProvider} for details.
+	 *
+	 * @param archivePath
+	 * 		Path to a JAR archive file to add as a classpath input.
+	 *
+	 * @return Self
+	 *
+	 * @throws IOException
+	 * 		When the path is not a readable file.
+	 */
+	@Nonnull
+	public Inputs addClasspathArchive(@Nonnull Path archivePath) throws IOException {
+		checkReadableFile(archivePath);
+		return addResource(new Input(
+				new PathOrigin(archivePath),
+				(origin, builder) -> builder.addClasspathResourceProvider(new LazyArchiveClassFileProvider(archivePath)))
 		);
 	}
 
@@ -67,20 +162,24 @@ public class Inputs {
 	}
 
 	/**
+	 * The file is not read until the application is loaded, and is then mapped into memory rather than
+	 * copied onto the heap up front. See {@link MappedFileResourceProvider} for details.
+	 *
 	 * @param classFilePath
 	 * 		Path to class file to add as an input.
 	 *
 	 * @return Self
 	 *
 	 * @throws IOException
-	 * 		When the path cannot be read from.
+	 * 		When the path is not a readable file.
 	 */
 	@Nonnull
 	public Inputs addJvmClass(@Nonnull Path classFilePath) throws IOException {
-		byte[] classBytes = Files.readAllBytes(classFilePath);
+		checkReadableFile(classFilePath);
+		MappedFileResourceProvider provider = new MappedFileResourceProvider(classFilePath, ProgramResource.Kind.CF);
 		return addResource(new Input(
 				new PathOrigin(classFilePath),
-				(origin, builder) -> builder.addClassProgramData(classBytes, origin))
+				(origin, builder) -> builder.addProgramResourceProvider(provider))
 		);
 	}
 
@@ -107,20 +206,24 @@ public class Inputs {
 	}
 
 	/**
+	 * The file is not read until the application is loaded, and is then mapped into memory rather than
+	 * copied onto the heap up front. See {@link MappedFileResourceProvider} for details.
+	 *
 	 * @param dexFilePath
 	 * 		Path to dex file to add as an input.
 	 *
 	 * @return Self
 	 *
 	 * @throws IOException
-	 * 		When the path cannot be read from.
+	 * 		When the path is not a readable file.
 	 */
 	@Nonnull
 	public Inputs addDex(@Nonnull Path dexFilePath) throws IOException {
-		byte[] dexBytes = Files.readAllBytes(dexFilePath);
+		checkReadableFile(dexFilePath);
+		MappedFileResourceProvider provider = new MappedFileResourceProvider(dexFilePath, ProgramResource.Kind.DEX);
 		return addResource(new Input(
 				new PathOrigin(dexFilePath),
-				(origin, builder) -> builder.addDexProgramData(dexBytes, origin))
+				(origin, builder) -> builder.addProgramResourceProvider(provider))
 		);
 	}
 
@@ -170,6 +273,20 @@ public class Inputs {
 		return inputs;
 	}
 
+	/**
+	 * @param path
+	 * 		Path to check.
+	 *
+	 * @throws IOException
+	 * 		When the path is not a readable file.
+	 */
+	private static void checkReadableFile(@Nonnull Path path) throws IOException {
+		if (!Files.isRegularFile(path))
+			throw new NoSuchFileException(path.toString());
+		if (!Files.isReadable(path))
+			throw new AccessDeniedException(path.toString());
+	}
+
 	/**
 	 * Input wrapper, which will lazily read data from inputs when {@link #populate(AndroidApp.Builder)} is called.
 	 */
@@ -6,11 +6,24 @@ import com.android.tools.r8.graph.Code;
 import com.android.tools.r8.utils.AndroidApiLevel;
 import com.android.tools.r8.utils.ExceptionDiagnostic;
 import com.android.tools.r8.utils.InternalOptions;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.cache.TranslationCache;
+import software.coley.dextranslator.ir.ClassWriteMode;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.ir.LoadStoreMode;
+import software.coley.dextranslator.ir.LoadStoreSelector;
+import software.coley.dextranslator.ir.LoweringSchedule;
+import software.coley.dextranslator.ir.TrivialMethodLowering;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.model.DuplicateClassPolicy;
+import software.coley.dextranslator.progress.ProgressListener;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Set;
 
 /**
@@ -19,13 +32,34 @@ import java.util.Set;
  * @author Matt Coley
  */
 public class Options {
-	private final InternalOptions options = new InternalOptions();
+	/**
+	 * Default maximum number of archives to have open at once while loading.
+	 */
+	public static final int DEFAULT_MAX_OPEN_ARCHIVES = 32;
+	private final InternalOptions options;
+	private LoweringSchedule loweringSchedule = LoweringSchedule.FIFO;
+	private LoadStoreSelector loadStoreSelector;
+	private ClassWriteMode classWriteMode = ClassWriteMode.SEQUENTIAL;
 	private boolean replaceInvalidMethodBodies;
+	private int streamingClassWindow;
+	private int shardSize;
+	private int shardConcurrency = 1;
+	private TranslationCache translationCache;
+	private Duration methodTimeBudget;
+	private boolean trivialMethodFastPath = true;
+	private boolean collectTimings;
+	private int methodProfileSize;
+	private ProgressListener progressListener;
+	private int maxOpenArchives = DEFAULT_MAX_OPEN_ARCHIVES;
+	private DuplicateClassPolicy duplicateClassPolicy;
+	private JdkClassIndex jdkClassIndex;
 
 	/**
 	 * New options instance.
 	 */
 	public Options() {
+		options = new InternalOptions();
+
 		// String switch conversion allows for some optimizations to be made in the IR, but causes problems
 		// with our current handling of converting IR to dex/jvm output.
 		// Later we can look into enabling it again and properly replacing it.
@@ -42,6 +76,16 @@ public class Options {
 		options.enableIdentityLookupFailureFallback = true;
 	}
 
+	/**
+	 * Wraps existing internal options. Unlike {@link #Options()} no defaults are applied to the given options.
+	 *
+	 * @param options
+	 * 		Internal options for D8.
+	 */
+	public Options(@Nonnull InternalOptions options) {
+		this.options = options;
+	}
+
 	/**
 	 * Enables load store optimization.
 	 * <p>
@@ -80,9 +124,43 @@ public class Options {
 	 * }</pre>
 	 *
 	 * @return Self
+	 *
+	 * @see #enableSelectiveLoadStoreOptimization(LoadStoreSelector)
 	 */
 	public Options enableLoadStoreOptimization() {
 		options.enableLoadStoreOptimization = true;
+		loadStoreSelector = null;
+		return this;
+	}
+
+	/**
+	 * Enables load store optimization only for methods matched by the given selector, when targeting JVM output.
+	 * This offers the cleaner output of {@link #enableLoadStoreOptimization()} where it matters most,
+	 * without paying for it on every method.
+	 * <p>
+	 * Selected methods are lowered in a separate pass from the rest, as the optimization is toggled
+	 * for the whole conversion rather than per method.
+	 *
+	 * @param selector
+	 * 		Selector of methods to optimize.
+	 * 		See the factory methods of {@link LoadStoreSelector} for common selections.
+	 *
+	 * @return Self
+	 */
+	public Options enableSelectiveLoadStoreOptimization(@Nonnull LoadStoreSelector selector) {
+		options.enableLoadStoreOptimization = false;
+		loadStoreSelector = selector;
+		return this;
+	}
+
+	/**
+	 * Disables load store optimization, which is the default.
+	 *
+	 * @return Self
+	 */
+	public Options disableLoadStoreOptimization() {
+		options.enableLoadStoreOptimization = false;
+		loadStoreSelector = null;
 		return this;
 	}
 
@@ -102,6 +180,219 @@ public class Options {
 		return this;
 	}
 
+	/**
+	 * @param loweringSchedule
+	 * 		Order to lower Dalvik method code into JVM method code in, when targeting JVM output.
+	 * 		Defaults to {@link LoweringSchedule#FIFO}.
+	 *
+	 * @return Self
+	 */
+	public Options setLoweringSchedule(@Nonnull LoweringSchedule loweringSchedule) {
+		this.loweringSchedule = loweringSchedule;
+		return this;
+	}
+
+	/**
+	 * @param classWriteMode
+	 * 		How classes are serialized to the output when targeting JVM output.
+	 * 		Defaults to {@link ClassWriteMode#SEQUENTIAL}.
+	 *
+	 * @return Self
+	 */
+	public Options setClassWriteMode(@Nonnull ClassWriteMode classWriteMode) {
+		this.classWriteMode = classWriteMode;
+		return this;
+	}
+
+	/**
+	 * Enables streaming output when targeting JVM class files.
+	 * <p>
+	 * Normally all classes are converted before any are written to the output.
+	 * With streaming enabled, classes are converted in windows of the given size, and each window is written
+	 * to the output as soon as it is done. Peak memory usage then depends on the window size rather than the size
+	 * of the application, and consumers receive classes while the conversion is still running.
+	 *
+	 * @param streamingClassWindow
+	 * 		Number of classes to convert at a time. Zero or less to disable streaming.
+	 *
+	 * @return Self
+	 */
+	public Options setStreamingClassWindow(int streamingClassWindow) {
+		this.streamingClassWindow = Math.max(0, streamingClassWindow);
+		return this;
+	}
+
+	/**
+	 * Enables sharded conversion when targeting JVM class files.
+	 * <p>
+	 * Classes are split into shards of the given size, each converted over its own view of the application.
+	 * A shard's view holds its own copies of only the shard's classes and the classes they structurally depend on,
+	 * such as super-types, so the copies made at any time depend on the shard size and concurrency rather than the size
+	 * of the application. The rest of the application is shared with the view as context, so references to classes in
+	 * other shards resolve as they would in a whole conversion. The application model itself is left unchanged.
+	 * Shards converted concurrently are buffered until all prior shards are written, so the output is the same
+	 * as when converting the application as a whole.
+	 * <p>
+	 * When set, this takes precedence over {@link #setStreamingClassWindow(int) streaming}, which is equivalent
+	 * to sharding with a concurrency of {@code 1}.
+	 *
+	 * @param shardSize
+	 * 		Number of classes per shard. Zero or less to disable sharding.
+	 * @param shardConcurrency
+	 * 		Number of shards to convert at once. Values less than {@code 1} are treated as {@code 1}.
+	 *
+	 * @return Self
+	 */
+	public Options setShardedConversion(int shardSize, int shardConcurrency) {
+		this.shardSize = Math.max(0, shardSize);
+		this.shardConcurrency = Math.max(1, shardConcurrency);
+		return this;
+	}
+
+	/**
+	 * @param collectTimings
+	 * 		Flag to record how long each phase of loading and conversion takes.
+	 * 		Timings are available from {@link ApplicationData#getLoadTimings()}
+	 * 		and {@link ConversionResult#getTimings()}.
+	 *
+	 * @return Self
+	 */
+	public Options setCollectTimings(boolean collectTimings) {
+		this.collectTimings = collectTimings;
+		return this;
+	}
+
+	/**
+	 * Enables profiling of the time and memory spent lowering each method, when targeting JVM output.
+	 * The profile is available from {@link ConversionResult#getMethodProfile()}.
+	 * <p>
+	 * Only the lowering of Dalvik code into JVM code is profiled per method. The D8 conversion that follows
+	 * processes methods internally, and its cost is only visible as a whole through {@link #setCollectTimings(boolean)}.
+	 *
+	 * @param methodProfileSize
+	 * 		Number of slowest methods to include in the profile. Zero or less to disable profiling.
+	 *
+	 * @return Self
+	 */
+	public Options setMethodProfileSize(int methodProfileSize) {
+		this.methodProfileSize = Math.max(0, methodProfileSize);
+		return this;
+	}
+
+	/**
+	 * @param trivialMethodFastPath
+	 * 		Flag to lower trivial methods, such as getters, setters and constructors only calling {@code super()},
+	 * 		directly into JVM code when targeting JVM output. This skips building IR for them.
+	 * 		Enabled by default.
+	 *
+	 * @return Self
+	 *
+	 * @see TrivialMethodLowering
+	 */
+	public Options setTrivialMethodFastPath(boolean trivialMethodFastPath) {
+		this.trivialMethodFastPath = trivialMethodFastPath;
+		return this;
+	}
+
+	/**
+	 * Limits the wall-clock time spent lowering any single method when targeting JVM output.
+	 * <p>
+	 * A method that exceeds the budget is treated like any other method that fails conversion.
+	 * When {@link #setReplaceInvalidMethodBodies(boolean) replacing invalid methods} its code is replaced
+	 * and it is reported with a {@link java.util.concurrent.TimeoutException}. Otherwise the conversion fails.
+	 * <p>
+	 * Methods are lowered on the {@link software.coley.dextranslator.util.ThreadPools#getTimeBudgetThreadPool()
+	 * time budget pool}, and the budget of a method starts once its lowering starts. The work on a method that
+	 * exceeds its budget is interrupted, but it cannot be forcibly stopped. It is left to run out on its own thread,
+	 * and its result is discarded.
+	 *
+	 * @param methodTimeBudget
+	 * 		Maximum time to spend on a single method. May be {@code null} for no limit.
+	 *
+	 * @return Self
+	 */
+	public Options setMethodTimeBudget(@Nullable Duration methodTimeBudget) {
+		this.methodTimeBudget = methodTimeBudget == null || methodTimeBudget.isZero() || methodTimeBudget.isNegative() ?
+				null : methodTimeBudget;
+		return this;
+	}
+
+	/**
+	 * When loading, archives added with {@link Inputs#addJarArchive(Path)} are read ahead of time,
+	 * with their entries inflated across the loader's thread pool. This limits how many archives are open at once.
+	 *
+	 * @param maxOpenArchives
+	 * 		Maximum number of archives to have open at once while loading.
+	 * 		Values less than {@code 1} are treated as {@code 1}.
+	 *
+	 * @return Self
+	 */
+	public Options setMaxOpenArchives(int maxOpenArchives) {
+		this.maxOpenArchives = Math.max(1, maxOpenArchives);
+		return this;
+	}
+
+	/**
+	 * When set, program inputs are hashed when loading, and duplicates are dropped before they are parsed.
+	 * Byte-identical copies of a class or DEX file are read once, and classes defined differently by multiple
+	 * inputs are resolved by the policy. What was dropped is available from
+	 * {@link ApplicationData#getDeduplicationReport()}.
+	 * <p>
+	 * Classes in DEX files cannot be compared individually before parsing, so only whole DEX files are deduplicated.
+	 *
+	 * @param duplicateClassPolicy
+	 * 		Policy for classes defined differently by multiple inputs, or {@code null} to not check for duplicates.
+	 *
+	 * @return Self
+	 */
+	public Options setDuplicateClassPolicy(@Nullable DuplicateClassPolicy duplicateClassPolicy) {
+		this.duplicateClassPolicy = duplicateClassPolicy;
+		return this;
+	}
+
+	/**
+	 * When set, system JDK classes are supplied from the index rather than by opening the JDK on each load.
+	 * Classes looked up that are not yet in the index are added to it when a
+	 * {@link software.coley.dextranslator.task.ConverterTask} completes. When working with {@link ApplicationData}
+	 * directly, call {@link JdkClassIndex#save()} once done.
+	 *
+	 * @param jdkClassIndex
+	 * 		Persisted index of system JDK classes, or {@code null} to open the system JDK directly.
+	 *
+	 * @return Self
+	 */
+	public Options setJdkClassIndex(@Nullable JdkClassIndex jdkClassIndex) {
+		this.jdkClassIndex = jdkClassIndex;
+		return this;
+	}
+
+	/**
+	 * Progress of {@link ApplicationData} exports is reported when the listener is set on the options
+	 * given by {@link ApplicationData#setOperationOptionsProvider(java.util.function.Supplier)}.
+	 *
+	 * @param progressListener
+	 * 		Listener to report loading and conversion progress to. May be {@code null} to not report progress.
+	 *
+	 * @return Self
+	 */
+	public Options setProgressListener(@Nullable ProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * @param translationCache
+	 * 		Persistent cache of conversion outputs. Classes with content matching a prior conversion with the same
+	 * 		options are copied from the cache rather than being converted again.
+	 * 		May be {@code null} to disable caching.
+	 *
+	 * @return Self
+	 */
+	public Options setTranslationCache(@Nullable TranslationCache translationCache) {
+		this.translationCache = translationCache;
+		return this;
+	}
+
 	/**
 	 * @param level
 	 * 		API level to target for DEX outputs.
@@ -175,17 +466,23 @@ public class Options {
 		return this;
 	}
 	/**
+	 * When the output spans multiple DEX files, additional files are written next to the given path
+	 * with their file number appended. For instance {@code out.dex} is followed by {@code out2.dex}, {@code out3.dex}
+	 * and so on, mirroring the {@code classes.dex} naming scheme.
+	 *
 	 * @param path
 	 * 		Path to write the Android dex file output to.
 	 *
 	 * @return Self
+	 *
+	 * @see #getDexFilePath(Path, int)
 	 */
 	public Options setDexFileOutput(@Nonnull Path path) {
 		options.programConsumer = new DexIndexedConsumer() {
 			@Override
 			public void accept(int fileIndex, ByteDataView data, Set<String> descriptors, DiagnosticsHandler handler) {
 				try {
-					Files.write(path, data.copyByteData());
+					Files.write(getDexFilePath(path, fileIndex), data.copyByteData());
 				} catch (IOException ex) {
 					handler.error(new ExceptionDiagnostic(ex));
 				}
@@ -199,6 +496,26 @@ public class Options {
 		return this;
 	}
 
+	/**
+	 * @param path
+	 * 		Path of the first DEX file.
+	 * @param fileIndex
+	 * 		Index of the DEX file.
+	 *
+	 * @return Path to write the DEX file of the given index to.
+	 */
+	@Nonnull
+	public static Path getDexFilePath(@Nonnull Path path, int fileIndex) {
+		if (fileIndex == 0)
+			return path;
+		String name = path.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		String numbered = dot > 0 ?
+				name.substring(0, dot) + (fileIndex + 1) + name.substring(dot) :
+				name + (fileIndex + 1);
+		return path.resolveSibling(numbered);
+	}
+
 	/**
 	 * @param path
 	 * 		Root directory to write the Android dex file and additional resources to.
@@ -251,6 +568,177 @@ public class Options {
 		return replaceInvalidMethodBodies;
 	}
 
+	/**
+	 * @return Order to lower Dalvik method code into JVM method code in.
+	 *
+	 * @see #setLoweringSchedule(LoweringSchedule)
+	 */
+	@Nonnull
+	public LoweringSchedule getLoweringSchedule() {
+		return loweringSchedule;
+	}
+
+	/**
+	 * @return Number of classes to convert at a time when streaming JVM output, or zero when streaming is disabled.
+	 *
+	 * @see #setStreamingClassWindow(int)
+	 */
+	public int getStreamingClassWindow() {
+		return streamingClassWindow;
+	}
+
+	/**
+	 * @return Number of classes per shard when converting to JVM output, or zero when sharding is disabled.
+	 *
+	 * @see #setShardedConversion(int, int)
+	 */
+	public int getShardSize() {
+		return shardSize;
+	}
+
+	/**
+	 * @return Number of shards to convert at once when sharding is enabled.
+	 *
+	 * @see #setShardedConversion(int, int)
+	 */
+	public int getShardConcurrency() {
+		return shardConcurrency;
+	}
+
+	/**
+	 * @return Flag to record how long each phase of loading and conversion takes.
+	 *
+	 * @see #setCollectTimings(boolean)
+	 */
+	public boolean isCollectTimings() {
+		return collectTimings;
+	}
+
+	/**
+	 * @return How classes are serialized to the output when targeting JVM output.
+	 *
+	 * @see #setClassWriteMode(ClassWriteMode)
+	 */
+	@Nonnull
+	public ClassWriteMode getClassWriteMode() {
+		return classWriteMode;
+	}
+
+	/**
+	 * @return Number of slowest methods to include in the method profile, or zero when profiling is disabled.
+	 *
+	 * @see #setMethodProfileSize(int)
+	 */
+	public int getMethodProfileSize() {
+		return methodProfileSize;
+	}
+
+	/**
+	 * @return Flag to lower trivial methods directly into JVM code.
+	 *
+	 * @see #setTrivialMethodFastPath(boolean)
+	 */
+	public boolean isTrivialMethodFastPath() {
+		return trivialMethodFastPath;
+	}
+
+	/**
+	 * @return Maximum time to spend lowering a single method, or {@code null} for no limit.
+	 *
+	 * @see #setMethodTimeBudget(Duration)
+	 */
+	@Nullable
+	public Duration getMethodTimeBudget() {
+		return methodTimeBudget;
+	}
+
+	/**
+	 * @return Which methods receive load store optimization.
+	 *
+	 * @see #enableLoadStoreOptimization()
+	 * @see #enableSelectiveLoadStoreOptimization(LoadStoreSelector)
+	 */
+	@Nonnull
+	public LoadStoreMode getLoadStoreMode() {
+		if (loadStoreSelector != null)
+			return LoadStoreMode.SELECTIVE;
+		return options.enableLoadStoreOptimization ? LoadStoreMode.ALL : LoadStoreMode.OFF;
+	}
+
+	/**
+	 * @return Selector of methods to optimize when in {@link LoadStoreMode#SELECTIVE}, otherwise {@code null}.
+	 */
+	@Nullable
+	public LoadStoreSelector getLoadStoreSelector() {
+		return loadStoreSelector;
+	}
+
+	/**
+	 * @return Maximum number of archives to have open at once while loading.
+	 *
+	 * @see #setMaxOpenArchives(int)
+	 */
+	public int getMaxOpenArchives() {
+		return maxOpenArchives;
+	}
+
+	/**
+	 * @return Policy for classes defined differently by multiple inputs, or {@code null} when not checking for duplicates.
+	 *
+	 * @see #setDuplicateClassPolicy(DuplicateClassPolicy)
+	 */
+	@Nullable
+	public DuplicateClassPolicy getDuplicateClassPolicy() {
+		return duplicateClassPolicy;
+	}
+
+	/**
+	 * @return Persisted index of system JDK classes, or {@code null} when the system JDK is opened directly.
+	 *
+	 * @see #setJdkClassIndex(JdkClassIndex)
+	 */
+	@Nullable
+	public JdkClassIndex getJdkClassIndex() {
+		return jdkClassIndex;
+	}
+
+	/**
+	 * @return Listener to report loading and conversion progress to, or {@code null} when not reporting progress.
+	 *
+	 * @see #setProgressListener(ProgressListener)
+	 */
+	@Nullable
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	/**
+	 * @return Persistent cache of conversion outputs, or {@code null} when caching is disabled.
+	 *
+	 * @see #setTranslationCache(TranslationCache)
+	 */
+	@Nullable
+	public TranslationCache getTranslationCache() {
+		return translationCache;
+	}
+
+	/**
+	 * @return Summary of the settings that affect conversion output.
+	 * Converting the same input with options of equal fingerprints yields the same output.
+	 */
+	@Nonnull
+	public String getOutputFingerprint() {
+		return (isJvmOutput() ? "jvm" : "dex") +
+				";api=" + options.getMinApiLevel().getLevel() +
+				";desugar=" + options.desugarState +
+				";ignoreMissing=" + options.ignoreMissingClasses +
+				";noSigValidation=" + options.disableGenericSignatureValidation +
+				";loadStore=" + getLoadStoreMode() + (loadStoreSelector == null ? "" : ":" + loadStoreSelector) +
+				";stringSwitch=" + options.enableStringSwitchConversion +
+				";replaceInvalid=" + replaceInvalidMethodBodies +
+				";trivialFastPath=" + trivialMethodFastPath;
+	}
+
 	/**
 	 * @return Minimum API level to target for DEX file outputs.
 	 */
@@ -266,4 +754,29 @@ public class Options {
 	public InternalOptions getInternalOptions() {
 		return options;
 	}
+
+	/**
+	 * Creates new internal options with the settings of this wrapper applied. The new options share the item factory
+	 * and reporter of {@link #getInternalOptions()}, so they can operate over the same application model.
+	 * This allows an operation to use different settings than the rest of a conversion without changing them for it.
+	 *
+	 * @param loadStore
+	 * 		Flag to enable load store optimization in the new options.
+	 *
+	 * @return New internal options for D8.
+	 */
+	@Nonnull
+	public InternalOptions createInternalOptions(boolean loadStore) {
+		InternalOptions copy = new InternalOptions(options.dexItemFactory(), options.reporter);
+		copy.tool = options.tool;
+		copy.programConsumer = options.programConsumer;
+		copy.setMinApiLevel(options.getMinApiLevel());
+		copy.desugarState = options.desugarState;
+		copy.ignoreMissingClasses = options.ignoreMissingClasses;
+		copy.disableGenericSignatureValidation = options.disableGenericSignatureValidation;
+		copy.enableStringSwitchConversion = options.enableStringSwitchConversion;
+		copy.enableIdentityLookupFailureFallback = options.enableIdentityLookupFailureFallback;
+		copy.enableLoadStoreOptimization = loadStore;
+		return copy;
+	}
 }
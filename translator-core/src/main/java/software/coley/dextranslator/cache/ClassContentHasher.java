@@ -0,0 +1,565 @@
+package software.coley.dextranslator.cache;
+
+import com.android.tools.r8.cf.code.CfInstruction;
+import com.android.tools.r8.cf.code.CfLabel;
+import com.android.tools.r8.graph.CfCode;
+import com.android.tools.r8.graph.Code;
+import com.android.tools.r8.graph.DexAnnotationSet;
+import com.android.tools.r8.graph.DexCallSite;
+import com.android.tools.r8.graph.DexCode;
+import com.android.tools.r8.graph.DexEncodedAnnotation;
+import com.android.tools.r8.graph.DexEncodedField;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.graph.DexProto;
+import com.android.tools.r8.graph.DexString;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.graph.DexTypeList;
+import com.android.tools.r8.graph.NestMemberClassAttribute;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Computes content hashes of {@link DexProgramClass} instances.
+ * <p>
+ * Two classes with the same hash have the same declarations, code, and attributes,
+ * and thus produce the same output when converted with the same options.
+ * Hashes are remembered per class instance for the lifetime of the hasher, so repeated lookups for the same instance
+ * are cheap. Classes can be edited in place, which a remembered hash would not reflect, so a hasher should only be
+ * used for a single pass over an application.
+ *
+ * @author Matt Coley
+ */
+public class ClassContentHasher {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private final Map<DexProgramClass, String> hashes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+	/**
+	 * @param programClass
+	 * 		Class to hash.
+	 *
+	 * @return Hex string of the content hash of the class,
+	 * or {@code null} when the class has content that cannot be hashed, see {@link #computeHash(DexProgramClass)}.
+	 */
+	@Nullable
+	public String hash(@Nonnull DexProgramClass programClass) {
+		return hashes.computeIfAbsent(programClass, ClassContentHasher::computeHash);
+	}
+
+	/**
+	 * The output of a class depends on more than its own content. Lowering resolves members against the supertypes
+	 * of the class, and private access within a nest depends on the other members of the nest.
+	 * So, this hash also covers those classes, where they are program classes.
+	 *
+	 * @param programClass
+	 * 		Class to hash.
+	 * @param programClasses
+	 * 		Lookup of the program classes the class is converted alongside.
+	 * 		Yields {@code null} for types that are not program classes.
+	 *
+	 * @return Hex string of the content hash of the class, its program supertypes and interfaces,
+	 * and the other program classes of its nest. Or {@code null} when any of them cannot be hashed.
+	 */
+	@Nullable
+	public String hashInContext(@Nonnull DexProgramClass programClass,
+								@Nonnull Function<DexType, DexProgramClass> programClasses) {
+		// Collect the related classes, in a stable order so that the hash does not depend on traversal order.
+		SortedMap<String, DexProgramClass> related = new TreeMap<>();
+		Deque<DexType> hierarchy = new ArrayDeque<>();
+		addSupertypes(programClass, hierarchy);
+		while (!hierarchy.isEmpty()) {
+			DexProgramClass supertype = programClasses.apply(hierarchy.poll());
+			if (supertype != null && related.putIfAbsent(supertype.getType().toDescriptorString(), supertype) == null)
+				addSupertypes(supertype, hierarchy);
+		}
+		DexType nestHost = programClass.isInANest() ? programClass.getNestHost() : null;
+		DexProgramClass nestHostClass = nestHost == null ? null : programClasses.apply(nestHost);
+		if (nestHostClass != null) {
+			related.put(nestHostClass.getType().toDescriptorString(), nestHostClass);
+			for (NestMemberClassAttribute member : nestHostClass.getNestMembersClassAttributes()) {
+				DexProgramClass memberClass = programClasses.apply(member.getNestMember());
+				if (memberClass != null)
+					related.put(memberClass.getType().toDescriptorString(), memberClass);
+			}
+		}
+		related.remove(programClass.getType().toDescriptorString());
+
+		String hash = hash(programClass);
+		if (hash == null)
+			return null;
+		if (related.isEmpty())
+			return hash;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeHashPart(out, hash);
+		for (Map.Entry<String, DexProgramClass> entry : related.entrySet()) {
+			String relatedHash = hash(entry.getValue());
+			if (relatedHash == null)
+				return null;
+			writeHashPart(out, entry.getKey());
+			writeHashPart(out, relatedHash);
+		}
+		return hashBytes(out.toByteArray());
+	}
+
+	private static void addSupertypes(@Nonnull DexProgramClass programClass, @Nonnull Deque<DexType> hierarchy) {
+		if (programClass.superType != null)
+			hierarchy.add(programClass.superType);
+		for (DexType itf : programClass.interfaces)
+			hierarchy.add(itf);
+	}
+
+	private static void writeHashPart(@Nonnull ByteArrayOutputStream out, @Nonnull String part) {
+		byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+		out.write(bytes, 0, bytes.length);
+		out.write(0);
+	}
+
+	/**
+	 * Hashes an explicit encoding of the class content. Types, members, and strings are encoded by their descriptors
+	 * and values, never by identity, so the hash is the same across separate loads of the same input.
+	 * Content that no encoding is defined for, such as items that only exist within R8 optimizations,
+	 * makes the class unhashable. Such classes must be converted every time rather than cached.
+	 *
+	 * @param programClass
+	 * 		Class to hash.
+	 *
+	 * @return Hex string of the content hash of the class,
+	 * or {@code null} when the class has content that cannot be hashed.
+	 */
+	@Nullable
+	public static String computeHash(@Nonnull DexProgramClass programClass) {
+		MessageDigest digest = newDigest();
+		try {
+			new ContentEncoder(digest).writeClass(programClass);
+		} catch (UnsupportedContentException ex) {
+			return null;
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param data
+	 * 		Some bytes.
+	 *
+	 * @return Hex string of the SHA-256 hash of the bytes.
+	 */
+	@Nonnull
+	public static String hashBytes(@Nonnull byte[] data) {
+		return toHex(newDigest().digest(data));
+	}
+
+	/**
+	 * @param stream
+	 * 		Stream of some bytes. Not closed by this method.
+	 *
+	 * @return Hex string of the SHA-256 hash of the remaining bytes in the stream.
+	 *
+	 * @throws IOException
+	 * 		When the stream cannot be read from.
+	 */
+	@Nonnull
+	public static String hashStream(@Nonnull InputStream stream) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[16384];
+		int read;
+		while ((read = stream.read(buffer)) >= 0)
+			digest.update(buffer, 0, read);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param bytes
+	 * 		Some bytes.
+	 *
+	 * @return Hex string representation.
+	 */
+	@Nonnull
+	public static String toHex(@Nonnull byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int b = bytes[i] & 0xFF;
+			chars[i * 2] = HEX[b >>> 4];
+			chars[i * 2 + 1] = HEX[b & 0xF];
+		}
+		return new String(chars);
+	}
+
+	@Nonnull
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Thrown when a class has content that {@link ContentEncoder} has no encoding for.
+	 */
+	private static class UnsupportedContentException extends Exception {
+		private UnsupportedContentException(@Nonnull String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	/**
+	 * Writes the content of a class to a digest in a canonical binary form.
+	 * Each value is prefixed with a tag of its kind, so adjacent values cannot blend together into the same bytes.
+	 * <ul>
+	 *     <li>References to types, members, and strings are written as their descriptors and content.</li>
+	 *     <li>Value-like R8 structures, such as instructions, annotation values, and debug events,
+	 *     are written field by field. Only structures listed in {@link #STRUCTURAL_PREFIXES} are walked.</li>
+	 *     <li>Labels of JVM code are written as their position in the code.</li>
+	 *     <li>Anything else fails the encoding, rather than falling back to some identity based form.</li>
+	 * </ul>
+	 */
+	private static class ContentEncoder {
+		private static final String[] STRUCTURAL_PREFIXES = {
+				"com.android.tools.r8.dex.code.",
+				"com.android.tools.r8.cf.code.",
+				"com.android.tools.r8.graph.CfCode$",
+				"com.android.tools.r8.graph.DexCode$",
+				"com.android.tools.r8.graph.DexAnnotation",
+				"com.android.tools.r8.graph.DexDebugEvent",
+				"com.android.tools.r8.graph.DexDebugInfo",
+				"com.android.tools.r8.graph.DexMethodHandle",
+				"com.android.tools.r8.graph.DexValue",
+				"com.android.tools.r8.graph.DebugLocalInfo",
+				"com.android.tools.r8.graph.EnclosingMethodAttribute",
+				"com.android.tools.r8.graph.GenericSignature",
+				"com.android.tools.r8.graph.InnerClassAttribute",
+				"com.android.tools.r8.graph.NestHostClassAttribute",
+				"com.android.tools.r8.graph.NestMemberClassAttribute",
+				"com.android.tools.r8.graph.ParameterAnnotationsList",
+				"com.android.tools.r8.graph.PermittedSubclassAttribute",
+				"com.android.tools.r8.graph.RecordComponentInfo",
+				"com.android.tools.r8.ir.code.Position"
+		};
+		// Base classes of R8 items, which only hold indices and cached hashes assigned at runtime.
+		private static final Set<String> EXCLUDED_BASES = Set.of(
+				"com.android.tools.r8.graph.DexItem",
+				"com.android.tools.r8.graph.IndexedDexItem",
+				"com.android.tools.r8.graph.CachedHashValueDexItem",
+				"com.android.tools.r8.graph.DexReference"
+		);
+		private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+		private static final int MAX_DEPTH = 64;
+		private static final byte TAG_NULL = 0;
+		private static final byte TAG_BOOLEAN = 1;
+		private static final byte TAG_CHAR = 2;
+		private static final byte TAG_INT = 3;
+		private static final byte TAG_LONG = 4;
+		private static final byte TAG_FLOAT = 5;
+		private static final byte TAG_DOUBLE = 6;
+		private static final byte TAG_STRING = 7;
+		private static final byte TAG_ENUM = 8;
+		private static final byte TAG_DEX_STRING = 9;
+		private static final byte TAG_TYPE = 10;
+		private static final byte TAG_TYPE_LIST = 11;
+		private static final byte TAG_FIELD = 12;
+		private static final byte TAG_METHOD = 13;
+		private static final byte TAG_PROTO = 14;
+		private static final byte TAG_ANNOTATION_SET = 15;
+		private static final byte TAG_ENCODED_ANNOTATION = 16;
+		private static final byte TAG_CALL_SITE = 17;
+		private static final byte TAG_LABEL = 18;
+		private static final byte TAG_ARRAY = 19;
+		private static final byte TAG_LIST = 20;
+		private static final byte TAG_MAP = 21;
+		private static final byte TAG_STRUCTURE = 22;
+		private static final byte TAG_DEX_CODE = 23;
+		private static final byte TAG_CF_CODE = 24;
+		private final DataOutputStream out;
+		private Map<CfLabel, Integer> labels = Collections.emptyMap();
+		private int depth;
+
+		private ContentEncoder(@Nonnull MessageDigest digest) {
+			out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+		}
+
+		private void writeClass(@Nonnull DexProgramClass programClass) throws UnsupportedContentException {
+			writeValue(programClass.getType());
+			writeInt(programClass.getAccessFlags().getAsDexAccessFlags());
+			writeValue(programClass.superType);
+			writeValue(programClass.interfaces);
+			writeValue(programClass.sourceFile);
+			writeValue(programClass.getClassSignature());
+			writeValue(programClass.getInnerClasses());
+			writeValue(programClass.getEnclosingMethodAttribute());
+			writeValue(programClass.getNestHostClassAttribute());
+			writeValue(programClass.getNestMembersClassAttributes());
+			writeValue(programClass.getPermittedSubclassAttributes());
+			writeValue(programClass.getRecordComponents());
+			writeValue(programClass.annotations());
+			List<DexEncodedField> fields = new ArrayList<>();
+			programClass.fields().forEach(fields::add);
+			writeInt(fields.size());
+			for (DexEncodedField field : fields) {
+				writeValue(field.getReference());
+				writeInt(field.getAccessFlags().getAsDexAccessFlags());
+				writeValue(field.isStatic() ? field.getStaticValue() : null);
+				writeValue(field.getGenericSignature());
+				writeValue(field.annotations());
+			}
+			List<DexEncodedMethod> methods = new ArrayList<>();
+			programClass.methods().forEach(methods::add);
+			writeInt(methods.size());
+			for (DexEncodedMethod method : methods) {
+				writeValue(method.getReference());
+				writeInt(method.getAccessFlags().getAsDexAccessFlags());
+				writeValue(method.getGenericSignature());
+				writeValue(method.annotations());
+				writeValue(method.parameterAnnotationsList);
+				writeCode(method.getCode());
+			}
+		}
+
+		private void writeCode(@Nullable Code code) throws UnsupportedContentException {
+			if (code == null) {
+				writeTag(TAG_NULL);
+			} else if (code instanceof DexCode) {
+				DexCode dexCode = (DexCode) code;
+				writeTag(TAG_DEX_CODE);
+				writeInt(dexCode.registerSize);
+				writeInt(dexCode.incomingRegisterSize);
+				writeInt(dexCode.outgoingRegisterSize);
+				writeValue(dexCode.tries);
+				writeValue(dexCode.handlers);
+				writeValue(dexCode.instructions);
+				writeValue(dexCode.getDebugInfo());
+			} else if (code instanceof CfCode) {
+				CfCode cfCode = (CfCode) code;
+				labels = new IdentityHashMap<>();
+				for (CfInstruction instruction : cfCode.getInstructions())
+					if (instruction instanceof CfLabel)
+						labels.put((CfLabel) instruction, labels.size());
+				writeTag(TAG_CF_CODE);
+				writeInt(cfCode.getMaxStack());
+				writeInt(cfCode.getMaxLocals());
+				writeValue(cfCode.getInstructions());
+				writeValue(cfCode.getTryCatchRanges());
+				writeValue(cfCode.getLocalVariables());
+				labels = Collections.emptyMap();
+			} else {
+				throw new UnsupportedContentException("Unsupported code: " + code.getClass().getName());
+			}
+		}
+
+		private void writeValue(@Nullable Object value) throws UnsupportedContentException {
+			if (++depth > MAX_DEPTH)
+				throw new UnsupportedContentException("Content nested too deeply");
+			try {
+				if (value == null) {
+					writeTag(TAG_NULL);
+				} else if (value instanceof Boolean) {
+					writeTag(TAG_BOOLEAN);
+					writeInt((Boolean) value ? 1 : 0);
+				} else if (value instanceof Character) {
+					writeTag(TAG_CHAR);
+					writeInt((Character) value);
+				} else if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+					writeTag(TAG_INT);
+					writeInt(((Number) value).intValue());
+				} else if (value instanceof Long) {
+					writeTag(TAG_LONG);
+					writeLong((Long) value);
+				} else if (value instanceof Float) {
+					writeTag(TAG_FLOAT);
+					writeInt(Float.floatToRawIntBits((Float) value));
+				} else if (value instanceof Double) {
+					writeTag(TAG_DOUBLE);
+					writeLong(Double.doubleToRawLongBits((Double) value));
+				} else if (value instanceof String) {
+					writeTag(TAG_STRING);
+					writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+				} else if (value instanceof Enum) {
+					Enum<?> enumValue = (Enum<?>) value;
+					writeTag(TAG_ENUM);
+					writeBytes(enumValue.getDeclaringClass().getName().getBytes(StandardCharsets.UTF_8));
+					writeBytes(enumValue.name().getBytes(StandardCharsets.UTF_8));
+				} else if (value instanceof DexString) {
+					writeTag(TAG_DEX_STRING);
+					writeBytes(((DexString) value).content);
+				} else if (value instanceof DexType) {
+					writeTag(TAG_TYPE);
+					writeBytes(((DexType) value).toDescriptorString().getBytes(StandardCharsets.UTF_8));
+				} else if (value instanceof DexTypeList) {
+					DexTypeList types = (DexTypeList) value;
+					writeTag(TAG_TYPE_LIST);
+					writeInt(types.size());
+					for (DexType type : types)
+						writeValue(type);
+				} else if (value instanceof DexField) {
+					DexField field = (DexField) value;
+					writeTag(TAG_FIELD);
+					writeValue(field.getHolderType());
+					writeValue(field.getName());
+					writeValue(field.getType());
+				} else if (value instanceof DexMethod) {
+					DexMethod method = (DexMethod) value;
+					writeTag(TAG_METHOD);
+					writeValue(method.getHolderType());
+					writeValue(method.getName());
+					writeValue(method.getProto());
+				} else if (value instanceof DexProto) {
+					DexProto proto = (DexProto) value;
+					writeTag(TAG_PROTO);
+					writeValue(proto.getReturnType());
+					writeValue(proto.getParameters());
+				} else if (value instanceof DexAnnotationSet) {
+					// Written as-is, as the 'sorted' marker of the set is runtime state.
+					writeTag(TAG_ANNOTATION_SET);
+					writeValue(((DexAnnotationSet) value).annotations);
+				} else if (value instanceof DexEncodedAnnotation) {
+					DexEncodedAnnotation annotation = (DexEncodedAnnotation) value;
+					writeTag(TAG_ENCODED_ANNOTATION);
+					writeValue(annotation.type);
+					writeValue(annotation.elements);
+				} else if (value instanceof DexCallSite) {
+					// Call sites lazily cache their encoded form, so only the defining parts are written.
+					DexCallSite callSite = (DexCallSite) value;
+					writeTag(TAG_CALL_SITE);
+					writeValue(callSite.methodName);
+					writeValue(callSite.methodProto);
+					writeValue(callSite.bootstrapMethod);
+					writeValue(callSite.bootstrapArgs);
+				} else if (value instanceof CfLabel) {
+					Integer index = labels.get(value);
+					if (index == null)
+						throw new UnsupportedContentException("Label outside of its code");
+					writeTag(TAG_LABEL);
+					writeInt(index);
+				} else if (value.getClass().isArray()) {
+					int length = Array.getLength(value);
+					writeTag(TAG_ARRAY);
+					writeInt(length);
+					for (int i = 0; i < length; i++)
+						writeValue(Array.get(value, i));
+				} else if (value instanceof Collection) {
+					if (value instanceof Set && !(value instanceof SortedSet) && !(value instanceof LinkedHashSet))
+						throw new UnsupportedContentException("Unordered set: " + value.getClass().getName());
+					Collection<?> collection = (Collection<?>) value;
+					writeTag(TAG_LIST);
+					writeInt(collection.size());
+					for (Object item : collection)
+						writeValue(item);
+				} else if (value instanceof SortedMap) {
+					Map<?, ?> map = (Map<?, ?>) value;
+					writeTag(TAG_MAP);
+					writeInt(map.size());
+					for (Map.Entry<?, ?> entry : map.entrySet()) {
+						writeValue(entry.getKey());
+						writeValue(entry.getValue());
+					}
+				} else if (isStructural(value.getClass())) {
+					writeTag(TAG_STRUCTURE);
+					writeBytes(value.getClass().getName().getBytes(StandardCharsets.UTF_8));
+					for (Field field : fieldsOf(value.getClass())) {
+						try {
+							writeValue(field.get(value));
+						} catch (IllegalAccessException ex) {
+							throw new UnsupportedContentException("Inaccessible field: " + field);
+						}
+					}
+				} else {
+					throw new UnsupportedContentException("Unsupported content: " + value.getClass().getName());
+				}
+			} finally {
+				depth--;
+			}
+		}
+
+		private void writeTag(byte tag) {
+			try {
+				out.writeByte(tag);
+			} catch (IOException ex) {
+				// Digest streams do not do any IO
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private void writeInt(int value) {
+			try {
+				out.writeInt(value);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private void writeLong(long value) {
+			try {
+				out.writeLong(value);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private void writeBytes(@Nonnull byte[] bytes) {
+			try {
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private static boolean isStructural(@Nonnull Class<?> type) {
+			String name = type.getName();
+			for (String prefix : STRUCTURAL_PREFIXES)
+				if (name.startsWith(prefix))
+					return true;
+			return false;
+		}
+
+		/**
+		 * @param type
+		 * 		Structural type.
+		 *
+		 * @return Instance fields of the type and its structural parents, in a stable order.
+		 *
+		 * @throws UnsupportedContentException
+		 * 		When the fields cannot be made accessible.
+		 */
+		@Nonnull
+		private static List<Field> fieldsOf(@Nonnull Class<?> type) throws UnsupportedContentException {
+			List<Field> fields = FIELDS.get(type);
+			if (fields != null)
+				return fields;
+			fields = new ArrayList<>();
+			for (Class<?> current = type; current != null && current != Object.class &&
+					!EXCLUDED_BASES.contains(current.getName()); current = current.getSuperclass()) {
+				List<Field> declared = new ArrayList<>();
+				for (Field field : current.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic())
+						continue;
+					try {
+						field.setAccessible(true);
+					} catch (RuntimeException ex) {
+						throw new UnsupportedContentException("Inaccessible field: " + field);
+					}
+					declared.add(field);
+				}
+				declared.sort(Comparator.comparing(Field::getName));
+				fields.addAll(declared);
+			}
+			FIELDS.putIfAbsent(type, fields);
+			return fields;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package software.coley.dextranslator.cache;
+
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * In-memory cache of conversion outputs, keyed by the content of the input class and the options used to convert it.
+ * The content hash also covers the program classes the input class is converted against,
+ * see {@link ClassContentHasher#hashInContext(com.android.tools.r8.graph.DexProgramClass, java.util.function.Function)},
+ * so changes to those classes do not yield stale outputs.
+ * When the cache grows beyond its size limit, the least recently used entries are evicted.
+ *
+ * @author Matt Coley
+ * @see ApplicationData#setExportCache(ExportCache)
+ */
+public class ExportCache {
+	private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	private final Map<Key, Map<String, byte[]>> entries = new LinkedHashMap<>(16, 0.75F, true);
+	private final long maxBytes;
+	private long currentBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * New cache with a limit of 64 MB.
+	 */
+	public ExportCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param maxBytes
+	 * 		Maximum number of output bytes to hold before evicting entries.
+	 */
+	public ExportCache(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Cache size must be positive");
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param className
+	 * 		Internal name of the input class.
+	 * @param contentHash
+	 * 		Content hash of the input class.
+	 * @param optionsFingerprint
+	 * 		Fingerprint of the options used to convert the class.
+	 *
+	 * @return Map of output class names to their bytes, or {@code null} when there is no entry.
+	 */
+	@Nullable
+	public synchronized Map<String, byte[]> get(@Nonnull String className,
+												@Nonnull String contentHash,
+												@Nonnull String optionsFingerprint) {
+		Map<String, byte[]> outputs = entries.get(new Key(className, contentHash, optionsFingerprint));
+		if (outputs == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return outputs;
+	}
+
+	/**
+	 * @param className
+	 * 		Internal name of the input class.
+	 * @param contentHash
+	 * 		Content hash of the input class.
+	 * @param optionsFingerprint
+	 * 		Fingerprint of the options used to convert the class.
+	 * @param outputs
+	 * 		Map of output class names to their bytes, produced by converting the input class.
+	 */
+	public synchronized void put(@Nonnull String className,
+								 @Nonnull String contentHash,
+								 @Nonnull String optionsFingerprint,
+								 @Nonnull Map<String, byte[]> outputs) {
+		Key key = new Key(className, contentHash, optionsFingerprint);
+		Map<String, byte[]> previous = entries.put(key, Collections.unmodifiableMap(new LinkedHashMap<>(outputs)));
+		if (previous != null)
+			currentBytes -= sizeOf(previous);
+		currentBytes += sizeOf(outputs);
+
+		// Evict least recently used entries until we are within the limit.
+		// The entry just added is only evicted if it alone is larger than the limit.
+		Iterator<Map.Entry<Key, Map<String, byte[]>>> iterator = entries.entrySet().iterator();
+		while (currentBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<Key, Map<String, byte[]>> entry = iterator.next();
+			currentBytes -= sizeOf(entry.getValue());
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes all entries of the given class, regardless of content hash and options.
+	 *
+	 * @param className
+	 * 		Internal name of the input class.
+	 */
+	public synchronized void invalidate(@Nonnull String className) {
+		Iterator<Map.Entry<Key, Map<String, byte[]>>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Key, Map<String, byte[]>> entry = iterator.next();
+			if (entry.getKey().className.equals(className)) {
+				currentBytes -= sizeOf(entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		currentBytes = 0;
+	}
+
+	/**
+	 * @return Number of lookups that found an entry.
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of lookups that did not find an entry.
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return Number of entries removed to stay within the size limit.
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return Number of entries in the cache.
+	 */
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Number of output bytes held by the cache.
+	 */
+	public synchronized long getByteSize() {
+		return currentBytes;
+	}
+
+	/**
+	 * @return Maximum number of output bytes to hold before evicting entries.
+	 */
+	public long getMaxByteSize() {
+		return maxBytes;
+	}
+
+	/**
+	 * Groups conversion outputs by the input class they originate from.
+	 * Outputs that are not an input class themselves are attributed to the input class their name is derived from,
+	 * which is the case for synthetics such as {@code Foo$$ExternalSyntheticLambda0} created for {@code Foo}.
+	 *
+	 * @param inputNames
+	 * 		Internal names of the input classes that were converted.
+	 * @param outputs
+	 * 		Map of output class names to their bytes.
+	 *
+	 * @return Map of input class names to their outputs,
+	 * or {@code null} when some output could not be attributed to any input class.
+	 */
+	@Nullable
+	public static Map<String, Map<String, byte[]>> attributeOutputs(@Nonnull Collection<String> inputNames,
+																	@Nonnull Map<String, byte[]> outputs) {
+		Map<String, Map<String, byte[]>> attributed = new HashMap<>();
+		for (String inputName : inputNames)
+			attributed.put(inputName, new LinkedHashMap<>());
+		for (Map.Entry<String, byte[]> output : outputs.entrySet()) {
+			String outputName = output.getKey();
+			String owner = null;
+			if (attributed.containsKey(outputName)) {
+				owner = outputName;
+			} else {
+				int split = outputName.indexOf("$$");
+				while (split > 0 && owner == null) {
+					String prefix = outputName.substring(0, split);
+					if (attributed.containsKey(prefix))
+						owner = prefix;
+					split = outputName.indexOf("$$", split + 1);
+				}
+			}
+			if (owner == null)
+				return null;
+			attributed.get(owner).put(outputName, output.getValue());
+		}
+		return attributed;
+	}
+
+	private static long sizeOf(@Nonnull Map<String, byte[]> outputs) {
+		long size = 0;
+		for (Map.Entry<String, byte[]> entry : outputs.entrySet())
+			size += entry.getKey().length() * 2L + entry.getValue().length;
+		return size;
+	}
+
+	private static class Key {
+		private final String className;
+		private final String contentHash;
+		private final String optionsFingerprint;
+
+		private Key(@Nonnull String className, @Nonnull String contentHash, @Nonnull String optionsFingerprint) {
+			this.className = className;
+			this.contentHash = contentHash;
+			this.optionsFingerprint = optionsFingerprint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return className.equals(other.className) &&
+					contentHash.equals(other.contentHash) &&
+					optionsFingerprint.equals(other.optionsFingerprint);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(className, contentHash, optionsFingerprint);
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package software.coley.dextranslator.cache;
+
+import com.android.tools.r8.ClassFileResourceProvider;
+import com.android.tools.r8.JdkClassFileProvider;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of the system JDK classes, used as a library provider in place of scanning the JDK on every run.
+ * <p>
+ * Opening the JDK's {@code jrt} filesystem and listing its classes is a fixed cost paid by every new JVM before
+ * any conversion starts. The index stores the list of JDK classes, along with the content of the classes
+ * that prior runs actually looked up. On later runs the index file is mapped into memory, and the JDK is only
+ * opened if a class not yet in the index is needed. Calling {@link #save()} adds such classes to the index file.
+ * <p>
+ * Index files are keyed by the JDK version and location, along with the translator version,
+ * so one directory can hold indices for multiple JDKs. Like the {@link TranslationCache},
+ * index files are written to a temporary file and then moved into place so that processes can share a directory.
+ *
+ * @author Matt Coley
+ */
+public class JdkClassIndex implements ClassFileResourceProvider {
+	private static final int MAGIC = 0xDE7CDC1D;
+	private static final int FORMAT_VERSION = 1;
+	private static final String INDEX_SUFFIX = ".index";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String LOCK_SUFFIX = ".lock";
+	private static final Object SAVE_LOCK = new Object();
+	private final Map<String, byte[]> touched = new ConcurrentHashMap<>();
+	private final Map<String, Slice> indexed = new ConcurrentHashMap<>();
+	private final Path indexPath;
+	private final Origin origin;
+	private Set<String> descriptors;
+	private ByteBuffer buffer;
+	private ClassFileResourceProvider jdkProvider;
+
+	/**
+	 * @param directory
+	 * 		Directory to store index files in. Created if it does not exist.
+	 *
+	 * @throws IOException
+	 * 		When the directory cannot be created.
+	 */
+	public JdkClassIndex(@Nonnull Path directory) throws IOException {
+		indexPath = Files.createDirectories(directory).resolve("jdk-" + createJdkKey() + INDEX_SUFFIX);
+		origin = new PathOrigin(indexPath);
+		if (Files.isRegularFile(indexPath)) {
+			try {
+				read();
+			} catch (IOException ex) {
+				// Not an index we can understand, or removed by another process. Either way, it will be replaced on save.
+				indexed.clear();
+				descriptors = null;
+				buffer = null;
+			}
+		}
+	}
+
+	/**
+	 * @return Key of the running JDK, which also incorporates the translator version.
+	 */
+	@Nonnull
+	public static String createJdkKey() {
+		return TranslationCache.createKey(
+				String.valueOf(System.getProperty("java.vendor")),
+				String.valueOf(System.getProperty("java.runtime.version")),
+				String.valueOf(System.getProperty("java.home")));
+	}
+
+	/**
+	 * @return Path of the index file for the running JDK. May not exist if the index has not yet been saved.
+	 */
+	@Nonnull
+	public Path getIndexPath() {
+		return indexPath;
+	}
+
+	/**
+	 * @return Number of classes with content in the index file.
+	 */
+	public int getIndexedClassCount() {
+		return indexed.size();
+	}
+
+	/**
+	 * @return Number of classes read from the JDK since the index was loaded or last saved.
+	 */
+	public int getUnsavedClassCount() {
+		return touched.size();
+	}
+
+	/**
+	 * @return {@code true} when the JDK was opened to supply classes not in the index file.
+	 */
+	public synchronized boolean isJdkOpened() {
+		return jdkProvider != null;
+	}
+
+	@Override
+	public Set<String> getClassDescriptors() {
+		synchronized (this) {
+			if (descriptors != null)
+				return descriptors;
+		}
+		try {
+			Set<String> jdkDescriptors = Collections.unmodifiableSet(new TreeSet<>(jdk().getClassDescriptors()));
+			synchronized (this) {
+				descriptors = jdkDescriptors;
+			}
+			return jdkDescriptors;
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to open the system JDK", ex);
+		}
+	}
+
+	@Nullable
+	@Override
+	public ProgramResource getProgramResource(String descriptor) {
+		Slice slice = indexed.get(descriptor);
+		if (slice != null)
+			return ProgramResource.fromBytes(origin, ProgramResource.Kind.CF, slice.read(), Collections.singleton(descriptor));
+		byte[] bytes = touched.get(descriptor);
+		if (bytes == null) {
+			if (!getClassDescriptors().contains(descriptor))
+				return null;
+			try {
+				ProgramResource resource = jdk().getProgramResource(descriptor);
+				if (resource == null)
+					return null;
+				try (InputStream in = resource.getByteStream()) {
+					bytes = in.readAllBytes();
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException("Failed to read '" + descriptor + "' from the system JDK", ex);
+			} catch (ResourceException ex) {
+				throw new UncheckedIOException("Failed to read '" + descriptor + "' from the system JDK", new IOException(ex));
+			}
+			touched.putIfAbsent(descriptor, bytes);
+		}
+		return ProgramResource.fromBytes(origin, ProgramResource.Kind.CF, bytes, Collections.singleton(descriptor));
+	}
+
+	/**
+	 * Writes the index file, adding any classes read from the JDK since the index was loaded or last saved.
+	 * Classes that other processes saved to the index file in the meantime are kept.
+	 *
+	 * @return {@code true} when the index file was written.
+	 * {@code false} when there was nothing to add.
+	 *
+	 * @throws IOException
+	 * 		When the index file cannot be written.
+	 */
+	public synchronized boolean save() throws IOException {
+		if (touched.isEmpty() && descriptors != null && Files.isRegularFile(indexPath))
+			return false;
+
+		// Collect the content to write, before replacing the file the current content may be mapped from.
+		Set<String> allDescriptors = getClassDescriptors();
+		Map<String, byte[]> contents = new LinkedHashMap<>();
+		indexed.forEach((descriptor, slice) -> contents.put(descriptor, slice.read()));
+		contents.putAll(touched);
+
+		// Other processes save to the same file, so holding the lock over merging in their content and replacing
+		// the file ensures no process drops classes another one saved. The lock is held per process by the
+		// file lock, and per instance within this process by the shared monitor.
+		Path lockPath = indexPath.resolveSibling(indexPath.getFileName() + LOCK_SUFFIX);
+		synchronized (SAVE_LOCK) {
+			try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				 FileLock ignored = lockChannel.lock()) {
+				mergeSavedContent(contents);
+				write(allDescriptors, contents);
+			}
+		}
+
+		// Serve the saved classes from memory for the rest of this run, rather than re-mapping the new file.
+		contents.forEach((descriptor, content) -> indexed.put(descriptor, new Slice(ByteBuffer.wrap(content), 0, content.length)));
+		touched.clear();
+		return true;
+	}
+
+	/**
+	 * Adds classes from the current index file that are not yet in the given content.
+	 * These are classes saved by other processes since this index was loaded.
+	 *
+	 * @param contents
+	 * 		Map of class descriptors to content to write.
+	 */
+	private void mergeSavedContent(@Nonnull Map<String, byte[]> contents) {
+		if (!Files.isRegularFile(indexPath))
+			return;
+		try {
+			IndexFile saved = IndexFile.read(indexPath);
+			saved.entries.forEach((descriptor, slice) -> {
+				if (!contents.containsKey(descriptor))
+					contents.put(descriptor, slice.read());
+			});
+		} catch (IOException ex) {
+			// Not an index we can understand, or removed by another process. Either way, it is replaced.
+		}
+	}
+
+	/**
+	 * Writes the index file to a temporary file and then moves it into place.
+	 *
+	 * @param allDescriptors
+	 * 		Descriptors of all classes in the JDK.
+	 * @param contents
+	 * 		Map of class descriptors to content to write.
+	 *
+	 * @throws IOException
+	 * 		When the index file cannot be written.
+	 */
+	private void write(@Nonnull Set<String> allDescriptors, @Nonnull Map<String, byte[]> contents) throws IOException {
+		Path temp = Files.createTempFile(indexPath.getParent(), indexPath.getFileName().toString(), TEMP_SUFFIX);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(allDescriptors.size());
+				for (String descriptor : allDescriptors)
+					out.writeUTF(descriptor);
+				out.writeInt(contents.size());
+				long offset = 0;
+				for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(offset);
+					out.writeInt(entry.getValue().length);
+					offset += entry.getValue().length;
+				}
+				for (byte[] content : contents.values())
+					out.write(content);
+			}
+			try {
+				Files.move(temp, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * @return Provider of the system JDK, opening it if not already open.
+	 *
+	 * @throws IOException
+	 * 		When the system JDK cannot be opened.
+	 */
+	@Nonnull
+	private synchronized ClassFileResourceProvider jdk() throws IOException {
+		if (jdkProvider == null)
+			jdkProvider = JdkClassFileProvider.fromSystemJdk();
+		return jdkProvider;
+	}
+
+	/**
+	 * Maps the index file and reads its tables. Class content is left in the mapping until looked up.
+	 *
+	 * @throws IOException
+	 * 		When the index file cannot be read, or is not in a recognized format.
+	 */
+	private void read() throws IOException {
+		IndexFile file = IndexFile.read(indexPath);
+		buffer = file.buffer;
+		indexed.putAll(file.entries);
+		descriptors = file.descriptors;
+	}
+
+	/**
+	 * Tables of a mapped index file.
+	 */
+	private static class IndexFile {
+		private final ByteBuffer buffer;
+		private final Set<String> descriptors;
+		private final Map<String, Slice> entries;
+
+		private IndexFile(@Nonnull ByteBuffer buffer, @Nonnull Set<String> descriptors, @Nonnull Map<String, Slice> entries) {
+			this.buffer = buffer;
+			this.descriptors = descriptors;
+			this.entries = entries;
+		}
+
+		/**
+		 * @param path
+		 * 		Path of the index file.
+		 *
+		 * @return Tables of the index file. Class content is left in the mapping until looked up.
+		 *
+		 * @throws IOException
+		 * 		When the index file cannot be read, or is not in a recognized format.
+		 */
+		@Nonnull
+		private static IndexFile read(@Nonnull Path path) throws IOException {
+			ByteBuffer buffer;
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			ByteBuffer header = buffer.duplicate();
+			DataInputStream in = new DataInputStream(new InputStream() {
+				@Override
+				public int read() {
+					return header.hasRemaining() ? header.get() & 0xFF : -1;
+				}
+
+				@Override
+				public int read(@Nonnull byte[] b, int off, int len) {
+					if (len == 0)
+						return 0;
+					if (!header.hasRemaining())
+						return -1;
+					int count = Math.min(len, header.remaining());
+					header.get(b, off, count);
+					return count;
+				}
+			});
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				throw new IOException("Unrecognized JDK index format");
+			int descriptorCount = in.readInt();
+			Set<String> readDescriptors = new TreeSet<>();
+			for (int i = 0; i < descriptorCount; i++)
+				readDescriptors.add(in.readUTF());
+			int entryCount = in.readInt();
+			Map<String, long[]> tables = new LinkedHashMap<>();
+			for (int i = 0; i < entryCount; i++)
+				tables.put(in.readUTF(), new long[]{in.readLong(), in.readInt()});
+
+			// Class content follows the tables.
+			long dataStart = header.position();
+			Map<String, Slice> entries = new LinkedHashMap<>();
+			for (Map.Entry<String, long[]> entry : tables.entrySet()) {
+				long start = dataStart + entry.getValue()[0];
+				int length = (int) entry.getValue()[1];
+				if (start + length > buffer.capacity())
+					throw new IOException("Truncated JDK index");
+				entries.put(entry.getKey(), new Slice(buffer, (int) start, length));
+			}
+			return new IndexFile(buffer, Collections.unmodifiableSet(readDescriptors), entries);
+		}
+	}
+
+	/**
+	 * Range of a buffer holding the content of a class.
+	 */
+	private static class Slice {
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int length;
+
+		private Slice(@Nonnull ByteBuffer buffer, int start, int length) {
+			this.buffer = buffer;
+			this.start = start;
+			this.length = length;
+		}
+
+		@Nonnull
+		private byte[] read() {
+			// Read through a duplicate so that concurrent lookups do not share a position.
+			ByteBuffer view = buffer.duplicate();
+			view.position(start);
+			byte[] bytes = new byte[length];
+			view.get(bytes);
+			return bytes;
+		}
+	}
+}
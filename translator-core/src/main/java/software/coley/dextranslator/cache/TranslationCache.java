@@ -0,0 +1,290 @@
+package software.coley.dextranslator.cache;
+
+import software.coley.dextranslator.DexTranslatorBuildConfig;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent on-disk cache of conversion outputs.
+ * <p>
+ * Entries are written to a temporary file and then moved into place, so readers never observe a partially written
+ * entry. This allows multiple processes to share the same cache directory. The modification time of an entry is
+ * updated whenever it is read, which allows {@link #pruneToSize(long) pruning} to remove the least recently used
+ * entries first.
+ *
+ * @author Matt Coley
+ */
+public class TranslationCache {
+	private static final int MAGIC = 0xDE7CAC4E;
+	private static final int FORMAT_VERSION = 1;
+	private static final String ENTRY_SUFFIX = ".entry";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final Duration TEMP_FILE_GRACE = Duration.ofHours(1);
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final Path directory;
+
+	/**
+	 * @param directory
+	 * 		Directory to store cache entries in. Created if it does not exist.
+	 *
+	 * @throws IOException
+	 * 		When the directory cannot be created.
+	 */
+	public TranslationCache(@Nonnull Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * @param parts
+	 * 		Values identifying some cached content, such as the hash of the input and the options used to convert it.
+	 *
+	 * @return Key for the content, which also incorporates the translator version.
+	 */
+	@Nonnull
+	public static String createKey(@Nonnull String... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] version = DexTranslatorBuildConfig.VERSION.getBytes(StandardCharsets.UTF_8);
+		out.write(version, 0, version.length);
+		for (String part : parts) {
+			out.write(0);
+			byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+			out.write(bytes, 0, bytes.length);
+		}
+		return ClassContentHasher.hashBytes(out.toByteArray());
+	}
+
+	/**
+	 * @param key
+	 * 		Entry key, from {@link #createKey(String...)}.
+	 *
+	 * @return Map of output names to their bytes, or {@code null} when there is no usable entry.
+	 */
+	@Nullable
+	public Map<String, byte[]> get(@Nonnull String key) {
+		Path path = pathOf(key);
+		if (!Files.isRegularFile(path)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				throw new IOException("Unrecognized cache entry format");
+			int count = in.readInt();
+			Map<String, byte[]> outputs = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				outputs.put(name, data);
+			}
+			touch(path);
+			hits.incrementAndGet();
+			return outputs;
+		} catch (IOException ex) {
+			// Removed by another process between our check and read, or not an entry we can understand.
+			// Either way, it will be replaced on the next put.
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * @param key
+	 * 		Entry key, from {@link #createKey(String...)}.
+	 * @param outputs
+	 * 		Map of output names to their bytes.
+	 *
+	 * @throws IOException
+	 * 		When the entry cannot be written.
+	 */
+	public void put(@Nonnull String key, @Nonnull Map<String, byte[]> outputs) throws IOException {
+		Path path = pathOf(key);
+		Path parent = Files.createDirectories(path.getParent());
+		Path temp = Files.createTempFile(parent, key, TEMP_SUFFIX);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(outputs.size());
+				for (Map.Entry<String, byte[]> entry : outputs.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().length);
+					out.write(entry.getValue());
+				}
+			}
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Removes entries that have not been used within the given duration.
+	 *
+	 * @param maxAge
+	 * 		Maximum time since an entry was last used.
+	 *
+	 * @return Number of entries removed.
+	 *
+	 * @throws IOException
+	 * 		When the cache directory cannot be read.
+	 */
+	public int pruneOlderThan(@Nonnull Duration maxAge) throws IOException {
+		Instant cutoff = Instant.now().minus(maxAge);
+		int removed = 0;
+		for (EntryFile entry : listEntries())
+			if (entry.lastUsed.toInstant().isBefore(cutoff) && delete(entry.path))
+				removed++;
+		return removed;
+	}
+
+	/**
+	 * Removes the least recently used entries until the total size of the cache is at most the given size.
+	 *
+	 * @param maxBytes
+	 * 		Maximum total size of entries in bytes.
+	 *
+	 * @return Number of entries removed.
+	 *
+	 * @throws IOException
+	 * 		When the cache directory cannot be read.
+	 */
+	public int pruneToSize(long maxBytes) throws IOException {
+		List<EntryFile> entries = listEntries();
+		long total = 0;
+		for (EntryFile entry : entries)
+			total += entry.size;
+		entries.sort(Comparator.comparing(e -> e.lastUsed));
+		int removed = 0;
+		for (EntryFile entry : entries) {
+			if (total <= maxBytes)
+				break;
+			if (delete(entry.path)) {
+				total -= entry.size;
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * @return Total size of entries in bytes.
+	 *
+	 * @throws IOException
+	 * 		When the cache directory cannot be read.
+	 */
+	public long getByteSize() throws IOException {
+		long total = 0;
+		for (EntryFile entry : listEntries())
+			total += entry.size;
+		return total;
+	}
+
+	/**
+	 * @return Number of lookups that found an entry.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of lookups that did not find an entry.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return Directory entries are stored in.
+	 */
+	@Nonnull
+	public Path getDirectory() {
+		return directory;
+	}
+
+	@Nonnull
+	private Path pathOf(@Nonnull String key) {
+		// Spread entries over sub-directories to keep directory sizes manageable.
+		return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+	}
+
+	/**
+	 * Lists entries in the cache. Temporary files left behind by processes that did not finish writing
+	 * an entry are removed, once they are old enough that the writing process cannot still be running.
+	 *
+	 * @return Entries in the cache.
+	 *
+	 * @throws IOException
+	 * 		When the cache directory cannot be read.
+	 */
+	@Nonnull
+	private List<EntryFile> listEntries() throws IOException {
+		Instant tempCutoff = Instant.now().minus(TEMP_FILE_GRACE);
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(directory, 2)) {
+			paths = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		List<EntryFile> entries = new ArrayList<>(paths.size());
+		for (Path path : paths) {
+			String name = path.getFileName().toString();
+			try {
+				FileTime lastModified = Files.getLastModifiedTime(path);
+				if (name.endsWith(ENTRY_SUFFIX))
+					entries.add(new EntryFile(path, Files.size(path), lastModified));
+				else if (name.endsWith(TEMP_SUFFIX) && lastModified.toInstant().isBefore(tempCutoff))
+					delete(path);
+			} catch (NoSuchFileException ignored) {
+				// Removed by another process
+			}
+		}
+		return entries;
+	}
+
+	private static void touch(@Nonnull Path path) {
+		try {
+			Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+		} catch (IOException ignored) {
+			// Not critical, only affects the order of pruning
+		}
+	}
+
+	private static boolean delete(@Nonnull Path path) {
+		try {
+			return Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	private static class EntryFile {
+		private final Path path;
+		private final long size;
+		private final FileTime lastUsed;
+
+		private EntryFile(@Nonnull Path path, long size, @Nonnull FileTime lastUsed) {
+			this.path = path;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
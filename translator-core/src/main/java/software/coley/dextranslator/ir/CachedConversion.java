@@ -0,0 +1,342 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.ClassFileResourceProvider;
+import com.android.tools.r8.DataDirectoryResource;
+import com.android.tools.r8.DataEntryResource;
+import com.android.tools.r8.DataResourceConsumer;
+import com.android.tools.r8.DataResourceProvider;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.JdkClassFileProvider;
+import com.android.tools.r8.ProgramResourceProvider;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.graph.CfCode;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.ClassFilter;
+import com.android.tools.r8.utils.ExceptionDiagnostic;
+import com.android.tools.r8.utils.InternalOptions;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.ClassContentHasher;
+import software.coley.dextranslator.cache.ExportCache;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.cache.TranslationCache;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.ClassFilters;
+import software.coley.dextranslator.util.LazyArchiveClassFileProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversion handling which re-uses outputs of prior conversions recorded in a {@link TranslationCache}.
+ * <ul>
+ *     <li>For JVM output, each class is cached individually. Only classes without a cache entry are converted.</li>
+ *     <li>For DEX output, classes are merged into shared DEX files, so the whole output is cached as a single entry.</li>
+ * </ul>
+ * Outputs are keyed on the content of each class along with the program classes its output depends on,
+ * see {@link ClassContentHasher#hashInContext(DexProgramClass, java.util.function.Function)},
+ * and on the libraries and JDK it is converted against.
+ * Outputs of classes that contain invalid methods are not cached, so that they are reported on every run.
+ * Neither are outputs of classes that {@link ClassContentHasher} cannot hash,
+ * nor any outputs when the libraries cannot be identified.
+ *
+ * @author Matt Coley
+ */
+public class CachedConversion {
+	private static final String DEX_PREFIX = "classes";
+	private static final String DEX_SUFFIX = ".dex";
+	private static final String DESCRIPTORS_SUFFIX = ".descriptors";
+
+	/**
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param filter
+	 * 		Class filter to apply, used for limiting which classes are converted.
+	 * @param cache
+	 * 		Cache to pull prior outputs from, and record new outputs to.
+	 *
+	 * @return Result indicating conversion success and which methods got replaced if the replacement flag is set.
+	 * The actual conversion output is sent to {@link InternalOptions#programConsumer}.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	public static ConversionResult convert(@Nonnull ApplicationData applicationData,
+										   @Nonnull Options options,
+										   @Nonnull ClassFilter filter,
+										   @Nonnull TranslationCache cache)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		// Map of internal class names to their content hashes, in a stable order.
+		// Classes that cannot be hashed map to null, and are converted without being cached.
+		String libraryFingerprint = getLibraryFingerprint(applicationData.getInputApplication());
+		Map<String, String> hashes = new TreeMap<>();
+		Set<String> names = applicationData.getClassNames(filter);
+		Map<DexType, DexProgramClass> programClasses = new IdentityHashMap<>();
+		for (DexProgramClass programClass : applicationData.getApplication().classes())
+			programClasses.put(programClass.getType(), programClass);
+		ClassContentHasher hasher = new ClassContentHasher();
+		for (DexProgramClass programClass : applicationData.getApplication().classes()) {
+			String name = programClass.getTypeName();
+			if (names.contains(name)) {
+				String hash = libraryFingerprint == null ? null : hasher.hashInContext(programClass, programClasses::get);
+				hashes.put(name.replace('.', '/'), hash == null ? null : TranslationCache.createKey(hash, libraryFingerprint));
+			}
+		}
+		if (options.isJvmOutput())
+			return convertJvm(applicationData, options, cache, hashes);
+		return convertDex(applicationData, options, filter, cache, hashes);
+	}
+
+	@Nonnull
+	private static ConversionResult convertJvm(@Nonnull ApplicationData applicationData,
+											   @Nonnull Options options,
+											   @Nonnull TranslationCache cache,
+											   @Nonnull Map<String, String> hashes)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		InternalOptions internalOptions = options.getInternalOptions();
+		ClassFileConsumer consumer = internalOptions.getClassFileConsumer();
+		String fingerprint = options.getOutputFingerprint();
+
+		// Pass along cached outputs, and collect the keys of classes yet to be converted.
+		Map<String, String> missingKeys = new HashMap<>();
+		for (Map.Entry<String, String> entry : hashes.entrySet()) {
+			String hash = entry.getValue();
+			String key = hash == null ? null : TranslationCache.createKey(hash, fingerprint);
+			Map<String, byte[]> cached = key == null ? null : cache.get(key);
+			if (cached == null) {
+				missingKeys.put(entry.getKey(), key);
+			} else {
+				cached.forEach((outputName, outputBytes) ->
+						consumer.accept(ByteDataView.of(outputBytes), "L" + outputName + ";", internalOptions.reporter));
+			}
+		}
+
+		ConversionResult result = new ConversionResult(Collections.emptyList());
+		if (missingKeys.isEmpty()) {
+			// Nothing is converted, so the non-class resources that conversion would have passed along are passed here.
+			forwardDataResources(applicationData, internalOptions, consumer.getDataResourceConsumer(), true);
+		} else {
+			// Convert the missing classes, recording their outputs as they are passed along to the real consumer.
+			Map<String, byte[]> converted = new ConcurrentHashMap<>();
+			internalOptions.programConsumer = new ClassFileConsumer.ForwardingConsumer(consumer) {
+				@Override
+				public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+					converted.put(descriptor.substring(1, descriptor.length() - 1), data.copyByteData());
+					super.accept(data, descriptor, handler);
+				}
+
+				@Override
+				public void finished(DiagnosticsHandler handler) {
+					// Finished below, once cached outputs are also handled.
+				}
+			};
+			try {
+				result = Conversion.convert(applicationData, options, ClassFilters.forTypes(missingKeys.keySet()));
+			} finally {
+				internalOptions.programConsumer = consumer;
+			}
+
+			// Record the new outputs, skipping any classes with invalid methods.
+			for (ConversionResult.InvalidMethod invalidMethod : result.getInvalidMethods())
+				missingKeys.remove(invalidMethod.getMethod().getHolder().getTypeName().replace('.', '/'));
+			Map<String, Map<String, byte[]>> attributed = ExportCache.attributeOutputs(missingKeys.keySet(), converted);
+			if (attributed != null) {
+				for (Map.Entry<String, Map<String, byte[]>> entry : attributed.entrySet()) {
+					String key = missingKeys.get(entry.getKey());
+					if (key != null)
+						put(internalOptions, cache, key, entry.getValue());
+				}
+			}
+		}
+
+		try {
+			consumer.finished(internalOptions.reporter);
+		} catch (Exception ex) {
+			throw new ConversionExportException(ex, true);
+		}
+		return result;
+	}
+
+	@Nonnull
+	private static ConversionResult convertDex(@Nonnull ApplicationData applicationData,
+											   @Nonnull Options options,
+											   @Nonnull ClassFilter filter,
+											   @Nonnull TranslationCache cache,
+											   @Nonnull Map<String, String> hashes)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		// The output is cached as a whole, so a single class that cannot be hashed prevents caching.
+		if (hashes.containsValue(null))
+			return Conversion.convert(applicationData, options, filter);
+
+		InternalOptions internalOptions = options.getInternalOptions();
+		DexIndexedConsumer consumer = internalOptions.getDexIndexedConsumer();
+		List<String> keyParts = new ArrayList<>(hashes.size() * 2 + 1);
+		keyParts.add(options.getOutputFingerprint());
+		hashes.forEach((name, hash) -> {
+			keyParts.add(name);
+			keyParts.add(hash);
+		});
+		String key = TranslationCache.createKey(keyParts.toArray(new String[0]));
+
+		// Pass along the cached output if it exists.
+		Map<String, byte[]> cached = cache.get(key);
+		if (cached != null) {
+			forwardDataResources(applicationData, internalOptions, consumer.getDataResourceConsumer(), false);
+			for (int i = 0; cached.containsKey(dexName(i)); i++) {
+				byte[] descriptors = cached.get(DEX_PREFIX + i + DESCRIPTORS_SUFFIX);
+				Set<String> descriptorSet = descriptors == null || descriptors.length == 0 ? Collections.emptySet() :
+						new HashSet<>(Arrays.asList(new String(descriptors, StandardCharsets.UTF_8).split("\n")));
+				consumer.accept(i, ByteDataView.of(cached.get(dexName(i))), descriptorSet, internalOptions.reporter);
+			}
+			try {
+				consumer.finished(internalOptions.reporter);
+			} catch (Exception ex) {
+				throw new ConversionExportException(ex, false);
+			}
+			return new ConversionResult(Collections.emptyList());
+		}
+
+		// Convert everything, recording the output as it is passed along to the real consumer.
+		Map<String, byte[]> converted = new ConcurrentHashMap<>();
+		internalOptions.programConsumer = new DexIndexedConsumer.ForwardingConsumer(consumer) {
+			@Override
+			public void accept(int fileIndex, ByteDataView data, Set<String> descriptors, DiagnosticsHandler handler) {
+				converted.put(dexName(fileIndex), data.copyByteData());
+				converted.put(DEX_PREFIX + fileIndex + DESCRIPTORS_SUFFIX,
+						String.join("\n", descriptors).getBytes(StandardCharsets.UTF_8));
+				super.accept(fileIndex, data, descriptors, handler);
+			}
+		};
+		ConversionResult result;
+		try {
+			result = Conversion.convert(applicationData, options, filter);
+		} finally {
+			internalOptions.programConsumer = consumer;
+		}
+		if (result.getInvalidMethods().isEmpty() && !converted.isEmpty())
+			put(internalOptions, cache, key, new TreeMap<>(converted));
+		return result;
+	}
+
+	/**
+	 * Passes along the non-class resources of the inputs, as conversion does when it writes its output.
+	 *
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param internalOptions
+	 * 		Options to report with.
+	 * @param dataConsumer
+	 * 		Consumer of the non-class resources, or {@code null} when the output does not take any.
+	 * @param isJvm
+	 * 		Flag indicating the output is JVM classes, rather than DEX files.
+	 *
+	 * @throws ConversionExportException
+	 * 		When the resources cannot be read or consumed.
+	 */
+	private static void forwardDataResources(@Nonnull ApplicationData applicationData,
+											 @Nonnull InternalOptions internalOptions,
+											 @Nullable DataResourceConsumer dataConsumer,
+											 boolean isJvm) throws ConversionExportException {
+		if (dataConsumer == null)
+			return;
+		try {
+			for (ProgramResourceProvider provider : applicationData.getInputApplication().getProgramResourceProviders()) {
+				DataResourceProvider dataProvider = provider.getDataResourceProvider();
+				if (dataProvider == null)
+					continue;
+				dataProvider.accept(new DataResourceProvider.Visitor() {
+					@Override
+					public void visit(DataDirectoryResource directory) {
+						dataConsumer.accept(directory, internalOptions.reporter);
+					}
+
+					@Override
+					public void visit(DataEntryResource file) {
+						dataConsumer.accept(file, internalOptions.reporter);
+					}
+				});
+			}
+		} catch (ResourceException | RuntimeException ex) {
+			throw new ConversionExportException(ex, isJvm);
+		}
+	}
+
+	/**
+	 * Classes are converted against the library and classpath inputs, so their outputs can only be re-used when
+	 * converting against the same ones. Library archives are identified by their path, size, and modification time,
+	 * and the JDK by {@link JdkClassIndex#createJdkKey()}.
+	 *
+	 * @param inputApplication
+	 * 		Container of the inputs.
+	 *
+	 * @return Fingerprint of the library and classpath inputs,
+	 * or {@code null} when any of them is of a kind that cannot be identified.
+	 */
+	@Nullable
+	private static String getLibraryFingerprint(@Nonnull AndroidApp inputApplication) {
+		StringBuilder sb = new StringBuilder();
+		for (ClassFileResourceProvider provider : inputApplication.getLibraryResourceProviders())
+			if (!appendFingerprint(sb.append("lib:"), provider))
+				return null;
+		for (ClassFileResourceProvider provider : inputApplication.getClasspathResourceProviders())
+			if (!appendFingerprint(sb.append("cp:"), provider))
+				return null;
+		return sb.toString();
+	}
+
+	private static boolean appendFingerprint(@Nonnull StringBuilder sb, @Nonnull ClassFileResourceProvider provider) {
+		if (provider instanceof JdkClassIndex || provider instanceof JdkClassFileProvider) {
+			sb.append("jdk=").append(JdkClassIndex.createJdkKey()).append(';');
+			return true;
+		} else if (provider instanceof LazyArchiveClassFileProvider) {
+			Path path = ((LazyArchiveClassFileProvider) provider).getArchivePath();
+			try {
+				sb.append(path.toAbsolutePath()).append('=').append(Files.size(path))
+						.append('@').append(Files.getLastModifiedTime(path).toMillis()).append(';');
+				return true;
+			} catch (IOException ex) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Records outputs in the cache. Failing to do so is not fatal to the conversion, so it is reported as a warning.
+	 */
+	private static void put(@Nonnull InternalOptions internalOptions, @Nonnull TranslationCache cache,
+							@Nonnull String key, @Nonnull Map<String, byte[]> outputs) {
+		try {
+			cache.put(key, outputs);
+		} catch (IOException ex) {
+			internalOptions.reporter.warning(new ExceptionDiagnostic(ex));
+		}
+	}
+
+	@Nonnull
+	private static String dexName(int index) {
+		return DEX_PREFIX + index + DEX_SUFFIX;
+	}
+}
@@ -0,0 +1,26 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.ClassFileConsumer;
+
+/**
+ * How {@link Conversion} serializes classes to a {@link ClassFileConsumer} when targeting JVM output.
+ *
+ * @author Matt Coley
+ */
+public enum ClassWriteMode {
+	/**
+	 * Classes are serialized one after another on the converting thread.
+	 */
+	SEQUENTIAL,
+	/**
+	 * Classes are serialized across the thread pool, and passed to the consumer in the same order as
+	 * {@link #SEQUENTIAL}, from one thread at a time. Suitable for any consumer, such as
+	 * {@link ClassFileConsumer.ArchiveConsumer} where entry order is visible in the output.
+	 */
+	PARALLEL_ORDERED,
+	/**
+	 * Classes are serialized across the thread pool, and passed to the consumer as soon as each is ready.
+	 * The consumer will be called concurrently, so it must be thread-safe.
+	 */
+	PARALLEL_UNORDERED
+}
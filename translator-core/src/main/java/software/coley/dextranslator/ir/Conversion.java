@@ -1,6 +1,11 @@
 package software.coley.dextranslator.ir;
 
+import com.android.tools.r8.ByteDataView;
 import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.DataResourceConsumer;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.ProgramConsumer;
 import com.android.tools.r8.cf.CfVersion;
 import com.android.tools.r8.dex.ApplicationWriter;
 import com.android.tools.r8.dex.Marker;
@@ -14,19 +19,45 @@ import com.android.tools.r8.ir.desugar.desugaredlibrary.DesugaredLibraryAmender;
 import com.android.tools.r8.ir.optimize.DeadCodeRemover;
 import com.android.tools.r8.jar.CfApplicationWriter;
 import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.shaking.MainDexInfo;
 import com.android.tools.r8.synthesis.SyntheticItems;
 import com.android.tools.r8.utils.AndroidApp;
 import com.android.tools.r8.utils.ClassFilter;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.Timing;
 import it.unimi.dsi.fastutil.ints.Int2ReferenceArrayMap;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.jfr.D8ConversionEvent;
+import software.coley.dextranslator.jfr.EventSupport;
+import software.coley.dextranslator.jfr.LowerClassEvent;
+import software.coley.dextranslator.jfr.WriteEvent;
 import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.progress.ProgressListener;
+import software.coley.dextranslator.progress.ProgressPhase;
+import software.coley.dextranslator.util.ClassFilters;
+import software.coley.dextranslator.util.PhaseTimings;
 import software.coley.dextranslator.util.ThreadPools;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Conversion handling between DEX and JVM bytecode.
@@ -37,6 +68,21 @@ public class Conversion {
 	private static final Int2ReferenceArrayMap<DebugLocalInfo> EMPTY_ARRAY_MAP = new Int2ReferenceArrayMap<>();
 	private static final BytecodeMetadataProvider EMPTY_METADATA = BytecodeMetadataProvider.empty();
 	protected static final Timing EMPTY_TIMING = Timing.empty();
+	/**
+	 * Number of slices to split classes into per thread when writing in parallel. Smaller slices let ordered
+	 * output be passed along sooner, while each slice has the fixed cost of its own view and writer.
+	 */
+	private static final int WRITE_SLICES_PER_THREAD = 4;
+	private static final AtomicInteger RUNNING_ABANDONED_LOWERINGS = new AtomicInteger();
+
+	/**
+	 * @return Number of methods still being lowered in the background after exceeding their
+	 * {@link Options#setMethodTimeBudget(Duration) time budget}. Such work runs out on its own thread,
+	 * and may outlive the conversion it was abandoned by. Its result is discarded.
+	 */
+	public static int getRunningAbandonedLoweringCount() {
+		return RUNNING_ABANDONED_LOWERINGS.get();
+	}
 
 	/**
 	 * @param applicationData
@@ -59,6 +105,8 @@ public class Conversion {
 	 * 		When D8 conversion internals fails.
 	 * @throws ConversionExportException
 	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
 	 * @see ApplicationData#exportToJvmClassMap()
 	 * @see ApplicationData#exportToDexFile()
 	 */
@@ -67,74 +115,382 @@ public class Conversion {
 										   @Nonnull InternalOptions options,
 										   @Nonnull ClassFilter filter,
 										   boolean replaceInvalid)
-			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException {
-		AndroidApp inputApplication = applicationData.getInputApplication();
-		AppView<AppInfo> applicationView = applicationData.createView(options, filter);
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		return convert(applicationData, options, filter, replaceInvalid, ThreadPools.getMaxFixedThreadPool());
+	}
 
-		// Run pre-processing operations.
-		DesugaredLibraryAmender.run(applicationView);
-		SyntheticItems.collectSyntheticInputs(applicationView);
+	/**
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param filter
+	 * 		Class filter to apply, used for limiting the visibility to classes within the view.
+	 * 		This can be useful when the view is used in a conversion process where only some classes
+	 * 		are to be converted, rather than the whole application.
+	 * @param replaceInvalid
+	 * 		Flag to indicate if invalid method bodies should be replaced with dummy {@code throw} statements.
+	 * @param threadPool
+	 * 		Executor to run method lowering, D8 processing, and output writing on.
+	 * 		A single thread executor, such as {@link java.util.concurrent.Executors#newSingleThreadExecutor()},
+	 * 		lowers methods serially. The output and reported failures are the same either way.
+	 *
+	 * @return Result indicating conversion success and which methods got replaced if the replacement flag is set.
+	 * The actual conversion output is sent to {@link InternalOptions#programConsumer}.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 * @see ApplicationData#exportToJvmClassMap()
+	 * @see ApplicationData#exportToDexFile()
+	 */
+	@Nonnull
+	public static ConversionResult convert(@Nonnull ApplicationData applicationData,
+										   @Nonnull InternalOptions options,
+										   @Nonnull ClassFilter filter,
+										   boolean replaceInvalid,
+										   @Nonnull ExecutorService threadPool)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		Options wrapper = new Options(options).setReplaceInvalidMethodBodies(replaceInvalid);
+		return convert(applicationData, wrapper, filter, threadPool);
+	}
+
+	/**
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param filter
+	 * 		Class filter to apply, used for limiting the visibility to classes within the view.
+	 * 		This can be useful when the view is used in a conversion process where only some classes
+	 * 		are to be converted, rather than the whole application.
+	 *
+	 * @return Result indicating conversion success and which methods got replaced if the replacement flag is set.
+	 * The actual conversion output is sent to {@link InternalOptions#programConsumer}.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 * @see ApplicationData#exportToJvmClassMap()
+	 * @see ApplicationData#exportToDexFile()
+	 */
+	@Nonnull
+	public static ConversionResult convert(@Nonnull ApplicationData applicationData,
+										   @Nonnull Options options,
+										   @Nonnull ClassFilter filter)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		return convert(applicationData, options, filter, ThreadPools.getMaxFixedThreadPool());
+	}
+
+	/**
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param filter
+	 * 		Class filter to apply, used for limiting the visibility to classes within the view.
+	 * 		This can be useful when the view is used in a conversion process where only some classes
+	 * 		are to be converted, rather than the whole application.
+	 * @param threadPool
+	 * 		Executor to run method lowering, D8 processing, and output writing on.
+	 * 		A single thread executor, such as {@link java.util.concurrent.Executors#newSingleThreadExecutor()},
+	 * 		lowers methods serially. The output and reported failures are the same either way.
+	 *
+	 * @return Result indicating conversion success and which methods got replaced if the replacement flag is set.
+	 * The actual conversion output is sent to {@link InternalOptions#programConsumer}.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 * @see ApplicationData#exportToJvmClassMap()
+	 * @see ApplicationData#exportToDexFile()
+	 */
+	@Nonnull
+	public static ConversionResult convert(@Nonnull ApplicationData applicationData,
+										   @Nonnull Options options,
+										   @Nonnull ClassFilter filter,
+										   @Nonnull ExecutorService threadPool)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		InternalOptions internalOptions = options.getInternalOptions();
+		boolean isJvmTarget = internalOptions.isGeneratingClassFiles();
 
 		// Track which methods could not be converted and are replaced (only when the replace flag is set)
 		List<ConversionResult.InvalidMethod> invalidMethods = new ArrayList<>();
+		PhaseTimings timings = options.isCollectTimings() ? PhaseTimings.create("Conversion") : PhaseTimings.empty();
+		int profileSize = options.getMethodProfileSize();
+		MethodProfile profile = isJvmTarget && profileSize > 0 ? new MethodProfile(profileSize) : null;
+		ProgressListener progressListener = options.getProgressListener();
+		ProgressReporter progress = progressListener == null ? null :
+				new ProgressReporter(progressListener, isJvmTarget ? countMethodsToLower(applicationData, filter) : 0);
 
-		// Handle rewriting input code models to the target code model type.
-		boolean isJvmTarget = options.isGeneratingClassFiles();
-		DeadCodeRemover deadCodeRemover = new DeadCodeRemover(applicationView);
-		for (DexProgramClass dexClass : applicationView.appInfo().classes()) {
-			// In some configurations, having this be null causes problems.
-			// Setting it to any version resolves the problem.
-			if (dexClass.getInitialClassFileVersion() == null)
-				dexClass.downgradeInitialClassFileVersion(CfVersion.V11);
+		int shardSize = options.getShardSize();
+		int streamingWindow = options.getStreamingClassWindow();
+		if (isJvmTarget && shardSize > 0) {
+			// Convert the classes in shards, each over its own view.
+			convertShards(applicationData, options, filter, threadPool, shardSize, options.getShardConcurrency(),
+					invalidMethods, timings, profile, progress);
+		} else if (isJvmTarget && streamingWindow > 0) {
+			// Convert and write the classes in windows. Once a window is written, its view is no longer needed.
+			ClassFileConsumer classFileConsumer = internalOptions.getClassFileConsumer();
+			List<String> classNames = new ArrayList<>(applicationData.getClassNames(filter));
+			for (int i = 0; i < classNames.size(); i += streamingWindow) {
+				checkCancelled();
+				List<String> window = classNames.subList(i, Math.min(classNames.size(), i + streamingWindow));
+				timings.begin("Window " + (i / streamingWindow + 1));
+				convertView(applicationData, options, ClassFilters.forTypes(window),
+						new WindowConsumer(classFileConsumer, i == 0), threadPool,
+						invalidMethods, timings, profile, progress);
+				timings.end();
+			}
+		} else {
+			convertView(applicationData, options, filter, isJvmTarget ? internalOptions.getClassFileConsumer() : null,
+					threadPool, invalidMethods, timings, profile, progress);
+		}
 
-			// Map method bodies to IR and then to the target output type.
-			for (DexEncodedMethod method : dexClass.methods()) {
-				Code code = method.getCode();
-				ProgramMethod programMethod = method.asProgramMethod(dexClass);
-				try {
-					// We only need to update the method code bodies if they're in Dalvik form.
-					// The D8 converter further below will cover all other cases.
-					if (isJvmTarget && code instanceof DexCode) {
-						DexCode dexCode = (DexCode) code;
+		// Signal completion to the output
+		if (isJvmTarget) {
+			checkCancelled();
+			timings.begin("Finish output");
+			try {
+				internalOptions.getClassFileConsumer().finished(internalOptions.reporter);
+			} catch (Exception ex) {
+				throw new ConversionExportException(ex, true);
+			}
+			timings.end();
+		}
 
-						// Dex --> Java
-						IRCode irCode = dexCode.buildIR(programMethod, applicationView, Origin.root());
+		timings.finish();
+		return new ConversionResult(invalidMethods, timings.isEmpty() ? null : timings, profile);
+	}
 
-						// Build CF model.
-						CfBuilder builder = new CfBuilder(applicationView, programMethod, irCode, EMPTY_METADATA);
-						CfCode cfCode = builder.build(deadCodeRemover, EMPTY_TIMING);
+	/**
+	 * Converts the classes visible through the filter in shards, each over its own view of the application.
+	 * The output of each shard is passed along in shard order, so the output matches converting all classes at once.
+	 * The consumer is not yet marked as {@link ClassFileConsumer#finished(DiagnosticsHandler) finished}.
+	 *
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param filter
+	 * 		Class filter to apply, used for limiting the visibility to classes within the view.
+	 * @param threadPool
+	 * 		Executor to run method lowering, D8 processing, and output writing on.
+	 * @param shardSize
+	 * 		Number of classes per shard.
+	 * @param shardConcurrency
+	 * 		Number of shards to convert at once.
+	 * @param invalidMethods
+	 * 		List to add replaced methods to.
+	 * @param timings
+	 * 		Timings to record phases of the conversion in.
+	 * @param profile
+	 * 		Profile to record the time and memory spent on each method in, or {@code null} to skip profiling.
+	 * @param progress
+	 * 		Reporter to pass progress along to, or {@code null} to skip reporting.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	private static void convertShards(@Nonnull ApplicationData applicationData,
+									  @Nonnull Options options,
+									  @Nonnull ClassFilter filter,
+									  @Nonnull ExecutorService threadPool,
+									  int shardSize,
+									  int shardConcurrency,
+									  @Nonnull List<ConversionResult.InvalidMethod> invalidMethods,
+									  @Nonnull PhaseTimings timings,
+									  @Nullable MethodProfile profile,
+									  @Nullable ProgressReporter progress)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		InternalOptions internalOptions = options.getInternalOptions();
+		ClassFileConsumer classFileConsumer = internalOptions.getClassFileConsumer();
+		List<String> classNames = new ArrayList<>(applicationData.getClassNames(filter));
+		List<List<String>> shards = new ArrayList<>();
+		for (int i = 0; i < classNames.size(); i += shardSize)
+			shards.add(classNames.subList(i, Math.min(classNames.size(), i + shardSize)));
 
-						// Update method.
-						method.setCode(cfCode, EMPTY_ARRAY_MAP);
-					}
-				} catch (Exception ex) {
-					// Generic error thrown by R8 when something in IR fails.
-					// It has no message, so we'll wrap it with something simple.
-					if (ex instanceof Unreachable) {
-						StackTraceElement top = ex.getStackTrace()[0];
-						String topName = top.getClassName().substring(top.getClassName().lastIndexOf('.') + 1);
-						String topMethod = top.getMethodName();
-						String lineSuffix = top.getLineNumber() > 0 ? " @" + top.getLineNumber() : "";
-						// noinspection AssignmentToCatchBlockParameter
-						ex = new IllegalStateException("Unsupported conversion in: " +
-								topName + "#" + topMethod + lineSuffix, ex);
-					}
+		// Converting one shard at a time, each can be converted on this thread and passed along directly.
+		if (shardConcurrency <= 1 || shards.size() <= 1) {
+			for (int i = 0; i < shards.size(); i++) {
+				checkCancelled();
+				timings.begin("Shard " + (i + 1));
+				convertView(applicationData, options, ClassFilters.forTypes(shards.get(i)),
+						new SliceConsumer(classFileConsumer, i == 0, false), threadPool,
+						invalidMethods, timings, profile, progress);
+				timings.end();
+			}
+			return;
+		}
 
-					// Depending on the options, we can either:
-					//  - Replace the method with no-op and continue
-					//  - Fail fast and return
-					if (replaceInvalid) {
-						method.setCode(ThrowNullCode.get(), EMPTY_ARRAY_MAP);
-						invalidMethods.add(new ConversionResult.InvalidMethod(programMethod, ex));
-					} else {
-						throw new ConversionIRReplacementException(ex, programMethod, isJvmTarget);
-					}
+		// Shards wait on the work they hand to the thread pool, so they run on their own pool to not hold up
+		// the threads doing that work. The output of a shard is held until all prior shards are passed along,
+		// so the output held at any time is bounded by the shard size and concurrency.
+		boolean collectTimings = !timings.isEmpty();
+		ExecutorService shardPool = ThreadPools.getCachedDaemonThreadPool();
+		Deque<Future<Shard>> inFlight = new ArrayDeque<>(shardConcurrency);
+		int next = 0;
+		try {
+			while (next < shards.size() || !inFlight.isEmpty()) {
+				while (next < shards.size() && inFlight.size() < shardConcurrency) {
+					Shard shard = new Shard(shards.get(next), new SliceConsumer(classFileConsumer, next == 0, true),
+							collectTimings ? PhaseTimings.create("Shard " + (next + 1)) : PhaseTimings.empty());
+					inFlight.add(shardPool.submit(() -> {
+						convertView(applicationData, options, ClassFilters.forTypes(shard.classNames), shard.consumer,
+								threadPool, shard.invalidMethods, shard.timings, profile, progress);
+						shard.timings.finish();
+						return shard;
+					}));
+					next++;
+				}
+				Shard shard = inFlight.peek().get();
+				inFlight.poll();
+				try {
+					shard.consumer.flush(internalOptions.reporter);
+				} catch (Exception ex) {
+					throw new ConversionExportException(ex, true);
 				}
+				invalidMethods.addAll(shard.invalidMethods);
+				timings.attach(shard.timings);
 			}
+		} catch (ExecutionException ex) {
+			for (Future<?> future : inFlight)
+				future.cancel(true);
+			Throwable cause = ex.getCause();
+			if (cause instanceof ConversionIRReplacementException)
+				throw (ConversionIRReplacementException) cause;
+			if (cause instanceof ConversionD8ProcessingException)
+				throw (ConversionD8ProcessingException) cause;
+			if (cause instanceof ConversionExportException)
+				throw (ConversionExportException) cause;
+			if (cause instanceof ConversionCancelledException)
+				throw (ConversionCancelledException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException("Unhandled error converting shard", cause);
+		} catch (InterruptedException ex) {
+			for (Future<?> future : inFlight)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ConversionCancelledException(ex);
+		} catch (ConversionExportException ex) {
+			for (Future<?> future : inFlight)
+				future.cancel(true);
+			throw ex;
 		}
+	}
+
+	/**
+	 * Converts the classes visible through the filter, and writes them to the configured output.
+	 * For JVM output, the consumer is not yet marked as {@link ClassFileConsumer#finished(DiagnosticsHandler) finished}.
+	 *
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param filter
+	 * 		Class filter to apply, used for limiting the visibility to classes within the view.
+	 * @param classFileConsumer
+	 * 		Consumer to write JVM output to, or {@code null} when targeting DEX output,
+	 * 		which is written to the consumer of the options.
+	 * @param threadPool
+	 * 		Executor to run method lowering, D8 processing, and output writing on.
+	 * @param invalidMethods
+	 * 		List to add replaced methods to.
+	 * @param timings
+	 * 		Timings to record phases of the conversion in.
+	 * @param profile
+	 * 		Profile to record the time and memory spent on each method in, or {@code null} to skip profiling.
+	 * @param progress
+	 * 		Reporter to pass progress along to, or {@code null} to skip reporting.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	private static void convertView(@Nonnull ApplicationData applicationData,
+									@Nonnull Options options,
+									@Nonnull ClassFilter filter,
+									@Nullable ClassFileConsumer classFileConsumer,
+									@Nonnull ExecutorService threadPool,
+									@Nonnull List<ConversionResult.InvalidMethod> invalidMethods,
+									@Nonnull PhaseTimings timings,
+									@Nullable MethodProfile profile,
+									@Nullable ProgressReporter progress)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		InternalOptions internalOptions = options.getInternalOptions();
+		AndroidApp inputApplication = applicationData.getInputApplication();
+		checkCancelled();
+		timings.begin("Create view");
+		AppView<AppInfo> applicationView = applicationData.createView(internalOptions, filter);
+		timings.end();
+
+		// Run pre-processing operations.
+		timings.begin("Pre-process");
+		DesugaredLibraryAmender.run(applicationView);
+		SyntheticItems.collectSyntheticInputs(applicationView);
+
+		// In some configurations, having this be null causes problems.
+		// Setting it to any version resolves the problem.
+		Collection<DexProgramClass> classes = applicationView.appInfo().classes();
+		for (DexProgramClass dexClass : classes)
+			if (dexClass.getInitialClassFileVersion() == null)
+				dexClass.downgradeInitialClassFileVersion(CfVersion.V11);
+		timings.end();
+
+		// Handle rewriting input code models to the target code model type.
+		// We only need to update the method code bodies if they're in Dalvik form.
+		// The D8 converter further below will cover all other cases.
+		boolean isJvmTarget = internalOptions.isGeneratingClassFiles();
+		if (isJvmTarget) {
+			checkCancelled();
+			if (progress != null)
+				progress.phase(ProgressPhase.LOWERING);
+			timings.begin("Lower DEX code");
+			lowerDexCode(applicationView, classes, options, threadPool, invalidMethods, profile, progress);
+			timings.end();
+		}
+
+		checkCancelled();
 
 		// Convert and store results in app-view.
-		ExecutorService threadPool = ThreadPools.getMaxFixedThreadPool();
+		if (progress != null)
+			progress.phase(ProgressPhase.CONVERTING);
+		timings.begin("D8 conversion");
+		D8ConversionEvent conversionEvent = new D8ConversionEvent();
+		conversionEvent.begin();
 		try {
 			new PrimaryD8L8IRConverter(applicationView, EMPTY_TIMING)
 					.convert(applicationView, threadPool);
@@ -142,25 +498,847 @@ public class Conversion {
 			// Conversion process marks info as obsolete.
 			applicationView.appInfo().unsetObsolete();
 		} catch (Exception ex) {
-			throw new ConversionD8ProcessingException(ex, options.isGeneratingClassFiles());
+			// D8 waits on its own tasks, so an interrupt surfaces as some wrapped failure.
+			if (isInterruption(ex))
+				throw new ConversionCancelledException(ex);
+			throw new ConversionD8ProcessingException(ex, isJvmTarget);
 		}
+		conversionEvent.end();
+		if (conversionEvent.shouldCommit()) {
+			conversionEvent.target = isJvmTarget ? "jvm" : "dex";
+			conversionEvent.classCount = classes.size();
+			conversionEvent.methodCount = EventSupport.methodCount(classes);
+			conversionEvent.commit();
+		}
+		timings.end();
+
+		checkCancelled();
 
-		// Handle writing output
+		// Handle writing output.
+		// When flight recording or progress reporting is enabled, the output is counted on its way to the consumer.
+		if (progress != null)
+			progress.phase(ProgressPhase.WRITING);
+		timings.begin("Write output");
+		WriteEvent writeEvent = new WriteEvent();
+		boolean countOutput = writeEvent.isEnabled() || progress != null;
+		AtomicLong outputBytes = new AtomicLong();
+		ProgramConsumer programConsumer = internalOptions.programConsumer;
+		writeEvent.begin();
 		try {
-			Marker marker = options.getMarker();
-			if (options.isGeneratingClassFiles()) {
-				ClassFileConsumer classFileConsumer = options.getClassFileConsumer();
-				new CfApplicationWriter(applicationView, marker)
-						.write(classFileConsumer, inputApplication);
-				classFileConsumer.finished(options.reporter);
+			Marker marker = internalOptions.getMarker();
+			if (isJvmTarget) {
+				if (countOutput)
+					classFileConsumer = new ClassFileConsumer.ForwardingConsumer(classFileConsumer) {
+						@Override
+						public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+							outputBytes.addAndGet(data.getLength());
+							if (progress != null)
+								progress.written(1, data.getLength());
+							super.accept(data, descriptor, handler);
+						}
+					};
+				ClassWriteMode writeMode = options.getClassWriteMode();
+				if (writeMode == ClassWriteMode.SEQUENTIAL)
+					new CfApplicationWriter(applicationView, marker)
+							.write(classFileConsumer, inputApplication);
+				else
+					writeClassesInParallel(applicationView, marker, classFileConsumer, inputApplication, threadPool,
+							writeMode == ClassWriteMode.PARALLEL_ORDERED, internalOptions.reporter);
 			} else {
+				if (countOutput)
+					internalOptions.programConsumer =
+							new DexIndexedConsumer.ForwardingConsumer(internalOptions.getDexIndexedConsumer()) {
+								@Override
+								public void accept(int fileIndex, ByteDataView data, Set<String> descriptors, DiagnosticsHandler handler) {
+									outputBytes.addAndGet(data.getLength());
+									if (progress != null)
+										progress.written(descriptors.size(), data.getLength());
+									super.accept(fileIndex, data, descriptors, handler);
+								}
+							};
 				ApplicationWriter.create(applicationView, marker)
 						.write(threadPool, inputApplication);
 			}
 		} catch (Exception ex) {
-			throw new ConversionExportException(ex, options.isGeneratingClassFiles());
+			if (isInterruption(ex))
+				throw new ConversionCancelledException(ex);
+			throw new ConversionExportException(ex, isJvmTarget);
+		} finally {
+			internalOptions.programConsumer = programConsumer;
+		}
+		writeEvent.end();
+		if (writeEvent.shouldCommit()) {
+			writeEvent.target = isJvmTarget ? "jvm" : "dex";
+			writeEvent.classCount = classes.size();
+			writeEvent.outputBytes = outputBytes.get();
+			writeEvent.commit();
+		}
+		timings.end();
+	}
+
+	/**
+	 * Writes the classes of the view across the thread pool. The classes are split into contiguous slices,
+	 * each written by its own {@link CfApplicationWriter} over a view of the application limited to the slice.
+	 *
+	 * @param applicationView
+	 * 		View of the application to write.
+	 * @param marker
+	 * 		Marker to write into the output.
+	 * @param consumer
+	 * 		Consumer to pass classes to.
+	 * @param inputApplication
+	 * 		Input application, providing the data resources to pass along.
+	 * @param threadPool
+	 * 		Executor to write the slices on.
+	 * @param ordered
+	 * 		Flag to pass classes along in the order of the view, from one thread at a time.
+	 * 		Otherwise classes are passed along as soon as they are written, concurrently.
+	 * @param handler
+	 * 		Handler to report consumer diagnostics to.
+	 *
+	 * @throws Exception
+	 * 		When writing any slice fails.
+	 */
+	private static void writeClassesInParallel(@Nonnull AppView<AppInfo> applicationView,
+											   @Nullable Marker marker,
+											   @Nonnull ClassFileConsumer consumer,
+											   @Nonnull AndroidApp inputApplication,
+											   @Nonnull ExecutorService threadPool,
+											   boolean ordered,
+											   @Nonnull DiagnosticsHandler handler) throws Exception {
+		List<DexProgramClass> classes = new ArrayList<>(applicationView.appInfo().classes());
+		int sliceCount = (int) Math.min(classes.size(), (long) ThreadPools.getParallelism(threadPool) * WRITE_SLICES_PER_THREAD);
+		if (sliceCount <= 1) {
+			new CfApplicationWriter(applicationView, marker).write(consumer, inputApplication);
+			return;
+		}
+
+		// Each slice gets a view over the same application, without copying it, filtered to the slice's classes.
+		DexApplication application = applicationView.appInfo().app();
+		List<Future<SliceConsumer>> futures = new ArrayList<>(sliceCount);
+		for (int i = 0; i < sliceCount; i++) {
+			int from = (int) ((long) classes.size() * i / sliceCount);
+			int to = (int) ((long) classes.size() * (i + 1) / sliceCount);
+			List<String> names = new ArrayList<>(to - from);
+			for (DexProgramClass dexClass : classes.subList(from, to))
+				names.add(dexClass.getTypeName());
+			AppInfo sliceInfo = AppInfo.createInitialAppInfo(application,
+					SyntheticItems.GlobalSyntheticsStrategy.forPerFileMode(), MainDexInfo.none());
+			sliceInfo.setFilter(ClassFilters.forTypes(names));
+			AppView<AppInfo> sliceView = AppView.createForD8(sliceInfo);
+			SliceConsumer sliceConsumer = new SliceConsumer(consumer, i == 0, ordered);
+			futures.add(threadPool.submit(() -> {
+				new CfApplicationWriter(sliceView, marker).write(sliceConsumer, inputApplication);
+				return sliceConsumer;
+			}));
 		}
 
-		return new ConversionResult(invalidMethods);
+		// Wait on slices in order, passing along buffered output of each once all prior slices are passed along.
+		try {
+			for (Future<SliceConsumer> future : futures) {
+				SliceConsumer slice = future.get();
+				if (ordered)
+					slice.flush(handler);
+			}
+		} catch (ExecutionException ex) {
+			for (Future<?> future : futures)
+				future.cancel(false);
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw ex;
+		} catch (InterruptedException ex) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Maps {@link DexCode} method bodies to IR and then to {@link CfCode}.
+	 * <p>
+	 * Methods are handed to the thread pool in work units created according to
+	 * {@link Options#getLoweringSchedule()}. Regardless of the order methods are handled in,
+	 * results are collected in declaration order so that the outcome is identical to handling
+	 * each method one after another.
+	 *
+	 * @param applicationView
+	 * 		View of the application to update.
+	 * @param classes
+	 * 		Classes in the view to update.
+	 * @param options
+	 * 		Options to handle the conversion with.
+	 * @param threadPool
+	 * 		Executor to run the work units on.
+	 * @param invalidMethods
+	 * 		List to add replaced methods to.
+	 * @param profile
+	 * 		Profile to record the time and memory spent on each method in, or {@code null} to skip profiling.
+	 * @param progress
+	 * 		Reporter to pass progress along to, or {@code null} to skip reporting.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing the code of a method fails, and the replacement flag is not set.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread or the work units are interrupted.
+	 */
+	private static void lowerDexCode(@Nonnull AppView<AppInfo> applicationView,
+									 @Nonnull Collection<DexProgramClass> classes,
+									 @Nonnull Options options,
+									 @Nonnull ExecutorService threadPool,
+									 @Nonnull List<ConversionResult.InvalidMethod> invalidMethods,
+									 @Nullable MethodProfile profile,
+									 @Nullable ProgressReporter progress)
+			throws ConversionIRReplacementException, ConversionCancelledException {
+		boolean replaceInvalid = options.isReplaceInvalidMethodBodies();
+
+		// Collect the methods to lower, grouped by class.
+		// The index of each job is the position it would have in a serial pass.
+		// When flight recording is enabled, jobs of the same class share a tracker for its event.
+		boolean recordEvents = new LowerClassEvent().isEnabled();
+		List<LoweringJob> jobs = new ArrayList<>();
+		List<List<LoweringJob>> jobsPerClass = new ArrayList<>(classes.size());
+		for (DexProgramClass dexClass : classes) {
+			List<LoweringJob> classJobs = new ArrayList<>();
+			for (DexEncodedMethod method : dexClass.methods()) {
+				Code code = method.getCode();
+				if (code instanceof DexCode)
+					classJobs.add(new LoweringJob(method.asProgramMethod(dexClass), (DexCode) code, jobs.size() + classJobs.size()));
+			}
+			if (!classJobs.isEmpty()) {
+				if (recordEvents) {
+					ClassEventTracker tracker = new ClassEventTracker(dexClass, classJobs.size());
+					for (LoweringJob job : classJobs)
+						job.eventTracker = tracker;
+				}
+				jobs.addAll(classJobs);
+				jobsPerClass.add(classJobs);
+			}
+		}
+		if (jobs.isEmpty())
+			return;
+
+		// Create the units of work to hand off to the thread pool.
+		// Load-store optimization is a flag of the view's options, so in the selective mode the selected
+		// methods are lowered in their own pass, over a view with its own options that enable the flag.
+		boolean loadStoreDefault = applicationView.options().enableLoadStoreOptimization;
+		LoadStoreSelector loadStoreSelector = options.getLoadStoreSelector();
+		List<LoweringPass> passes = new ArrayList<>(2);
+		if (loadStoreSelector == null) {
+			passes.add(new LoweringPass(jobsPerClass, options, threadPool, loadStoreDefault));
+		} else {
+			List<List<LoweringJob>> selectedPerClass = new ArrayList<>();
+			List<List<LoweringJob>> remainingPerClass = new ArrayList<>();
+			for (List<LoweringJob> classJobs : jobsPerClass) {
+				List<LoweringJob> selected = new ArrayList<>();
+				List<LoweringJob> remaining = new ArrayList<>();
+				for (LoweringJob job : classJobs)
+					(loadStoreSelector.test(job.method, job.code) ? selected : remaining).add(job);
+				if (!selected.isEmpty())
+					selectedPerClass.add(selected);
+				if (!remaining.isEmpty())
+					remainingPerClass.add(remaining);
+			}
+			if (!selectedPerClass.isEmpty())
+				passes.add(new LoweringPass(selectedPerClass, options, threadPool, true));
+			if (!remainingPerClass.isEmpty())
+				passes.add(new LoweringPass(remainingPerClass, options, threadPool, false));
+		}
+
+		// When failing fast only the first failure in declaration order is reported.
+		// Any job that comes after an already observed failure can be skipped.
+		// When cancelled, all remaining jobs are skipped.
+		Duration timeBudget = options.getMethodTimeBudget();
+		boolean trivialFastPath = options.isTrivialMethodFastPath();
+		Exception[] failures = new Exception[jobs.size()];
+		AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		for (LoweringPass pass : passes) {
+			AppView<AppInfo> passView = pass.loadStore == loadStoreDefault ?
+					applicationView : createPassView(applicationView, options, pass.loadStore);
+			DeadCodeRemover deadCodeRemover = new DeadCodeRemover(passView);
+			List<Future<?>> futures = new ArrayList<>(pass.units.size());
+			List<AtomicBoolean> claims = new ArrayList<>(pass.units.size());
+			CountDownLatch unitsStopped = new CountDownLatch(pass.units.size());
+			for (List<LoweringJob> unit : pass.units) {
+				// Claimed by whichever comes first, the unit starting or a cancellation keeping it from starting.
+				AtomicBoolean claimed = new AtomicBoolean();
+				claims.add(claimed);
+				futures.add(threadPool.submit(() -> {
+					if (!claimed.compareAndSet(false, true))
+						return;
+					try {
+						for (LoweringJob job : unit) {
+							if (cancelled.get())
+								return;
+							if (!replaceInvalid && job.index > firstFailure.get())
+								continue;
+							if (job.eventTracker != null)
+								job.eventTracker.methodStarted();
+							long startNanos = profile == null ? 0 : System.nanoTime();
+							long startBytes = profile == null ? 0 : MethodProfile.currentThreadAllocatedBytes();
+							Exception failure = null;
+							try {
+								// Trivial methods are lowered directly, skipping the IR pipeline.
+								CfCode cfCode = trivialFastPath ? TrivialMethodLowering.tryLower(job.method, job.code) : null;
+								if (cfCode == null)
+									cfCode = timeBudget == null ?
+											lowerMethod(passView, job, deadCodeRemover) :
+											lowerMethod(passView, job, deadCodeRemover, timeBudget);
+								job.method.getDefinition().setCode(cfCode, EMPTY_ARRAY_MAP);
+							} catch (Exception ex) {
+								// Being interrupted means the conversion is cancelled, not that the method is invalid.
+								if (ex instanceof InterruptedException || isInterruption(ex)) {
+									cancelled.set(true);
+									Thread.currentThread().interrupt();
+									return;
+								}
+								failure = describeFailure(ex);
+							}
+							if (profile != null) {
+								// With a time budget the work happens on another thread, so our thread's allocations are not relevant.
+								long allocatedBytes = startBytes < 0 || timeBudget != null ?
+										-1 : MethodProfile.currentThreadAllocatedBytes() - startBytes;
+								profile.record(job.method, System.nanoTime() - startNanos, allocatedBytes);
+							}
+							if (job.eventTracker != null)
+								job.eventTracker.methodDone(failure != null);
+							if (progress != null)
+								progress.methodLowered();
+							if (failure != null) {
+								failures[job.index] = failure;
+								if (replaceInvalid)
+									job.method.getDefinition().setCode(ThrowNullCode.get(), EMPTY_ARRAY_MAP);
+								else
+									firstFailure.accumulateAndGet(job.index, Math::min);
+							}
+						}
+					} finally {
+						unitsStopped.countDown();
+					}
+				}));
+			}
+			try {
+				for (Future<?> future : futures)
+					future.get();
+			} catch (ExecutionException ex) {
+				for (Future<?> future : futures)
+					future.cancel(false);
+				Throwable cause = ex.getCause();
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IllegalStateException("Unhandled error lowering method code", cause);
+			} catch (InterruptedException ex) {
+				// Stop the work units at their next method, interrupting any that are mid-method.
+				cancelled.set(true);
+				for (int i = 0; i < futures.size(); i++) {
+					if (claims.get(i).compareAndSet(false, true))
+						unitsStopped.countDown();
+					else
+						futures.get(i).cancel(true);
+				}
+
+				// Wait for units that were mid-method, so that no method is lowered once the cancellation is reported.
+				while (true) {
+					try {
+						unitsStopped.await();
+						break;
+					} catch (InterruptedException ignored) {
+						// Already cancelling
+					}
+				}
+				Thread.currentThread().interrupt();
+				throw new ConversionCancelledException(ex);
+			}
+
+			// Work units that were interrupted stop without finishing their methods.
+			if (cancelled.get())
+				throw new ConversionCancelledException(null);
+		}
+
+		// Report failures in declaration order.
+		for (LoweringJob job : jobs) {
+			Exception failure = failures[job.index];
+			if (failure == null)
+				continue;
+			if (replaceInvalid)
+				invalidMethods.add(new ConversionResult.InvalidMethod(job.method, failure));
+			else
+				throw new ConversionIRReplacementException(failure, job.method, true);
+		}
+	}
+
+	/**
+	 * @param applicationView
+	 * 		View of the application to lower methods of.
+	 * @param options
+	 * 		Options the view was created with.
+	 * @param loadStore
+	 * 		Load-store optimization setting of the new view.
+	 *
+	 * @return View over the same application, with its own options built from the given options,
+	 * holding the given setting. Options of the given view are left as they are, so other work using them
+	 * is not affected.
+	 */
+	@Nonnull
+	private static AppView<AppInfo> createPassView(@Nonnull AppView<AppInfo> applicationView,
+												   @Nonnull Options options, boolean loadStore) {
+		InternalOptions passOptions = options.createInternalOptions(loadStore);
+		DexApplication application = applicationView.appInfo().app().builder().build();
+		application.options = passOptions;
+		AppInfo passInfo = AppInfo.createInitialAppInfo(application,
+				SyntheticItems.GlobalSyntheticsStrategy.forPerFileMode(), MainDexInfo.none());
+		return AppView.createForD8(passInfo);
+	}
+
+	/**
+	 * @param applicationView
+	 * 		View of the application the method belongs to.
+	 * @param job
+	 * 		Method to lower the code of.
+	 * @param deadCodeRemover
+	 * 		Shared dead code remover for the view.
+	 *
+	 * @return Lowered code of the method.
+	 *
+	 * @throws Exception
+	 * 		When the method could not be converted.
+	 */
+	@Nonnull
+	private static CfCode lowerMethod(@Nonnull AppView<AppInfo> applicationView,
+									  @Nonnull LoweringJob job,
+									  @Nonnull DeadCodeRemover deadCodeRemover) throws Exception {
+		return lowerMethod(applicationView, job.method, job.code, deadCodeRemover);
+	}
+
+	/**
+	 * @param applicationView
+	 * 		View of the application the method belongs to.
+	 * @param programMethod
+	 * 		Method to lower the code of.
+	 * @param code
+	 * 		Code of the method.
+	 * @param deadCodeRemover
+	 * 		Shared dead code remover for the view.
+	 *
+	 * @return Lowered code of the method.
+	 *
+	 * @throws Exception
+	 * 		When the method could not be converted.
+	 */
+	@Nonnull
+	private static CfCode lowerMethod(@Nonnull AppView<AppInfo> applicationView,
+									  @Nonnull ProgramMethod programMethod,
+									  @Nonnull DexCode code,
+									  @Nonnull DeadCodeRemover deadCodeRemover) throws Exception {
+		// Dex --> Java
+		IRCode irCode = code.buildIR(programMethod, applicationView, Origin.root());
+
+		// Build CF model.
+		CfBuilder builder = new CfBuilder(applicationView, programMethod, irCode, EMPTY_METADATA);
+		return builder.build(deadCodeRemover, EMPTY_TIMING);
+	}
+
+	/**
+	 * Lowers the method on a separate thread so that the caller can stop waiting once the budget is exceeded.
+	 * The budget starts once the work starts, so time spent waiting on a thread is not counted against it.
+	 * <p>
+	 * The work lowers a private copy of the method's code, and its result is only ever applied by the caller.
+	 * Work that exceeds its budget is interrupted and left to run out on its own thread, with its result discarded.
+	 * The method keeps its original code, and is handled like any other method that fails to lower.
+	 *
+	 * @param applicationView
+	 * 		View of the application the method belongs to.
+	 * @param job
+	 * 		Method to lower the code of.
+	 * @param deadCodeRemover
+	 * 		Shared dead code remover for the view.
+	 * @param timeBudget
+	 * 		Maximum time to spend lowering the method.
+	 *
+	 * @return Lowered code of the method.
+	 *
+	 * @throws Exception
+	 * 		When the method could not be converted, or a {@link TimeoutException} when it exceeds the budget.
+	 */
+	@Nonnull
+	private static CfCode lowerMethod(@Nonnull AppView<AppInfo> applicationView,
+									  @Nonnull LoweringJob job,
+									  @Nonnull DeadCodeRemover deadCodeRemover,
+									  @Nonnull Duration timeBudget) throws Exception {
+		// Lowering only reads the method definition and the view, and builds its IR and output privately.
+		// The code is copied so that nothing the work holds on to is shared with the method's code in the view.
+		DexCode codeCopy = new DexCode(job.code.registerSize, job.code.incomingRegisterSize,
+				job.code.outgoingRegisterSize, job.code.instructions.clone(), job.code.tries.clone(),
+				job.code.handlers.clone(), job.code.getDebugInfo());
+		BudgetedLowering task = new BudgetedLowering(() -> lowerMethod(applicationView, job.method, codeCopy, deadCodeRemover));
+		ThreadPools.getTimeBudgetThreadPool().execute(task);
+		try {
+			// The budget covers the lowering itself, not the time spent waiting for it to start
+			task.started.await();
+			if (!task.finished.await(timeBudget.toNanos(), TimeUnit.NANOSECONDS)) {
+				task.abandon();
+				throw new TimeoutException("Conversion exceeded time budget of " + timeBudget.toMillis() + "ms");
+			}
+		} catch (InterruptedException ex) {
+			task.abandon();
+			Thread.currentThread().interrupt();
+			throw ex;
+		}
+		return task.getResult();
+	}
+
+	/**
+	 * @param applicationData
+	 * 		Input application model.
+	 * @param filter
+	 * 		Class filter limiting which classes are converted.
+	 *
+	 * @return Number of methods with Dalvik code that will be lowered.
+	 */
+	private static int countMethodsToLower(@Nonnull ApplicationData applicationData, @Nonnull ClassFilter filter) {
+		Set<String> names = filter == ClassFilter.PASS_ALL ? null : applicationData.getClassNames(filter);
+		int count = 0;
+		for (DexProgramClass dexClass : applicationData.getApplication().classes()) {
+			if (names != null && !names.contains(dexClass.getTypeName()))
+				continue;
+			for (DexEncodedMethod method : dexClass.methods())
+				if (method.getCode() instanceof DexCode)
+					count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks for cancellation between conversion steps.
+	 * The interrupt flag is left as-is so that callers further up can also observe it.
+	 *
+	 * @throws ConversionCancelledException
+	 * 		When the current thread is interrupted.
+	 */
+	private static void checkCancelled() throws ConversionCancelledException {
+		if (Thread.currentThread().isInterrupted())
+			throw new ConversionCancelledException(null);
+	}
+
+	/**
+	 * @param ex
+	 * 		Exception thrown by some R8 step.
+	 *
+	 * @return {@code true} when the exception is the result of the current thread being interrupted.
+	 */
+	private static boolean isInterruption(@Nonnull Exception ex) {
+		if (Thread.currentThread().isInterrupted())
+			return true;
+		for (Throwable cause = ex; cause != null; cause = cause.getCause())
+			if (cause instanceof InterruptedException)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param ex
+	 * 		Exception thrown when lowering a method.
+	 *
+	 * @return Exception describing why the method could not be converted.
+	 */
+	@Nonnull
+	private static Exception describeFailure(@Nonnull Exception ex) {
+		// Generic error thrown by R8 when something in IR fails.
+		// It has no message, so we'll wrap it with something simple.
+		if (ex instanceof Unreachable) {
+			StackTraceElement top = ex.getStackTrace()[0];
+			String topName = top.getClassName().substring(top.getClassName().lastIndexOf('.') + 1);
+			String topMethod = top.getMethodName();
+			String lineSuffix = top.getLineNumber() > 0 ? " @" + top.getLineNumber() : "";
+			return new IllegalStateException("Unsupported conversion in: " +
+					topName + "#" + topMethod + lineSuffix, ex);
+		}
+		return ex;
+	}
+
+	/**
+	 * Consumer for a single window of streamed output. Completion is only signalled once all windows are written,
+	 * and data resources are only passed along with the first window so that they are not written multiple times.
+	 */
+	private static class WindowConsumer extends ClassFileConsumer.ForwardingConsumer {
+		private final boolean isFirstWindow;
+
+		private WindowConsumer(@Nonnull ClassFileConsumer consumer, boolean isFirstWindow) {
+			super(consumer);
+			this.isFirstWindow = isFirstWindow;
+		}
+
+		@Override
+		public DataResourceConsumer getDataResourceConsumer() {
+			return isFirstWindow ? super.getDataResourceConsumer() : null;
+		}
+
+		@Override
+		public void finished(DiagnosticsHandler handler) {
+			// no-op, handled once all windows are written
+		}
+	}
+
+	/**
+	 * Shard of classes converted over its own view, with the results collected until the shard is passed along.
+	 */
+	private static class Shard {
+		private final List<ConversionResult.InvalidMethod> invalidMethods = new ArrayList<>();
+		private final List<String> classNames;
+		private final SliceConsumer consumer;
+		private final PhaseTimings timings;
+
+		private Shard(@Nonnull List<String> classNames, @Nonnull SliceConsumer consumer, @Nonnull PhaseTimings timings) {
+			this.classNames = classNames;
+			this.consumer = consumer;
+			this.timings = timings;
+		}
+	}
+
+	/**
+	 * Consumer for a single slice of output written in parallel, or a single shard of a sharded conversion.
+	 * Completion is only signalled once all slices are written, and data resources are only passed along
+	 * with the first slice. When ordered, classes are held until {@link #flush(DiagnosticsHandler)} is called.
+	 */
+	private static class SliceConsumer extends ClassFileConsumer.ForwardingConsumer {
+		private final List<ByteDataView> buffer = new ArrayList<>();
+		private final List<String> bufferDescriptors = new ArrayList<>();
+		private final boolean isFirstSlice;
+		private final boolean ordered;
+
+		private SliceConsumer(@Nonnull ClassFileConsumer consumer, boolean isFirstSlice, boolean ordered) {
+			super(consumer);
+			this.isFirstSlice = isFirstSlice;
+			this.ordered = ordered;
+		}
+
+		@Override
+		public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+			if (ordered) {
+				// A shard may itself be written in parallel, so buffering must be safe across threads.
+				ByteDataView copy = ByteDataView.of(data.copyByteData());
+				synchronized (buffer) {
+					buffer.add(copy);
+					bufferDescriptors.add(descriptor);
+				}
+			} else {
+				super.accept(data, descriptor, handler);
+			}
+		}
+
+		private void flush(@Nonnull DiagnosticsHandler handler) {
+			synchronized (buffer) {
+				for (int i = 0; i < buffer.size(); i++)
+					super.accept(buffer.get(i), bufferDescriptors.get(i), handler);
+				buffer.clear();
+				bufferDescriptors.clear();
+			}
+		}
+
+		@Override
+		public DataResourceConsumer getDataResourceConsumer() {
+			return isFirstSlice ? super.getDataResourceConsumer() : null;
+		}
+
+		@Override
+		public void finished(DiagnosticsHandler handler) {
+			// no-op, handled once all slices are written
+		}
+	}
+
+	/**
+	 * Tracks the methods of a class being lowered, in order to emit a {@link LowerClassEvent} spanning
+	 * from the start of the first method to the end of the last. Methods of a class may be spread across
+	 * multiple work units, so this may be called from multiple threads.
+	 */
+	private static class ClassEventTracker {
+		private final DexProgramClass programClass;
+		private final int methodCount;
+		private LowerClassEvent event;
+		private int remaining;
+		private int failed;
+
+		private ClassEventTracker(@Nonnull DexProgramClass programClass, int methodCount) {
+			this.programClass = programClass;
+			this.methodCount = methodCount;
+			this.remaining = methodCount;
+		}
+
+		private synchronized void methodStarted() {
+			if (event == null) {
+				event = new LowerClassEvent();
+				event.begin();
+			}
+		}
+
+		private synchronized void methodDone(boolean isFailure) {
+			if (isFailure)
+				failed++;
+			if (--remaining > 0)
+				return;
+			event.end();
+			if (event.shouldCommit()) {
+				event.className = programClass.getTypeName();
+				event.methodCount = methodCount;
+				event.codeBytes = EventSupport.codeBytes(Collections.singletonList(programClass));
+				event.failedMethodCount = failed;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Passes progress along to a {@link ProgressListener}, keeping running totals across all views of a conversion.
+	 */
+	private static class ProgressReporter {
+		private final ProgressListener listener;
+		private final AtomicInteger methodsLowered = new AtomicInteger();
+		private final int methodsToLower;
+		private int classesWritten;
+		private long bytesWritten;
+
+		private ProgressReporter(@Nonnull ProgressListener listener, int methodsToLower) {
+			this.listener = listener;
+			this.methodsToLower = methodsToLower;
+		}
+
+		private void phase(@Nonnull ProgressPhase phase) {
+			listener.onPhase(phase);
+		}
+
+		private void methodLowered() {
+			listener.onMethodLowered(methodsLowered.incrementAndGet(), methodsToLower);
+		}
+
+		private synchronized void written(int classCount, long byteCount) {
+			classesWritten += classCount;
+			bytesWritten += byteCount;
+			listener.onOutputWritten(classesWritten, bytesWritten);
+		}
+	}
+
+	/**
+	 * Lowering of a single method, run on the {@link ThreadPools#getTimeBudgetThreadPool() time budget pool}.
+	 */
+	private static class BudgetedLowering implements Runnable {
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private final Callable<CfCode> work;
+		private Thread runner;
+		private boolean abandoned;
+		private CfCode result;
+		private Throwable failure;
+
+		private BudgetedLowering(@Nonnull Callable<CfCode> work) {
+			this.work = work;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (abandoned) {
+					started.countDown();
+					finished.countDown();
+					return;
+				}
+				runner = Thread.currentThread();
+			}
+			started.countDown();
+			try {
+				result = work.call();
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				synchronized (this) {
+					runner = null;
+					if (abandoned)
+						RUNNING_ABANDONED_LOWERINGS.decrementAndGet();
+
+					// Clear any interrupt meant for this work, so it does not leak into the next task on this thread.
+					Thread.interrupted();
+				}
+				finished.countDown();
+			}
+		}
+
+		/**
+		 * Marks the work as abandoned. Work that has not started yet will not run at all.
+		 * Work that is still running is interrupted, though lowering does not check for interrupts,
+		 * so it generally runs out on its own.
+		 */
+		private synchronized void abandon() {
+			if (abandoned)
+				return;
+			abandoned = true;
+			if (runner == null)
+				return;
+			RUNNING_ABANDONED_LOWERINGS.incrementAndGet();
+			runner.interrupt();
+		}
+
+		/**
+		 * @return Lowered code, once finished.
+		 *
+		 * @throws Exception
+		 * 		When the method could not be converted.
+		 */
+		@Nonnull
+		private CfCode getResult() throws Exception {
+			if (failure instanceof Exception)
+				throw (Exception) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+			if (failure != null)
+				throw new ExecutionException(failure);
+			return result;
+		}
+	}
+
+	/**
+	 * Work units to lower with the same load-store optimization setting.
+	 */
+	private static class LoweringPass {
+		private final List<List<LoweringJob>> units;
+		private final boolean loadStore;
+
+		private LoweringPass(@Nonnull List<List<LoweringJob>> jobsPerClass, @Nonnull Options options,
+							 @Nonnull ExecutorService threadPool, boolean loadStore) {
+			this.loadStore = loadStore;
+			if (options.getLoweringSchedule() == LoweringSchedule.SIZE_AWARE) {
+				List<LoweringJob> jobs = new ArrayList<>();
+				for (List<LoweringJob> classJobs : jobsPerClass)
+					jobs.addAll(classJobs);
+				int parallelism = ThreadPools.getParallelism(threadPool);
+				units = LoweringScheduler.createWorkUnits(jobs, LoweringJob::getCost, parallelism);
+			} else {
+				units = jobsPerClass;
+			}
+		}
+	}
+
+	/**
+	 * Method with {@link DexCode} to lower into {@link CfCode}.
+	 */
+	private static class LoweringJob {
+		private final ProgramMethod method;
+		private final DexCode code;
+		private final int index;
+		private final long cost;
+		private ClassEventTracker eventTracker;
+
+		private LoweringJob(@Nonnull ProgramMethod method, @Nonnull DexCode code, int index) {
+			this.method = method;
+			this.code = code;
+			this.index = index;
+			this.cost = LoweringScheduler.estimateCost(code);
+		}
+
+		private long getCost() {
+			return cost;
+		}
 	}
-}
\ No newline at end of file
+}
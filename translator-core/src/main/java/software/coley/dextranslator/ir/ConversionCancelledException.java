@@ -0,0 +1,19 @@
+package software.coley.dextranslator.ir;
+
+import javax.annotation.Nullable;
+
+/**
+ * Thrown by {@link Conversion} processing when the thread running the conversion is interrupted.
+ * Work already handed off to the thread pool is stopped at the next method or class boundary.
+ *
+ * @author Matt Coley
+ */
+public class ConversionCancelledException extends ConversionException {
+	/**
+	 * @param cause
+	 * 		Cause exception, or {@code null} when the interrupt was observed without one.
+	 */
+	public ConversionCancelledException(@Nullable Throwable cause) {
+		super(cause, "Conversion was cancelled");
+	}
+}
@@ -2,8 +2,10 @@ package software.coley.dextranslator.ir;
 
 import com.android.tools.r8.graph.ProgramMethod;
 import software.coley.dextranslator.Options;
+import software.coley.dextranslator.util.PhaseTimings;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.List;
 
 /**
@@ -13,13 +15,40 @@ import java.util.List;
  */
 public class ConversionResult {
 	private final List<InvalidMethod> invalidMethods;
+	private final PhaseTimings timings;
+	private final MethodProfile methodProfile;
 
 	/**
 	 * @param invalidMethods
 	 * 		List of methods that could not be converted.
 	 */
 	public ConversionResult(@Nonnull List<InvalidMethod> invalidMethods) {
+		this(invalidMethods, null);
+	}
+
+	/**
+	 * @param invalidMethods
+	 * 		List of methods that could not be converted.
+	 * @param timings
+	 * 		Timings of the conversion phases, or {@code null} when not collected.
+	 */
+	public ConversionResult(@Nonnull List<InvalidMethod> invalidMethods, @Nullable PhaseTimings timings) {
+		this(invalidMethods, timings, null);
+	}
+
+	/**
+	 * @param invalidMethods
+	 * 		List of methods that could not be converted.
+	 * @param timings
+	 * 		Timings of the conversion phases, or {@code null} when not collected.
+	 * @param methodProfile
+	 * 		Profile of the time and memory spent on each method, or {@code null} when not collected.
+	 */
+	public ConversionResult(@Nonnull List<InvalidMethod> invalidMethods, @Nullable PhaseTimings timings,
+							@Nullable MethodProfile methodProfile) {
 		this.invalidMethods = invalidMethods;
+		this.timings = timings;
+		this.methodProfile = methodProfile;
 	}
 
 	/**
@@ -32,6 +61,26 @@ public class ConversionResult {
 		return invalidMethods;
 	}
 
+	/**
+	 * @return Timings of the conversion phases, or {@code null} when not collected.
+	 *
+	 * @see Options#setCollectTimings(boolean)
+	 */
+	@Nullable
+	public PhaseTimings getTimings() {
+		return timings;
+	}
+
+	/**
+	 * @return Profile of the time and memory spent lowering each method, or {@code null} when not collected.
+	 *
+	 * @see Options#setMethodProfileSize(int)
+	 */
+	@Nullable
+	public MethodProfile getMethodProfile() {
+		return methodProfile;
+	}
+
 	/**
 	 * Outline of problematic methods in conversion.
 	 */
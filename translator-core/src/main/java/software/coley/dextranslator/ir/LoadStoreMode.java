@@ -0,0 +1,26 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.graph.CfCode;
+import software.coley.dextranslator.Options;
+
+/**
+ * Which methods receive load-store optimization when lowering into {@link CfCode}.
+ *
+ * @author Matt Coley
+ * @see Options#enableLoadStoreOptimization()
+ * @see Options#enableSelectiveLoadStoreOptimization(LoadStoreSelector)
+ */
+public enum LoadStoreMode {
+	/**
+	 * No methods are optimized.
+	 */
+	OFF,
+	/**
+	 * All methods are optimized.
+	 */
+	ALL,
+	/**
+	 * Only methods matched by a {@link LoadStoreSelector} are optimized.
+	 */
+	SELECTIVE
+}
@@ -0,0 +1,159 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.graph.DexCode;
+import com.android.tools.r8.graph.ProgramMethod;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.TranslationCache;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Selects methods to apply load-store optimization to, for {@link LoadStoreMode#SELECTIVE}.
+ * <p>
+ * The {@link #toString()} of a selector is included in the {@link Options#getOutputFingerprint() output fingerprint}
+ * so that cached outputs are only re-used for the same selection. Selectors created by the factory methods here
+ * describe their selection, while any other implementation should do the same to benefit from caching.
+ *
+ * @author Matt Coley
+ * @see Options#enableSelectiveLoadStoreOptimization(LoadStoreSelector)
+ */
+public interface LoadStoreSelector {
+	/**
+	 * @param method
+	 * 		Method about to be lowered.
+	 * @param code
+	 * 		Dalvik code of the method.
+	 *
+	 * @return {@code true} to optimize the method.
+	 */
+	boolean test(@Nonnull ProgramMethod method, @Nonnull DexCode code);
+
+	/**
+	 * @param other
+	 * 		Another selector.
+	 *
+	 * @return Selector matching methods matched by this selector, or the other.
+	 */
+	@Nonnull
+	default LoadStoreSelector or(@Nonnull LoadStoreSelector other) {
+		LoadStoreSelector self = this;
+		return describe("(" + self + "|" + other + ")",
+				(method, code) -> self.test(method, code) || other.test(method, code));
+	}
+
+	/**
+	 * @param other
+	 * 		Another selector.
+	 *
+	 * @return Selector matching methods matched by both this selector and the other.
+	 */
+	@Nonnull
+	default LoadStoreSelector and(@Nonnull LoadStoreSelector other) {
+		LoadStoreSelector self = this;
+		return describe("(" + self + "&" + other + ")",
+				(method, code) -> self.test(method, code) && other.test(method, code));
+	}
+
+	/**
+	 * @param minimum
+	 * 		Minimum number of Dalvik instructions.
+	 *
+	 * @return Selector matching methods with at least the given number of instructions.
+	 */
+	@Nonnull
+	static LoadStoreSelector minInstructions(int minimum) {
+		return describe("minInstructions:" + minimum, (method, code) -> code.instructions.length >= minimum);
+	}
+
+	/**
+	 * @param internalNames
+	 * 		Internal names of classes to optimize all methods of. For example {@code java/lang/String}.
+	 *
+	 * @return Selector matching methods declared in the given classes.
+	 */
+	@Nonnull
+	static LoadStoreSelector inClasses(@Nonnull Collection<String> internalNames) {
+		Set<String> names = new HashSet<>(internalNames);
+		return describe("classes:" + digestOf(names), (method, code) ->
+				names.contains(method.getHolder().getTypeName().replace('.', '/')));
+	}
+
+	/**
+	 * @param methodKeys
+	 * 		Methods to optimize, formatted as the internal name of the declaring class, a {@code .},
+	 * 		then the method name and descriptor. For example {@code java/lang/String.length()I}.
+	 *
+	 * @return Selector matching the given methods.
+	 */
+	@Nonnull
+	static LoadStoreSelector inMethods(@Nonnull Collection<String> methodKeys) {
+		Set<String> keys = new HashSet<>(methodKeys);
+		return describe("methods:" + digestOf(keys), (method, code) -> keys.contains(methodKey(method)));
+	}
+
+	/**
+	 * @param profile
+	 * 		Profile of a prior conversion, such as from {@link ConversionResult#getMethodProfile()}.
+	 *
+	 * @return Selector matching the slowest methods recorded in the profile.
+	 */
+	@Nonnull
+	static LoadStoreSelector hotMethods(@Nonnull MethodProfile profile) {
+		Set<String> keys = new HashSet<>();
+		for (MethodProfile.MethodSample sample : profile.getSlowestMethods())
+			keys.add(methodKey(sample.getHolderName(), sample.getName(), sample.getDescriptor()));
+		return inMethods(keys);
+	}
+
+	/**
+	 * @param method
+	 * 		Some method.
+	 *
+	 * @return Key of the method as used by {@link #inMethods(Collection)}.
+	 */
+	@Nonnull
+	static String methodKey(@Nonnull ProgramMethod method) {
+		return methodKey(method.getHolder().getTypeName(), method.getName().toString(),
+				String.valueOf(method.getDefinition().descriptor()));
+	}
+
+	/**
+	 * @param holderName
+	 * 		Name of the class declaring the method.
+	 * @param name
+	 * 		Method name.
+	 * @param descriptor
+	 * 		Method descriptor.
+	 *
+	 * @return Key of the method as used by {@link #inMethods(Collection)}.
+	 */
+	@Nonnull
+	static String methodKey(@Nonnull String holderName, @Nonnull String name, @Nonnull String descriptor) {
+		return holderName.replace('.', '/') + "." + name + descriptor;
+	}
+
+	@Nonnull
+	private static String digestOf(@Nonnull Set<String> values) {
+		// Sorted so that equal selections give equal descriptions.
+		return TranslationCache.createKey(new TreeSet<>(values).toArray(new String[0]));
+	}
+
+	@Nonnull
+	private static LoadStoreSelector describe(@Nonnull String description, @Nonnull LoadStoreSelector selector) {
+		return new LoadStoreSelector() {
+			@Override
+			public boolean test(@Nonnull ProgramMethod method, @Nonnull DexCode code) {
+				return selector.test(method, code);
+			}
+
+			@Override
+			public String toString() {
+				return description;
+			}
+		};
+	}
+}
@@ -0,0 +1,27 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.graph.CfCode;
+import com.android.tools.r8.graph.DexCode;
+
+/**
+ * Order in which {@link Conversion} hands off the work of lowering {@link DexCode} into {@link CfCode}.
+ *
+ * @author Matt Coley
+ */
+public enum LoweringSchedule {
+	/**
+	 * Each class is a unit of work, handed off in the order the classes appear in the application.
+	 * This is the default schedule. It does no planning up front, and the methods of a class are lowered together.
+	 */
+	FIFO,
+	/**
+	 * Methods are ordered by their {@link LoweringScheduler#estimateCost(DexCode) estimated cost}.
+	 * The most expensive methods are started first, and the remaining methods are grouped into units of similar cost.
+	 * This prevents a few large methods picked up late from dictating the total time.
+	 * <p>
+	 * Not the default: it only pays off when a few methods dominate the lowering time, and its cost estimates and
+	 * planning are extra work on every conversion. No p50/p99 comparison over {@link #FIFO} has been recorded yet,
+	 * so it stays opt-in until {@code LoweringScheduleBenchmark} shows it is no slower on typical inputs.
+	 */
+	SIZE_AWARE
+}
@@ -0,0 +1,136 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.graph.DexCode;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Work unit planning for {@link LoweringSchedule#SIZE_AWARE}.
+ *
+ * @author Matt Coley
+ */
+public class LoweringScheduler {
+	/**
+	 * Number of work units to aim for per thread. Having more than one unit per thread allows
+	 * threads that finish early to pick up remaining work, smoothing out errors in the cost estimates.
+	 */
+	private static final int UNITS_PER_THREAD = 4;
+
+	/**
+	 * Estimates the relative cost of building IR for the given code, and lowering it back down.
+	 * <p>
+	 * Building IR is linear in the number of instructions, but SSA construction also scales with the
+	 * number of registers that values can flow through, and each try range adds exceptional edges
+	 * to the blocks it covers.
+	 *
+	 * @param code
+	 * 		Method code to estimate the cost of.
+	 *
+	 * @return Relative cost of the code. Only meaningful when compared to the costs of other code.
+	 */
+	public static long estimateCost(@Nonnull DexCode code) {
+		long instructions = code.instructions.length;
+		long registers = code.registerSize;
+		long tries = code.tries.length;
+		return 1 + instructions + (instructions * registers) / 16 + tries * 32;
+	}
+
+	/**
+	 * Creates work units from the given items.
+	 * <ul>
+	 *     <li>Items with a cost larger than a fair share of the total are placed in their own units, first.</li>
+	 *     <li>The remaining items are spread over units so that each has a similar total cost.</li>
+	 * </ul>
+	 * Units are returned in descending order of cost, so that the most expensive work is started first.
+	 *
+	 * @param items
+	 * 		Items to split into units.
+	 * @param costFunction
+	 * 		Function to provide the cost of an item.
+	 * @param parallelism
+	 * 		Number of threads the units will be run on.
+	 * @param <T>
+	 * 		Item type.
+	 *
+	 * @return Units of work.
+	 */
+	@Nonnull
+	public static <T> List<List<T>> createWorkUnits(@Nonnull List<T> items,
+													@Nonnull ToLongFunction<T> costFunction,
+													int parallelism) {
+		if (items.isEmpty())
+			return Collections.emptyList();
+
+		// Sort by descending cost. The sort is stable, so items of equal cost retain their original order.
+		long total = 0;
+		List<Weighted<T>> sorted = new ArrayList<>(items.size());
+		for (T item : items) {
+			long cost = Math.max(1, costFunction.applyAsLong(item));
+			sorted.add(new Weighted<>(item, cost));
+			total += cost;
+		}
+		sorted.sort(Comparator.comparingLong((Weighted<T> w) -> w.cost).reversed());
+
+		// Anything at or above the target unit cost gets its own unit.
+		long target = Math.max(1, total / ((long) Math.max(1, parallelism) * UNITS_PER_THREAD));
+		List<List<T>> units = new ArrayList<>();
+		int i = 0;
+		long remaining = total;
+		for (; i < sorted.size(); i++) {
+			Weighted<T> weighted = sorted.get(i);
+			if (weighted.cost < target)
+				break;
+			units.add(Collections.singletonList(weighted.item));
+			remaining -= weighted.cost;
+		}
+		if (i == sorted.size())
+			return units;
+
+		// Spread the rest over bins, always filling the least loaded bin next.
+		// Since items are visited from most to least expensive, the bins end up close in total cost.
+		int binCount = (int) Math.min(sorted.size() - i, (remaining + target - 1) / target);
+		PriorityQueue<Bin<T>> bins = new PriorityQueue<>(Comparator.comparingLong((Bin<T> b) -> b.cost)
+				.thenComparingInt(b -> b.id));
+		for (int b = 0; b < binCount; b++)
+			bins.add(new Bin<>(b));
+		for (; i < sorted.size(); i++) {
+			Weighted<T> weighted = sorted.get(i);
+			Bin<T> bin = bins.poll();
+			bin.items.add(weighted.item);
+			bin.cost += weighted.cost;
+			bins.add(bin);
+		}
+		List<Bin<T>> filledBins = new ArrayList<>(bins);
+		filledBins.sort(Comparator.comparingLong((Bin<T> b) -> b.cost).reversed()
+				.thenComparingInt(b -> b.id));
+		for (Bin<T> bin : filledBins)
+			units.add(bin.items);
+		return units;
+	}
+
+	private static class Weighted<T> {
+		private final T item;
+		private final long cost;
+
+		private Weighted(T item, long cost) {
+			this.item = item;
+			this.cost = cost;
+		}
+	}
+
+	private static class Bin<T> {
+		private final List<T> items = new ArrayList<>();
+		private final int id;
+		private long cost;
+
+		private Bin(int id) {
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.graph.ProgramMethod;
+import software.coley.dextranslator.Options;
+
+import javax.annotation.Nonnull;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Profile of the time and memory spent lowering each method in a conversion.
+ * Only the slowest methods are retained individually, while all methods are counted in a latency histogram.
+ *
+ * @author Matt Coley
+ * @see Options#setMethodProfileSize(int)
+ */
+public class MethodProfile {
+	/**
+	 * Histogram buckets cover durations up to {@code 2^i} microseconds, with the last bucket holding everything longer.
+	 */
+	private static final int BUCKET_COUNT = 22;
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+	private static final boolean ALLOCATIONS_SUPPORTED = isAllocationTrackingSupported();
+	private static volatile boolean allocationsEnabled;
+	private final PriorityQueue<MethodSample> slowest = new PriorityQueue<>(Comparator.comparingLong(MethodSample::getWallNanos));
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+	private final int size;
+
+	/**
+	 * @param size
+	 * 		Number of slowest methods to retain.
+	 */
+	public MethodProfile(int size) {
+		this.size = Math.max(1, size);
+		enableAllocationTracking();
+	}
+
+	/**
+	 * @return Bytes allocated by the current thread so far, or {@code -1} when the JVM does not track allocations.
+	 */
+	static long currentThreadAllocatedBytes() {
+		if (!allocationsEnabled)
+			return -1;
+		return ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @param method
+	 * 		Method that was lowered.
+	 * @param wallNanos
+	 * 		Wall-clock time spent on the method.
+	 * @param allocatedBytes
+	 * 		Bytes allocated while lowering the method, or {@code -1} if unknown.
+	 */
+	void record(@Nonnull ProgramMethod method, long wallNanos, long allocatedBytes) {
+		histogram.incrementAndGet(bucketOf(wallNanos));
+		synchronized (slowest) {
+			if (slowest.size() < size) {
+				slowest.add(MethodSample.of(method, wallNanos, allocatedBytes));
+			} else if (slowest.peek().getWallNanos() < wallNanos) {
+				slowest.poll();
+				slowest.add(MethodSample.of(method, wallNanos, allocatedBytes));
+			}
+		}
+	}
+
+	/**
+	 * @return Slowest methods, slowest first.
+	 */
+	@Nonnull
+	public List<MethodSample> getSlowestMethods() {
+		List<MethodSample> samples;
+		synchronized (slowest) {
+			samples = new ArrayList<>(slowest);
+		}
+		samples.sort(Comparator.comparingLong(MethodSample::getWallNanos).reversed());
+		return samples;
+	}
+
+	/**
+	 * @return Number of methods in each latency bucket.
+	 *
+	 * @see #getBucketUpperBoundNanos(int)
+	 */
+	@Nonnull
+	public long[] getLatencyHistogram() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			counts[i] = histogram.get(i);
+		return counts;
+	}
+
+	/**
+	 * @param bucket
+	 * 		Histogram bucket index.
+	 *
+	 * @return Exclusive upper bound of durations in the bucket, in nanoseconds.
+	 * The last bucket is unbounded, and yields {@link Long#MAX_VALUE}.
+	 */
+	public static long getBucketUpperBoundNanos(int bucket) {
+		if (bucket >= BUCKET_COUNT - 1)
+			return Long.MAX_VALUE;
+		return (1L << bucket) * 1000L;
+	}
+
+	/**
+	 * @return Number of methods profiled.
+	 */
+	public long getMethodCount() {
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			total += histogram.get(i);
+		return total;
+	}
+
+	/**
+	 * @return Report of the slowest methods and the latency histogram.
+	 */
+	@Nonnull
+	public String toPrettyString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Slowest methods:\n");
+		for (MethodSample sample : getSlowestMethods()) {
+			sb.append(String.format(Locale.ROOT, " - %s ==> %.3fms", sample, sample.getWallNanos() / 1_000_000.0));
+			if (sample.getAllocatedBytes() >= 0)
+				sb.append(String.format(Locale.ROOT, ", %d KiB allocated", sample.getAllocatedBytes() / 1024));
+			sb.append('\n');
+		}
+		sb.append("Latency histogram:\n");
+		long[] counts = getLatencyHistogram();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0)
+				continue;
+			long bound = getBucketUpperBoundNanos(i);
+			String label = bound == Long.MAX_VALUE ?
+					">= " + (getBucketUpperBoundNanos(i - 1) / 1000) + "us" :
+					"< " + (bound / 1000) + "us";
+			sb.append(" - ").append(label).append(": ").append(counts[i]).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static int bucketOf(long wallNanos) {
+		long micros = wallNanos / 1000;
+		int bucket = 0;
+		while (bucket < BUCKET_COUNT - 1 && micros >= (1L << bucket))
+			bucket++;
+		return bucket;
+	}
+
+	private static boolean isAllocationTrackingSupported() {
+		try {
+			return THREAD_BEAN instanceof com.sun.management.ThreadMXBean &&
+					((com.sun.management.ThreadMXBean) THREAD_BEAN).isThreadAllocatedMemorySupported();
+		} catch (Throwable t) {
+			// Not available on this JVM
+			return false;
+		}
+	}
+
+	/**
+	 * Allocation tracking is a setting of the whole JVM, so it is only turned on once a profile is requested.
+	 */
+	private static void enableAllocationTracking() {
+		if (!ALLOCATIONS_SUPPORTED || allocationsEnabled)
+			return;
+		synchronized (MethodProfile.class) {
+			if (allocationsEnabled)
+				return;
+			try {
+				com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+				if (!bean.isThreadAllocatedMemoryEnabled())
+					bean.setThreadAllocatedMemoryEnabled(true);
+				allocationsEnabled = true;
+			} catch (Throwable t) {
+				// Not permitted on this JVM, allocations are reported as unknown
+			}
+		}
+	}
+
+	/**
+	 * Time and memory spent lowering a single method.
+	 * Only the names of the method are held, so samples do not keep the converted application alive.
+	 */
+	public static class MethodSample {
+		private final String holderName;
+		private final String name;
+		private final String descriptor;
+		private final long wallNanos;
+		private final long allocatedBytes;
+
+		private MethodSample(@Nonnull String holderName, @Nonnull String name, @Nonnull String descriptor,
+							 long wallNanos, long allocatedBytes) {
+			this.holderName = holderName;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.wallNanos = wallNanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		@Nonnull
+		private static MethodSample of(@Nonnull ProgramMethod method, long wallNanos, long allocatedBytes) {
+			return new MethodSample(method.getHolder().getTypeName(), method.getName().toString(),
+					String.valueOf(method.getDefinition().descriptor()), wallNanos, allocatedBytes);
+		}
+
+		/**
+		 * @return Name of the class declaring the method.
+		 */
+		@Nonnull
+		public String getHolderName() {
+			return holderName;
+		}
+
+		/**
+		 * @return Method name.
+		 */
+		@Nonnull
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Method descriptor.
+		 */
+		@Nonnull
+		public String getDescriptor() {
+			return descriptor;
+		}
+
+		/**
+		 * @return Wall-clock time spent on the method, in nanoseconds.
+		 */
+		public long getWallNanos() {
+			return wallNanos;
+		}
+
+		/**
+		 * @return Bytes allocated while lowering the method, or {@code -1} if unknown.
+		 */
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return getHolderName() + "." + getName() + getDescriptor();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package software.coley.dextranslator.ir;
+
+import com.android.tools.r8.cf.code.*;
+import com.android.tools.r8.dex.code.*;
+import com.android.tools.r8.graph.*;
+import com.android.tools.r8.ir.code.ValueType;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Options;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Direct lowering of trivial {@link DexCode} shapes into {@link CfCode}, skipping IR construction.
+ * <p>
+ * Supported shapes:
+ * <ul>
+ *     <li>{@code return-void}</li>
+ *     <li>Constructors only delegating to another constructor with the same arguments</li>
+ *     <li>Instance field getters and setters on {@code this}</li>
+ *     <li>Static field getters</li>
+ *     <li>Returning a constant from {@code const/4} or {@code const/16}</li>
+ * </ul>
+ * Code with try ranges or debug info is never matched, as the templates do not reproduce them.
+ *
+ * @author Matt Coley
+ * @see Options#setTrivialMethodFastPath(boolean)
+ */
+public class TrivialMethodLowering {
+	/**
+	 * @param method
+	 * 		Method the code belongs to.
+	 * @param code
+	 * 		Code of the method.
+	 *
+	 * @return Equivalent JVM code, or {@code null} when the code does not match any supported shape.
+	 */
+	@Nullable
+	public static CfCode tryLower(@Nonnull ProgramMethod method, @Nonnull DexCode code) {
+		if (code.tries.length > 0 || code.getDebugInfo() != null)
+			return null;
+		DexInstruction[] instructions = code.instructions;
+		if (instructions.length == 1)
+			return lowerSingle(method, code, instructions[0]);
+		if (instructions.length == 2)
+			return lowerPair(method, code, instructions[0], instructions[1]);
+		return null;
+	}
+
+	@Nullable
+	private static CfCode lowerSingle(@Nonnull ProgramMethod method, @Nonnull DexCode code,
+									  @Nonnull DexInstruction instruction) {
+		if (instruction instanceof DexReturnVoid)
+			return create(method, code, 0, new CfReturnVoid());
+		return null;
+	}
+
+	@Nullable
+	private static CfCode lowerPair(@Nonnull ProgramMethod method, @Nonnull DexCode code,
+									@Nonnull DexInstruction first, @Nonnull DexInstruction second) {
+		DexEncodedMethod definition = method.getDefinition();
+		int firstArgRegister = code.registerSize - code.incomingRegisterSize;
+		DexType returnType = method.getReturnType();
+
+		if (second instanceof DexReturnVoid) {
+			// Constructor delegation: invoke-direct {p0, ...}, <init> ; return-void
+			if (first instanceof DexInvokeDirect && definition.isInstanceInitializer())
+				return lowerConstructorDelegation(method, code, (DexInvokeDirect) first, firstArgRegister);
+
+			// Setter: iput pA, p0, field ; return-void
+			if (isInstancePut(first) && !definition.isStatic()) {
+				DexFormat22c<?> put = (DexFormat22c<?>) first;
+				DexField field = (DexField) put.CCCC;
+				if (put.B != firstArgRegister || put.A <= firstArgRegister)
+					return null;
+				ValueType fieldType = ValueType.fromDexType(field.type);
+				return create(method, code, 1 + fieldType.requiredRegisters(),
+						new CfLoad(ValueType.OBJECT, 0),
+						new CfLoad(fieldType, put.A - firstArgRegister),
+						new CfInstanceFieldWrite(field),
+						new CfReturnVoid());
+			}
+			return null;
+		}
+
+		// All remaining shapes return the value produced by the first instruction.
+		int returnRegister = returnedRegister(second, returnType);
+		if (returnRegister < 0)
+			return null;
+		ValueType valueType = ValueType.fromDexType(returnType);
+
+		// Getter: iget vX, p0, field ; return vX
+		if (isInstanceGet(first) && !definition.isStatic()) {
+			DexFormat22c<?> get = (DexFormat22c<?>) first;
+			DexField field = (DexField) get.CCCC;
+			if (get.B != firstArgRegister || get.A != returnRegister)
+				return null;
+			return create(method, code, Math.max(1, ValueType.fromDexType(field.type).requiredRegisters()),
+					new CfLoad(ValueType.OBJECT, 0),
+					new CfInstanceFieldRead(field),
+					new CfReturn(valueType));
+		}
+
+		// Static getter: sget vX, field ; return vX
+		if (isStaticGet(first)) {
+			DexFormat21c<?> get = (DexFormat21c<?>) first;
+			DexField field = (DexField) get.BBBB;
+			if (get.AA != returnRegister)
+				return null;
+			return create(method, code, ValueType.fromDexType(field.type).requiredRegisters(),
+					new CfStaticFieldRead(field),
+					new CfReturn(valueType));
+		}
+
+		// Constant: const vX, #literal ; return vX
+		// Wide constants use different instructions, so only single register values are handled.
+		long literal;
+		if (first instanceof DexConst4 && ((DexConst4) first).A == returnRegister) {
+			literal = ((DexConst4) first).B;
+		} else if (first instanceof DexConst16 && ((DexConst16) first).AA == returnRegister) {
+			literal = ((DexConst16) first).BBBB;
+		} else {
+			return null;
+		}
+		if (valueType.isObject()) {
+			// Only zero can be used as a reference, as null
+			if (literal != 0)
+				return null;
+			return create(method, code, 1, new CfConstNull(), new CfReturn(valueType));
+		}
+		if (valueType.isWide())
+			return null;
+		return create(method, code, 1, new CfConstNumber(literal, valueType), new CfReturn(valueType));
+	}
+
+	@Nullable
+	private static CfCode lowerConstructorDelegation(@Nonnull ProgramMethod method, @Nonnull DexCode code,
+													 @Nonnull DexInvokeDirect invoke, int firstArgRegister) {
+		DexMethod target = (DexMethod) invoke.BBBB;
+		if (!"<init>".equals(target.getName().toString()))
+			return null;
+
+		// Only delegation to our own class, or our direct parent, is a plain constructor chain.
+		DexType targetHolder = target.getHolderType();
+		if (targetHolder != method.getHolderType() && targetHolder != method.getHolder().getSuperType())
+			return null;
+
+		// The arguments must be our own incoming registers, passed along in order.
+		int[] registers = {invoke.C, invoke.D, invoke.E, invoke.F, invoke.G};
+		int count = invoke.A;
+		if (count != code.incomingRegisterSize)
+			return null;
+		for (int i = 0; i < count; i++)
+			if (registers[i] != firstArgRegister + i)
+				return null;
+
+		// Load 'this' and each parameter, accounting for wide values taking two slots.
+		List<CfInstruction> instructions = new ArrayList<>();
+		instructions.add(new CfLoad(ValueType.OBJECT, 0));
+		int local = 1;
+		for (DexType parameterType : target.getParameters()) {
+			ValueType parameterValueType = ValueType.fromDexType(parameterType);
+			instructions.add(new CfLoad(parameterValueType, local));
+			local += parameterValueType.requiredRegisters();
+		}
+		if (local != count)
+			return null;
+		instructions.add(new CfInvoke(Opcodes.INVOKESPECIAL, target, false));
+		instructions.add(new CfReturnVoid());
+		return new CfCode(method.getHolderType(), count, code.incomingRegisterSize, instructions);
+	}
+
+	/**
+	 * @param instruction
+	 * 		Instruction to check.
+	 * @param returnType
+	 * 		Return type of the method.
+	 *
+	 * @return Register returned by the instruction, if it is a return suitable for the given type.
+	 * Otherwise {@code -1}.
+	 */
+	private static int returnedRegister(@Nonnull DexInstruction instruction, @Nonnull DexType returnType) {
+		if (returnType.isVoidType())
+			return -1;
+		if (instruction instanceof DexReturnObject && returnType.isReferenceType())
+			return ((DexReturnObject) instruction).AA;
+		if (instruction instanceof DexReturnWide && returnType.isWideType())
+			return ((DexReturnWide) instruction).AA;
+		if (instruction instanceof DexReturn && returnType.isPrimitiveType() && !returnType.isWideType())
+			return ((DexReturn) instruction).AA;
+		return -1;
+	}
+
+	private static boolean isInstanceGet(@Nonnull DexInstruction instruction) {
+		return instruction instanceof DexIget || instruction instanceof DexIgetWide ||
+				instruction instanceof DexIgetObject || instruction instanceof DexIgetBoolean ||
+				instruction instanceof DexIgetByte || instruction instanceof DexIgetChar ||
+				instruction instanceof DexIgetShort;
+	}
+
+	private static boolean isInstancePut(@Nonnull DexInstruction instruction) {
+		return instruction instanceof DexIput || instruction instanceof DexIputWide ||
+				instruction instanceof DexIputObject || instruction instanceof DexIputBoolean ||
+				instruction instanceof DexIputByte || instruction instanceof DexIputChar ||
+				instruction instanceof DexIputShort;
+	}
+
+	private static boolean isStaticGet(@Nonnull DexInstruction instruction) {
+		return instruction instanceof DexSget || instruction instanceof DexSgetWide ||
+				instruction instanceof DexSgetObject || instruction instanceof DexSgetBoolean ||
+				instruction instanceof DexSgetByte || instruction instanceof DexSgetChar ||
+				instruction instanceof DexSgetShort;
+	}
+
+	@Nonnull
+	private static CfCode create(@Nonnull ProgramMethod method, @Nonnull DexCode code, int maxStack,
+								 @Nonnull CfInstruction... instructions) {
+		List<CfInstruction> list = new ArrayList<>(instructions.length);
+		for (CfInstruction instruction : instructions)
+			list.add(instruction);
+		return new CfCode(method.getHolderType(), maxStack, code.incomingRegisterSize, list);
+	}
+}
@@ -0,0 +1,28 @@
+package software.coley.dextranslator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the D8 conversion of an application view.
+ *
+ * @author Matt Coley
+ */
+@Name("software.coley.dextranslator.D8Conversion")
+@Label("D8 Conversion")
+@Category("Dex Translator")
+@Description("Processing of classes by the D8 converter")
+public class D8ConversionEvent extends Event {
+	@Label("Target")
+	@Description("Output platform, either 'jvm' or 'dex'")
+	public String target;
+
+	@Label("Class Count")
+	public int classCount;
+
+	@Label("Method Count")
+	public int methodCount;
+}
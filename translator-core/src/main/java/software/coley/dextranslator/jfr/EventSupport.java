@@ -0,0 +1,59 @@
+package software.coley.dextranslator.jfr;
+
+import com.android.tools.r8.dex.code.DexInstruction;
+import com.android.tools.r8.graph.Code;
+import com.android.tools.r8.graph.DexCode;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Utilities for filling in event fields. These are only called once an event is known to be recorded.
+ *
+ * @author Matt Coley
+ */
+public class EventSupport {
+	/**
+	 * @param code
+	 * 		Some method code.
+	 *
+	 * @return Size of the code in bytes if it is Dalvik code, otherwise {@code 0}.
+	 */
+	public static long codeBytes(Code code) {
+		if (!(code instanceof DexCode))
+			return 0;
+		long codeUnits = 0;
+		for (DexInstruction instruction : ((DexCode) code).instructions)
+			codeUnits += instruction.getSize();
+		return codeUnits * 2;
+	}
+
+	/**
+	 * @param classes
+	 * 		Some classes.
+	 *
+	 * @return Number of methods declared across the classes.
+	 */
+	public static int methodCount(@Nonnull Iterable<DexProgramClass> classes) {
+		int count = 0;
+		for (DexProgramClass programClass : classes)
+			for (DexEncodedMethod ignored : programClass.methods())
+				count++;
+		return count;
+	}
+
+	/**
+	 * @param classes
+	 * 		Some classes.
+	 *
+	 * @return Total size of Dalvik method code across the classes.
+	 */
+	public static long codeBytes(@Nonnull Iterable<DexProgramClass> classes) {
+		long bytes = 0;
+		for (DexProgramClass programClass : classes)
+			for (DexEncodedMethod method : programClass.methods())
+				bytes += codeBytes(method.getCode());
+		return bytes;
+	}
+}
@@ -0,0 +1,35 @@
+package software.coley.dextranslator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for loading an application model from inputs.
+ *
+ * @author Matt Coley
+ */
+@Name("software.coley.dextranslator.Load")
+@Label("Load Application")
+@Category("Dex Translator")
+@Description("Reading inputs into an application model")
+public class LoadEvent extends Event {
+	@Label("Class Count")
+	public int classCount;
+
+	@Label("Method Count")
+	public int methodCount;
+
+	@Label("Code Size")
+	@Description("Total size of method code in the loaded classes")
+	@DataAmount
+	public long codeBytes;
+
+	@Label("Bytes Read")
+	@Description("Size of program content read from disk, with archive content counted once inflated")
+	@DataAmount
+	public long bytesRead;
+}
@@ -0,0 +1,34 @@
+package software.coley.dextranslator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for lowering the Dalvik method code of a class into JVM method code.
+ * The event spans from when the first method of the class is started, to when the last one is done.
+ *
+ * @author Matt Coley
+ */
+@Name("software.coley.dextranslator.LowerClass")
+@Label("Lower Class")
+@Category("Dex Translator")
+@Description("Lowering Dalvik method code of a class into JVM method code")
+public class LowerClassEvent extends Event {
+	@Label("Class Name")
+	public String className;
+
+	@Label("Method Count")
+	public int methodCount;
+
+	@Label("Code Size")
+	@Description("Total size of the Dalvik method code of the class")
+	@DataAmount
+	public long codeBytes;
+
+	@Label("Failed Method Count")
+	public int failedMethodCount;
+}
@@ -0,0 +1,31 @@
+package software.coley.dextranslator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for writing converted classes to the output.
+ *
+ * @author Matt Coley
+ */
+@Name("software.coley.dextranslator.Write")
+@Label("Write Output")
+@Category("Dex Translator")
+@Description("Writing converted classes to the output consumer")
+public class WriteEvent extends Event {
+	@Label("Target")
+	@Description("Output platform, either 'jvm' or 'dex'")
+	public String target;
+
+	@Label("Class Count")
+	public int classCount;
+
+	@Label("Output Size")
+	@Description("Total size of the class or DEX files passed to the output consumer")
+	@DataAmount
+	public long outputBytes;
+}
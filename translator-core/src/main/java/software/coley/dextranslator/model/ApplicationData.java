@@ -8,16 +8,32 @@ import com.android.tools.r8.synthesis.SyntheticItems;
 import com.android.tools.r8.utils.*;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.ClassContentHasher;
+import software.coley.dextranslator.cache.ExportCache;
+import software.coley.dextranslator.cache.JdkClassIndex;
 import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.ConversionCancelledException;
 import software.coley.dextranslator.ir.ConversionD8ProcessingException;
 import software.coley.dextranslator.ir.ConversionExportException;
 import software.coley.dextranslator.ir.ConversionIRReplacementException;
+import software.coley.dextranslator.jfr.EventSupport;
+import software.coley.dextranslator.jfr.LoadEvent;
+import software.coley.dextranslator.progress.ProgressListener;
+import software.coley.dextranslator.progress.ProgressPhase;
+import software.coley.dextranslator.util.ArchivePrefetcher;
+import software.coley.dextranslator.util.ClassFilters;
+import software.coley.dextranslator.util.CountingResourceProvider;
+import software.coley.dextranslator.util.JarArchiveResourceProvider;
+import software.coley.dextranslator.util.PhaseTimings;
 import software.coley.dextranslator.util.ThreadPools;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -30,6 +46,10 @@ public class ApplicationData {
 	private final AndroidApp inputApplication;
 	private Supplier<Options> operationOptionsProvider = Options::new;
 	private DexApplication application;
+	private ExportCache exportCache;
+	private PhaseTimings loadTimings;
+	private LoadStatistics loadStatistics;
+	private DeduplicationReport deduplicationReport;
 
 	/**
 	 * @param inputApplication
@@ -60,23 +80,117 @@ public class ApplicationData {
 	 */
 	@Nonnull
 	public static ApplicationData from(@Nonnull Inputs inputs, @Nonnull InternalOptions options) throws IOException {
+		return from(inputs, options, PhaseTimings.empty(), null, Options.DEFAULT_MAX_OPEN_ARCHIVES, null, null);
+	}
+
+	/**
+	 * @param inputs
+	 * 		Inputs to load from.
+	 * @param options
+	 * 		Options to use. When {@link Options#isCollectTimings() collecting timings} the
+	 * 		timings of the load are available from {@link #getLoadTimings()}.
+	 * 		Progress is reported to the {@link Options#getProgressListener() progress listener} if one is set.
+	 *
+	 * @return Application data of the content.
+	 *
+	 * @throws IOException
+	 * 		When content could not be read from the inputs,
+	 * 		when the supporting {@link JdkClassFileProvider} cannot be provided, or
+	 * 		when a class is defined differently by multiple inputs with the {@link DuplicateClassPolicy#FAIL} policy.
+	 */
+	@Nonnull
+	public static ApplicationData from(@Nonnull Inputs inputs, @Nonnull Options options) throws IOException {
+		PhaseTimings timings = options.isCollectTimings() ? PhaseTimings.create("Load") : PhaseTimings.empty();
+		return from(inputs, options.getInternalOptions(), timings, options.getProgressListener(),
+				options.getMaxOpenArchives(), options.getDuplicateClassPolicy(), options.getJdkClassIndex());
+	}
+
+	@Nonnull
+	private static ApplicationData from(@Nonnull Inputs inputs, @Nonnull InternalOptions options,
+										@Nonnull PhaseTimings timings,
+										@Nullable ProgressListener progressListener,
+										int maxOpenArchives,
+										@Nullable DuplicateClassPolicy duplicateClassPolicy,
+										@Nullable JdkClassIndex jdkClassIndex) throws IOException {
+		long start = System.nanoTime();
+		LoadEvent event = new LoadEvent();
+		event.begin();
+		if (progressListener != null)
+			progressListener.onPhase(ProgressPhase.LOADING);
+
 		// Create input model
+		timings.begin("Populate inputs");
 		AndroidApp.Builder builder = AndroidApp.builder();
 
 		// Allow D8 to access classes from the runtime.
 		// Required for de-sugaring and some optimization passes.
-		builder.addLibraryResourceProvider(systemJdkProvider());
+		builder.addLibraryResourceProvider(jdkClassIndex != null ? jdkClassIndex : systemJdkProvider());
 
 		// Load content from the inputs.
 		AndroidApp inputApplication = inputs.populate(builder).build();
+		timings.end();
+
+		// Begin reading archives ahead of the reader, so that inflating their entries overlaps across archives.
+		// Providers may be re-used across loads, so only what they read during this load is counted.
+		ExecutorService threadPool = ThreadPools.getMaxFixedThreadPool();
+		List<JarArchiveResourceProvider> archives = new ArrayList<>();
+		long bytesReadBefore = 0;
+		for (ProgramResourceProvider provider : inputApplication.getProgramResourceProviders()) {
+			if (provider instanceof JarArchiveResourceProvider)
+				archives.add((JarArchiveResourceProvider) provider);
+			if (provider instanceof CountingResourceProvider)
+				bytesReadBefore += ((CountingResourceProvider) provider).getBytesRead();
+		}
+		ArchivePrefetcher prefetcher = new ArchivePrefetcher(threadPool, maxOpenArchives);
+		prefetcher.prefetch(archives);
 
 		// Read the application data from the loaded content.
 		try {
-			ApplicationReader applicationReader = new ApplicationReader(inputApplication, options, Timing.empty());
-			DexApplication application = applicationReader.read(ThreadPools.getMaxFixedThreadPool());
-			return new ApplicationData(inputApplication, application);
+			// Drop duplicate program inputs before they are parsed. The reader is given a copy of the inputs
+			// holding only the kept program resources, while the original inputs are kept for export and closing.
+			AndroidApp readApplication = inputApplication;
+			DeduplicationReport deduplicationReport = null;
+			if (duplicateClassPolicy != null) {
+				timings.begin("Deduplicate inputs");
+				AndroidApp.Builder readBuilder = AndroidApp.builder();
+				inputApplication.getLibraryResourceProviders().forEach(readBuilder::addLibraryResourceProvider);
+				inputApplication.getClasspathResourceProviders().forEach(readBuilder::addClasspathResourceProvider);
+				deduplicationReport = new InputDeduplicator(duplicateClassPolicy).deduplicate(inputApplication, readBuilder);
+				readApplication = readBuilder.build();
+				timings.end();
+			}
+
+			timings.begin("Read application");
+			ApplicationReader applicationReader = new ApplicationReader(readApplication, options, Timing.empty());
+			DexApplication application = applicationReader.read(threadPool);
+			timings.end();
+			ApplicationData data = new ApplicationData(inputApplication, application);
+			data.deduplicationReport = deduplicationReport;
+			long bytesRead = -bytesReadBefore;
+			for (ProgramResourceProvider provider : inputApplication.getProgramResourceProviders())
+				if (provider instanceof CountingResourceProvider)
+					bytesRead += ((CountingResourceProvider) provider).getBytesRead();
+			data.loadStatistics = new LoadStatistics(bytesRead, application.classes().size(), archives.size(),
+					System.nanoTime() - start);
+			if (progressListener != null)
+				progressListener.onClassesRead(application.classes().size());
+			event.end();
+			if (event.shouldCommit()) {
+				event.classCount = application.classes().size();
+				event.methodCount = EventSupport.methodCount(application.classes());
+				event.codeBytes = EventSupport.codeBytes(application.classes());
+				event.bytesRead = data.loadStatistics.getBytesRead();
+				event.commit();
+			}
+			if (!timings.isEmpty()) {
+				timings.finish();
+				data.loadTimings = timings;
+			}
+			return data;
 		} finally {
-			// Close any internal archive providers now the application is fully processed.
+			// Stop reading ahead if loading failed, and close any internal archive providers
+			// now the application is fully processed.
+			prefetcher.cancel();
 			inputApplication.closeInternalArchiveProviders();
 		}
 	}
@@ -284,11 +398,18 @@ public class ApplicationData {
 	 * 		are to be converted, rather than the whole application.
 	 *
 	 * @return View of the application.
+	 * When a filter other than {@link ClassFilter#PASS_ALL} is given, only the classes matched by the filter and
+	 * the program classes they structurally depend on are copied. The remaining program classes are shared
+	 * with this model. They are hidden by the filter, but can still be resolved by the view as context.
 	 */
 	@Nonnull
 	public AppView<AppInfo> createView(@Nonnull InternalOptions optionsForView, @Nonnull ClassFilter filter) {
-		// Create a shallow-copy of the operation modifications do not affect the original copy held by our class.
-		DexApplication applicationCopy = copyApplication(optionsForView);
+		// Create a copy of the application so the operation's modifications do not affect the original held by our class.
+		// When filtering we only copy what can be modified, so the cost of creating the view
+		// scales with the filtered classes rather than the whole application.
+		DexApplication applicationCopy = filter == ClassFilter.PASS_ALL ?
+				copyApplication(optionsForView) :
+				copyApplication(optionsForView, collectViewClasses(filter));
 
 		// Synthesis strategy will almost always be single-output mode.
 		SyntheticItems.GlobalSyntheticsStrategy syntheticsStrategy =
@@ -322,10 +443,13 @@ public class ApplicationData {
 	 * 		When D8 conversion internals fails.
 	 * @throws ConversionExportException
 	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
 	 */
 	@Nullable
 	public byte[] exportToJvmClass(@Nonnull String internalName) throws ConversionIRReplacementException,
-			ConversionD8ProcessingException, ConversionExportException {
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
 		return exportToJvmClassMap(ClassFilter.forType(internalName)).get(internalName);
 	}
 
@@ -338,14 +462,20 @@ public class ApplicationData {
 	 * 		When D8 conversion internals fails.
 	 * @throws ConversionExportException
 	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
 	 */
 	@Nonnull
 	public Map<String, byte[]> exportToJvmClassMap() throws ConversionIRReplacementException,
-			ConversionD8ProcessingException, ConversionExportException {
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
 		return exportToJvmClassMap(ClassFilter.PASS_ALL);
 	}
 
 	/**
+	 * When an {@link #setExportCache(ExportCache) export cache} is set, only classes that have no
+	 * cached output for the current {@link #getOperationOptionsProvider() options} are converted.
+	 *
 	 * @param filter
 	 * 		Filter to limit which classes are exported.
 	 *
@@ -357,32 +487,121 @@ public class ApplicationData {
 	 * 		When D8 conversion internals fails.
 	 * @throws ConversionExportException
 	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
 	 */
 	@Nonnull
 	public Map<String, byte[]> exportToJvmClassMap(@Nonnull ClassFilter filter) throws ConversionIRReplacementException,
-			ConversionD8ProcessingException, ConversionExportException {
-		Map<String, byte[]> result = new HashMap<>();
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		ExportCache cache = exportCache;
+		if (cache == null)
+			return convertToJvmClassMap(filter);
 
-		// Our temporary options to dictate exporting to JVM class files.
+		// Our temporary options are only used here to determine the cache key.
 		Options exportOptions = operationOptionsProvider.get();
-		exportOptions.setJvmOutput(new ClassFileConsumer() {
-			@Override
-			public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
-				String internalName = descriptor.substring(1, descriptor.length() - 1);
-				result.put(internalName, data.copyByteData());
-			}
+		exportOptions.setReplaceInvalidMethodBodies(false);
+		exportOptions.setJvmOutput(new MapClassFileConsumer(new HashMap<>()));
+		String optionsFingerprint = exportOptions.getOutputFingerprint();
 
-			@Override
-			public void finished(DiagnosticsHandler diagnosticsHandler) {
-				// no-op
-			}
-		});
+		// Collect what we already have, and what is yet to be converted.
+		Map<String, byte[]> result = new HashMap<>();
+		Map<String, String> missingHashes = new HashMap<>();
+		Set<String> names = getClassNames(filter);
+		// Classes may have been edited in place since the last export, so hashes are only re-used within this export.
+		ClassContentHasher hasher = new ClassContentHasher();
+		DexApplication currentApplication = application;
+		for (DexProgramClass programClass : currentApplication.classes()) {
+			String name = programClass.getTypeName();
+			if (!names.contains(name))
+				continue;
+			String internalName = name.replace('.', '/');
+			// Classes that cannot be hashed are always converted, and never recorded.
+			// The hash covers the supertypes and nest of the class, so updating any of them yields a new entry.
+			String hash = hasher.hashInContext(programClass, currentApplication::programDefinitionFor);
+			Map<String, byte[]> cached = hash == null ? null : cache.get(internalName, hash, optionsFingerprint);
+			if (cached == null)
+				missingHashes.put(internalName, hash);
+			else
+				cached.forEach((outputName, outputBytes) -> result.put(outputName, outputBytes.clone()));
+		}
+		if (missingHashes.isEmpty())
+			return result;
 
-		// Run conversion process, then yield results.
-		Conversion.convert(this, exportOptions.getInternalOptions(), filter, false);
+		// Convert the missing classes and record them in the cache.
+		Map<String, byte[]> converted = convertToJvmClassMap(ClassFilters.forTypes(missingHashes.keySet()));
+		Map<String, Map<String, byte[]>> attributed = ExportCache.attributeOutputs(missingHashes.keySet(), converted);
+		if (attributed != null)
+			attributed.forEach((internalName, outputs) -> {
+				String hash = missingHashes.get(internalName);
+				if (hash != null)
+					cache.put(internalName, hash, optionsFingerprint, outputs);
+			});
+		converted.forEach((outputName, outputBytes) -> result.put(outputName, outputBytes.clone()));
 		return result;
 	}
 
+	/**
+	 * Exports a batch of classes in a single conversion pass.
+	 *
+	 * @param internalNames
+	 * 		Internal names of classes to export.
+	 *
+	 * @return Result wrapping a map of internal class names to JVM bytecode of classes, and the names of
+	 * any requested classes not found in the application. The map may also contain classes synthesized
+	 * for the requested classes, such as lambdas.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	public ExportResult<Map<String, byte[]>> exportToJvmClasses(@Nonnull Collection<String> internalNames)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		Set<String> found = new HashSet<>();
+		Set<String> missing = new TreeSet<>();
+		partitionByPresence(internalNames, found, missing);
+		Map<String, byte[]> output = found.isEmpty() ?
+				new HashMap<>() :
+				exportToJvmClassMap(ClassFilters.forTypes(found));
+		return new ExportResult<>(output, missing);
+	}
+
+	/**
+	 * Exports a batch of classes in a single conversion pass.
+	 *
+	 * @param internalNames
+	 * 		Internal names of classes to export.
+	 *
+	 * @return Result wrapping the bytes of a DEX file holding the requested classes, and the names of
+	 * any requested classes not found in the application. When none of the classes are found there is no DEX file.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	public ExportResult<byte[]> exportToDexFile(@Nonnull Collection<String> internalNames)
+			throws ConversionIRReplacementException, ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		Set<String> found = new HashSet<>();
+		Set<String> missing = new TreeSet<>();
+		partitionByPresence(internalNames, found, missing);
+		byte[] output = found.isEmpty() ? null : exportToDexFile(ClassFilters.forTypes(found));
+		return new ExportResult<>(output, missing);
+	}
+
 	/**
 	 * @return Bytes of the generated DEX file.
 	 *
@@ -392,20 +611,126 @@ public class ApplicationData {
 	 * 		When D8 conversion internals fails.
 	 * @throws ConversionExportException
 	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
 	 */
 	@Nonnull
 	public byte[] exportToDexFile() throws ConversionIRReplacementException,
-			ConversionD8ProcessingException, ConversionExportException {
-		// Hack to allow passing the 'byte[]' output in the dex-output consumer to this local.
-		byte[][] result = {null};
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		return exportToDexFile(ClassFilter.PASS_ALL);
+	}
 
-		// Our temporary options to dictate exporting to a DEX file.
+	/**
+	 * @param filter
+	 * 		Filter to limit which classes are exported.
+	 *
+	 * @return Bytes of the generated DEX file.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails, or when the output does not fit in a single DEX file.
+	 * 		Use {@link #exportToDexFiles(ClassFilter)} for output that may span multiple DEX files.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	public byte[] exportToDexFile(@Nonnull ClassFilter filter) throws ConversionIRReplacementException,
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		SortedMap<Integer, byte[]> files = exportToDexFiles(filter);
+		if (files.isEmpty())
+			throw new ConversionExportException(new IllegalStateException("No DEX file was observed by consumer"), false);
+		if (files.size() > 1)
+			throw new ConversionExportException(new IllegalStateException("Output requires " + files.size() +
+					" DEX files, use 'exportToDexFiles' to export all of them"), false);
+		return files.get(files.firstKey());
+	}
+
+	/**
+	 * @return Map of DEX file indices to the bytes of each generated DEX file.
+	 * Index {@code 0} is {@code classes.dex}, index {@code 1} is {@code classes2.dex}, and so on.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	public SortedMap<Integer, byte[]> exportToDexFiles() throws ConversionIRReplacementException,
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		return exportToDexFiles(ClassFilter.PASS_ALL);
+	}
+
+	/**
+	 * @param filter
+	 * 		Filter to limit which classes are exported.
+	 *
+	 * @return Map of DEX file indices to the bytes of each generated DEX file.
+	 * Index {@code 0} is {@code classes.dex}, index {@code 1} is {@code classes2.dex}, and so on.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	public SortedMap<Integer, byte[]> exportToDexFiles(@Nonnull ClassFilter filter) throws ConversionIRReplacementException,
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		SortedMap<Integer, byte[]> files = new ConcurrentSkipListMap<>();
+		exportToDexFiles(filter, ThreadPools.getMaxFixedThreadPool(),
+				(fileIndex, data) -> files.put(fileIndex, data.copyByteData()));
+		return files;
+	}
+
+	/**
+	 * Exports classes to DEX files, passing each file to the sink as soon as it is finalized.
+	 * This allows large outputs to be written out without holding all the DEX files in memory at once.
+	 *
+	 * @param filter
+	 * 		Filter to limit which classes are exported.
+	 * @param threadPool
+	 * 		Executor to run the conversion on. DEX files are written in parallel across this executor.
+	 * @param sink
+	 * 		Receiver of the DEX files. May be called concurrently.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails, including when the sink fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	public void exportToDexFiles(@Nonnull ClassFilter filter, @Nonnull ExecutorService threadPool,
+								 @Nonnull DexFileSink sink) throws ConversionIRReplacementException,
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		// Our temporary options to dictate exporting to DEX files.
 		Options exportOptions = operationOptionsProvider.get();
 		exportOptions.setApiLevel(application.options.getMinApiLevel());
 		exportOptions.setDexOutput(new DexIndexedConsumer() {
 			@Override
 			public void accept(int fileIndex, ByteDataView data, Set<String> descriptors, DiagnosticsHandler handler) {
-				result[0] = data.copyByteData();
+				try {
+					sink.accept(fileIndex, data);
+				} catch (Exception ex) {
+					handler.error(new ExceptionDiagnostic(ex));
+				}
 			}
 
 			@Override
@@ -414,12 +739,11 @@ public class ApplicationData {
 			}
 		});
 
-		// Run conversion process, then yield results.
-		Conversion.convert(this, exportOptions.getInternalOptions(), ClassFilter.PASS_ALL, false);
-		byte[] resultUnwrapped = result[0];
-		if (resultUnwrapped == null)
-			throw new ConversionExportException(new IllegalStateException("No DEX file was observed by consumer"), false);
-		return resultUnwrapped;
+		// Exports have no way to report replaced methods, so invalid methods always fail the export.
+		exportOptions.setReplaceInvalidMethodBodies(false);
+
+		// Run conversion process, the sink is fed by the consumer above.
+		Conversion.convert(this, exportOptions, filter, threadPool);
 	}
 
 	/**
@@ -489,6 +813,7 @@ public class ApplicationData {
 	public DexProgramClass updateClass(@Nonnull String internalName, @Nonnull DexProgramClass updatedClass) {
 		// Track old class instance.
 		DexProgramClass originalClass = getClass(internalName);
+		invalidateExportCache(internalName);
 
 		// Update application reference to include the updated class.
 		application = application.builder()
@@ -527,8 +852,10 @@ public class ApplicationData {
 	public Map<String, DexProgramClass> updateClasses(@Nonnull Map<String, DexProgramClass> updatedClasses) {
 		// Track old class instances.
 		Map<String, DexProgramClass> originalClasses = new HashMap<>();
-		for (String typeName : updatedClasses.keySet())
+		for (String typeName : updatedClasses.keySet()) {
 			originalClasses.put(typeName, getClass(typeName));
+			invalidateExportCache(typeName);
+		}
 
 		// Update application reference to include the updated class.
 		application = application.builder()
@@ -558,6 +885,26 @@ public class ApplicationData {
 				.collect(Collectors.toCollection(TreeSet::new));
 	}
 
+	/**
+	 * @param filter
+	 * 		Filter to limit which classes are included.
+	 *
+	 * @return Sorted set of class names in the application, which match the filter.
+	 */
+	@Nonnull
+	public SortedSet<String> getClassNames(@Nonnull ClassFilter filter) {
+		if (filter == ClassFilter.PASS_ALL)
+			return getClassNames();
+
+		// Wrapping the application in an info model does not copy it, but lets us see it through the filter.
+		AppInfo info = AppInfo.createInitialAppInfo(application,
+				SyntheticItems.GlobalSyntheticsStrategy.forPerFileMode(), MainDexInfo.none());
+		info.setFilter(filter);
+		return info.classes().stream()
+				.map(DexClass::getTypeName)
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
 	/**
 	 * @param internalName
 	 * 		Internal class name. For example {@code java/lang/String}.
@@ -570,6 +917,35 @@ public class ApplicationData {
 		return application.programDefinitionFor(type);
 	}
 
+	/**
+	 * @return Throughput of loading the application, or {@code null} when the data was not loaded from {@link Inputs}.
+	 */
+	@Nullable
+	public LoadStatistics getLoadStatistics() {
+		return loadStatistics;
+	}
+
+	/**
+	 * @return Report of duplicate inputs dropped when loading the application,
+	 * or {@code null} when duplicates were not checked for.
+	 *
+	 * @see Options#setDuplicateClassPolicy(DuplicateClassPolicy)
+	 */
+	@Nullable
+	public DeduplicationReport getDeduplicationReport() {
+		return deduplicationReport;
+	}
+
+	/**
+	 * @return Timings of loading the application, or {@code null} when not collected.
+	 *
+	 * @see Options#setCollectTimings(boolean)
+	 */
+	@Nullable
+	public PhaseTimings getLoadTimings() {
+		return loadTimings;
+	}
+
 	/**
 	 * @return Provider to supply an {@link Options} instance for export operations.
 	 * For exporting to JVM bytecode for instance you may want to supply an
@@ -590,6 +966,23 @@ public class ApplicationData {
 		this.operationOptionsProvider = operationOptionsProvider;
 	}
 
+	/**
+	 * @return Cache of JVM exports, or {@code null} when exports are not cached.
+	 */
+	@Nullable
+	public ExportCache getExportCache() {
+		return exportCache;
+	}
+
+	/**
+	 * @param exportCache
+	 * 		Cache to re-use prior JVM exports of unchanged classes from, or {@code null} to not cache exports.
+	 * 		The same cache can be shared between multiple application models.
+	 */
+	public void setExportCache(@Nullable ExportCache exportCache) {
+		this.exportCache = exportCache;
+	}
+
 	/**
 	 * @return Container holding information about what is in the program.
 	 * This is the model of the {@link #getInputApplication()}.
@@ -618,6 +1011,67 @@ public class ApplicationData {
 		inputApplication.signalFinishedToProviders(null);
 	}
 
+	/**
+	 * @param filter
+	 * 		Filter to limit which classes are exported.
+	 *
+	 * @return Map of internal class names to JVM bytecode of classes.
+	 *
+	 * @throws ConversionIRReplacementException
+	 * 		When replacing {@link CfCode} of input classes fails.
+	 * @throws ConversionD8ProcessingException
+	 * 		When D8 conversion internals fails.
+	 * @throws ConversionExportException
+	 * 		When conversion exporting fails.
+	 * @throws ConversionCancelledException
+	 * 		When the calling thread is interrupted, cancelling the conversion.
+	 */
+	@Nonnull
+	private Map<String, byte[]> convertToJvmClassMap(@Nonnull ClassFilter filter) throws ConversionIRReplacementException,
+			ConversionD8ProcessingException, ConversionExportException,
+			ConversionCancelledException {
+		Map<String, byte[]> result = new ConcurrentHashMap<>();
+
+		// Our temporary options to dictate exporting to JVM class files.
+		Options exportOptions = operationOptionsProvider.get();
+		exportOptions.setJvmOutput(new MapClassFileConsumer(result));
+
+		// Exports have no way to report replaced methods, so invalid methods always fail the export.
+		exportOptions.setReplaceInvalidMethodBodies(false);
+
+		// Run conversion process, then yield results.
+		Conversion.convert(this, exportOptions, filter);
+		return new HashMap<>(result);
+	}
+
+	/**
+	 * @param name
+	 * 		Name of class to drop from the {@link #getExportCache() export cache}.
+	 */
+	private void invalidateExportCache(@Nonnull String name) {
+		ExportCache cache = exportCache;
+		if (cache != null)
+			cache.invalidate(name.replace('.', '/'));
+	}
+
+	/**
+	 * @param internalNames
+	 * 		Internal names of classes to look up.
+	 * @param found
+	 * 		Set to add names of classes in the application to.
+	 * @param missing
+	 * 		Set to add names of classes not in the application to.
+	 */
+	private void partitionByPresence(@Nonnull Collection<String> internalNames,
+									 @Nonnull Set<String> found, @Nonnull Set<String> missing) {
+		for (String internalName : internalNames) {
+			if (getClass(internalName) != null)
+				found.add(internalName);
+			else
+				missing.add(internalName);
+		}
+	}
+
 	/**
 	 * @param newOptions
 	 * 		Options providing context for the copy operation.
@@ -632,6 +1086,96 @@ public class ApplicationData {
 		return applicationCopy;
 	}
 
+	/**
+	 * @param newOptions
+	 * 		Options providing context for the copy operation.
+	 * @param copiedClasses
+	 * 		Program classes to copy.
+	 *
+	 * @return Copy of application instance, where only the given program classes are copied.
+	 * All other program classes are the same instances as in the original application.
+	 */
+	@Nonnull
+	private DexApplication copyApplication(@Nonnull InternalOptions newOptions,
+										   @Nonnull Collection<DexProgramClass> copiedClasses) {
+		// Copying an application deep-copies its program classes, so copy one holding only the given classes.
+		Map<DexType, DexProgramClass> copies = new IdentityHashMap<>();
+		DexApplication partialCopy = application.builder()
+				.replaceProgramClasses(copiedClasses)
+				.build()
+				.copy();
+		for (DexProgramClass programClass : partialCopy.classes())
+			copies.put(programClass.getType(), programClass);
+
+		// Put the copies in place of the originals, keeping the order of the original application.
+		List<DexProgramClass> programClasses = new ArrayList<>(application.classes().size());
+		for (DexProgramClass programClass : application.classes())
+			programClasses.add(copies.getOrDefault(programClass.getType(), programClass));
+		DexApplication applicationCopy = partialCopy.builder()
+				.replaceProgramClasses(programClasses)
+				.build();
+		if (newOptions != applicationCopy.options)
+			applicationCopy.options = newOptions;
+		return applicationCopy;
+	}
+
+	/**
+	 * Collects the program classes matched by the filter, along with the program classes required to process them.
+	 * This includes super-types, interfaces, nest mates and outer classes. These are the only classes a conversion
+	 * of the matched classes may modify, so they are the only ones a view needs its own copies of.
+	 *
+	 * @param filter
+	 * 		Filter to limit which classes are included.
+	 *
+	 * @return Program classes to include in a view for the filter.
+	 */
+	@Nonnull
+	private Collection<DexProgramClass> collectViewClasses(@Nonnull ClassFilter filter) {
+		AppInfo info = AppInfo.createInitialAppInfo(application,
+				SyntheticItems.GlobalSyntheticsStrategy.forPerFileMode(), MainDexInfo.none());
+		info.setFilter(filter);
+
+		Map<DexType, DexProgramClass> included = new LinkedHashMap<>();
+		Deque<DexProgramClass> queue = new ArrayDeque<>();
+		for (DexProgramClass programClass : info.classes())
+			if (included.putIfAbsent(programClass.getType(), programClass) == null)
+				queue.add(programClass);
+		List<DexType> related = new ArrayList<>();
+		while (!queue.isEmpty()) {
+			DexProgramClass programClass = queue.poll();
+			related.clear();
+			if (programClass.getSuperType() != null)
+				related.add(programClass.getSuperType());
+			for (DexType itf : programClass.getInterfaces())
+				related.add(itf);
+			if (programClass.isInANest()) {
+				related.add(programClass.getNestHost());
+				for (NestMemberClassAttribute member : programClass.getNestMembersClassAttributes())
+					related.add(member.getNestMember());
+			}
+			for (InnerClassAttribute innerClass : programClass.getInnerClasses())
+				if (innerClass.getOuter() != null && programClass.getType() == innerClass.getInner())
+					related.add(innerClass.getOuter());
+			EnclosingMethodAttribute enclosing = programClass.getEnclosingMethodAttribute();
+			if (enclosing != null) {
+				if (enclosing.getEnclosingClass() != null)
+					related.add(enclosing.getEnclosingClass());
+				else if (enclosing.getEnclosingMethod() != null)
+					related.add(enclosing.getEnclosingMethod().getHolderType());
+			}
+			for (DexType type : related) {
+				if (type == null || included.containsKey(type))
+					continue;
+				DexProgramClass relatedClass = application.programDefinitionFor(type);
+				if (relatedClass != null) {
+					included.put(type, relatedClass);
+					queue.add(relatedClass);
+				}
+			}
+		}
+		return included.values();
+	}
+
 	/**
 	 * @param inputApplication
 	 * 		Container holding input sources of program data and file resources.
@@ -699,4 +1243,26 @@ public class ApplicationData {
 		}
 		return systemJdkProvider;
 	}
+
+	/**
+	 * Consumer collecting JVM output into a map of internal class names to bytecode.
+	 */
+	private static class MapClassFileConsumer implements ClassFileConsumer {
+		private final Map<String, byte[]> result;
+
+		private MapClassFileConsumer(@Nonnull Map<String, byte[]> result) {
+			this.result = result;
+		}
+
+		@Override
+		public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+			String internalName = descriptor.substring(1, descriptor.length() - 1);
+			result.put(internalName, data.copyByteData());
+		}
+
+		@Override
+		public void finished(DiagnosticsHandler diagnosticsHandler) {
+			// no-op
+		}
+	}
 }
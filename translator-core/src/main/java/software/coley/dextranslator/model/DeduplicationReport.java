@@ -0,0 +1,129 @@
+package software.coley.dextranslator.model;
+
+import com.android.tools.r8.origin.Origin;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Report of the duplicate inputs dropped while loading an application.
+ *
+ * @author Matt Coley
+ * @see ApplicationData#getDeduplicationReport()
+ */
+public class DeduplicationReport {
+	private final List<DroppedInput> dropped;
+
+	/**
+	 * @param dropped
+	 * 		Inputs that were dropped, in the order they were encountered.
+	 */
+	public DeduplicationReport(@Nonnull List<DroppedInput> dropped) {
+		this.dropped = Collections.unmodifiableList(dropped);
+	}
+
+	/**
+	 * @return Inputs that were dropped, in the order they were encountered.
+	 */
+	@Nonnull
+	public List<DroppedInput> getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return Number of dropped inputs that were byte-identical to the kept input.
+	 */
+	public int getIdenticalCount() {
+		int count = 0;
+		for (DroppedInput input : dropped)
+			if (input.isIdentical())
+				count++;
+		return count;
+	}
+
+	/**
+	 * @return Number of dropped inputs that differed from the kept input.
+	 */
+	public int getConflictingCount() {
+		return dropped.size() - getIdenticalCount();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Dropped ").append(dropped.size()).append(" duplicate inputs (")
+				.append(getIdenticalCount()).append(" identical, ")
+				.append(getConflictingCount()).append(" conflicting)");
+		for (DroppedInput input : dropped)
+			sb.append("\n - ").append(input);
+		return sb.toString();
+	}
+
+	/**
+	 * Duplicate input that was dropped in favor of another.
+	 */
+	public static class DroppedInput {
+		private final String className;
+		private final Origin droppedOrigin;
+		private final Origin keptOrigin;
+		private final boolean identical;
+
+		/**
+		 * @param className
+		 * 		Internal name of the duplicate class, or {@code null} when a whole DEX file was dropped.
+		 * @param droppedOrigin
+		 * 		Origin of the dropped input.
+		 * @param keptOrigin
+		 * 		Origin of the input kept instead.
+		 * @param identical
+		 * 		Flag indicating the dropped input was byte-identical to the kept input.
+		 */
+		public DroppedInput(@Nullable String className, @Nonnull Origin droppedOrigin,
+							@Nonnull Origin keptOrigin, boolean identical) {
+			this.className = className;
+			this.droppedOrigin = droppedOrigin;
+			this.keptOrigin = keptOrigin;
+			this.identical = identical;
+		}
+
+		/**
+		 * @return Internal name of the duplicate class, or {@code null} when a whole DEX file was dropped.
+		 */
+		@Nullable
+		public String getClassName() {
+			return className;
+		}
+
+		/**
+		 * @return Origin of the dropped input.
+		 */
+		@Nonnull
+		public Origin getDroppedOrigin() {
+			return droppedOrigin;
+		}
+
+		/**
+		 * @return Origin of the input kept instead.
+		 */
+		@Nonnull
+		public Origin getKeptOrigin() {
+			return keptOrigin;
+		}
+
+		/**
+		 * @return {@code true} when the dropped input was byte-identical to the kept input.
+		 * Otherwise the inputs conflicted, and the kept input was chosen by the {@link DuplicateClassPolicy}.
+		 */
+		public boolean isIdentical() {
+			return identical;
+		}
+
+		@Override
+		public String toString() {
+			String name = className == null ? "DEX file" : className;
+			return name + " from " + droppedOrigin + (identical ? ", identical to " : ", conflicting with ") + keptOrigin;
+		}
+	}
+}
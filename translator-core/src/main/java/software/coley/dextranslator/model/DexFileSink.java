@@ -0,0 +1,27 @@
+package software.coley.dextranslator.model;
+
+import com.android.tools.r8.ByteDataView;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Receiver of DEX files as they are finalized by {@link ApplicationData#exportToDexFiles(com.android.tools.r8.utils.ClassFilter, ExecutorService, DexFileSink)}.
+ * <p>
+ * DEX files are written in parallel, so the sink may be called concurrently and in any order of file index.
+ *
+ * @author Matt Coley
+ */
+public interface DexFileSink {
+	/**
+	 * @param fileIndex
+	 * 		Index of the DEX file. Index {@code 0} is {@code classes.dex}, index {@code 1} is {@code classes2.dex}, and so on.
+	 * @param data
+	 * 		Content of the DEX file. Only valid for the duration of the call,
+	 * 		so it must be copied with {@link ByteDataView#copyByteData()} to be retained.
+	 *
+	 * @throws Exception
+	 * 		When the file cannot be handled. This fails the export.
+	 */
+	void accept(int fileIndex, @Nonnull ByteDataView data) throws Exception;
+}
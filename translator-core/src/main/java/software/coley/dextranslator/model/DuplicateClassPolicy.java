@@ -0,0 +1,24 @@
+package software.coley.dextranslator.model;
+
+import software.coley.dextranslator.Options;
+
+/**
+ * How to handle a class defined differently by multiple inputs. Byte-identical copies are always merged into one.
+ *
+ * @author Matt Coley
+ * @see Options#setDuplicateClassPolicy(DuplicateClassPolicy)
+ */
+public enum DuplicateClassPolicy {
+	/**
+	 * The definition from the earliest input is kept.
+	 */
+	FIRST_WINS,
+	/**
+	 * The definition from the latest input is kept.
+	 */
+	LAST_WINS,
+	/**
+	 * Loading fails.
+	 */
+	FAIL
+}
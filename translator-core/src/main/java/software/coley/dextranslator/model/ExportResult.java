@@ -0,0 +1,55 @@
+package software.coley.dextranslator.model;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Result of exporting a batch of named classes from an {@link ApplicationData}.
+ *
+ * @param <T>
+ * 		Output type.
+ *
+ * @author Matt Coley
+ * @see ApplicationData#exportToJvmClasses(Collection)
+ * @see ApplicationData#exportToDexFile(Collection)
+ */
+public class ExportResult<T> {
+	private final T output;
+	private final Set<String> missingClasses;
+
+	/**
+	 * @param output
+	 * 		Exported content.
+	 * @param missingClasses
+	 * 		Internal names of requested classes that were not found in the application.
+	 */
+	public ExportResult(@Nullable T output, @Nonnull Set<String> missingClasses) {
+		this.output = output;
+		this.missingClasses = missingClasses;
+	}
+
+	/**
+	 * @return Exported content. May be {@code null} for DEX exports when none of the requested classes were found.
+	 */
+	@Nullable
+	public T getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return Internal names of requested classes that were not found in the application.
+	 */
+	@Nonnull
+	public Set<String> getMissingClasses() {
+		return missingClasses;
+	}
+
+	/**
+	 * @return {@code true} when all requested classes were found.
+	 */
+	public boolean isComplete() {
+		return missingClasses.isEmpty();
+	}
+}
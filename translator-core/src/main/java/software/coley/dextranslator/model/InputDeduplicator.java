@@ -0,0 +1,166 @@
+package software.coley.dextranslator.model;
+
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ProgramResourceProvider;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.AndroidApp;
+import org.objectweb.asm.ClassReader;
+import software.coley.dextranslator.cache.ClassContentHasher;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drops duplicate program inputs before they are parsed, by hashing their raw content.
+ * <p>
+ * Class files are compared per class, so byte-identical copies of a class are parsed once,
+ * and differing definitions of a class are resolved by a {@link DuplicateClassPolicy}.
+ * DEX files are compared as a whole, so byte-identical copies of a DEX file are read once.
+ * Classes in a DEX file reference pools shared by the whole file, so the definition of a single class
+ * cannot be compared across DEX files without parsing them.
+ *
+ * @author Matt Coley
+ */
+public class InputDeduplicator {
+	private final List<DeduplicationReport.DroppedInput> dropped = new ArrayList<>();
+	private final Map<String, Entry> classes = new HashMap<>();
+	private final Map<String, Entry> dexFiles = new HashMap<>();
+	private final List<Entry> entries = new ArrayList<>();
+	private final DuplicateClassPolicy policy;
+
+	/**
+	 * @param policy
+	 * 		Policy for handling classes defined differently by multiple inputs.
+	 */
+	public InputDeduplicator(@Nonnull DuplicateClassPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Reads the program resources of the given application, and adds those that are not duplicates to the builder.
+	 *
+	 * @param inputApplication
+	 * 		Application to read program resources from.
+	 * @param builder
+	 * 		Builder to add the remaining program resources to.
+	 *
+	 * @return Report of the dropped inputs.
+	 *
+	 * @throws IOException
+	 * 		When a resource cannot be read, or when a class is defined differently by multiple inputs
+	 * 		with the {@link DuplicateClassPolicy#FAIL} policy.
+	 */
+	@Nonnull
+	public DeduplicationReport deduplicate(@Nonnull AndroidApp inputApplication,
+										   @Nonnull AndroidApp.Builder builder) throws IOException {
+		try {
+			for (ProgramResourceProvider provider : inputApplication.getProgramResourceProviders())
+				for (ProgramResource resource : provider.getProgramResources())
+					add(resource);
+		} catch (ResourceException ex) {
+			throw new IOException("Failed to read program resource", ex);
+		}
+
+		List<ProgramResource> kept = new ArrayList<>(entries.size());
+		for (Entry entry : entries)
+			if (!entry.dropped)
+				kept.add(entry.resource);
+		builder.addProgramResourceProvider(() -> kept);
+		return new DeduplicationReport(new ArrayList<>(dropped));
+	}
+
+	private void add(@Nonnull ProgramResource resource) throws IOException, ResourceException {
+		switch (resource.getKind()) {
+			case CF: {
+				byte[] bytes;
+				try (InputStream in = resource.getByteStream()) {
+					bytes = in.readAllBytes();
+				}
+				String descriptor = descriptorOf(resource, bytes);
+				ProgramResource copy = ProgramResource.fromBytes(resource.getOrigin(), ProgramResource.Kind.CF, bytes,
+						Collections.singleton(descriptor));
+				Entry entry = new Entry(copy, ClassContentHasher.hashBytes(bytes));
+				entries.add(entry);
+				resolve(classes, descriptor, entry, descriptor.substring(1, descriptor.length() - 1));
+				break;
+			}
+			case DEX: {
+				String hash;
+				try (InputStream in = resource.getByteStream()) {
+					hash = ClassContentHasher.hashStream(in);
+				}
+				Entry entry = new Entry(resource, hash);
+				entries.add(entry);
+				Entry existing = dexFiles.putIfAbsent(hash, entry);
+				if (existing != null)
+					drop(entry, existing, null, true);
+				break;
+			}
+			default:
+				entries.add(new Entry(resource, null));
+		}
+	}
+
+	private void resolve(@Nonnull Map<String, Entry> keptEntries, @Nonnull String key,
+						 @Nonnull Entry entry, @Nonnull String className) throws IOException {
+		Entry existing = keptEntries.putIfAbsent(key, entry);
+		if (existing == null)
+			return;
+		if (existing.hash.equals(entry.hash)) {
+			drop(entry, existing, className, true);
+			return;
+		}
+		switch (policy) {
+			case FIRST_WINS:
+				drop(entry, existing, className, false);
+				break;
+			case LAST_WINS:
+				drop(existing, entry, className, false);
+				keptEntries.put(key, entry);
+				break;
+			case FAIL:
+				throw new IOException("Class '" + className + "' is defined differently in '" +
+						existing.getOrigin() + "' and '" + entry.getOrigin() + "'");
+		}
+	}
+
+	private void drop(@Nonnull Entry entry, @Nonnull Entry keptEntry, String className, boolean identical) {
+		entry.dropped = true;
+		dropped.add(new DeduplicationReport.DroppedInput(className, entry.getOrigin(), keptEntry.getOrigin(), identical));
+	}
+
+	@Nonnull
+	private static String descriptorOf(@Nonnull ProgramResource resource, @Nonnull byte[] bytes) {
+		Set<String> descriptors = resource.getClassDescriptors();
+		if (descriptors != null && descriptors.size() == 1)
+			return descriptors.iterator().next();
+		return "L" + new ClassReader(bytes).getClassName() + ";";
+	}
+
+	/**
+	 * Program resource, and whether it has been dropped.
+	 */
+	private static class Entry {
+		private final ProgramResource resource;
+		private final String hash;
+		private boolean dropped;
+
+		private Entry(@Nonnull ProgramResource resource, String hash) {
+			this.resource = resource;
+			this.hash = hash;
+		}
+
+		@Nonnull
+		private Origin getOrigin() {
+			return resource.getOrigin();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package software.coley.dextranslator.model;
+
+import software.coley.dextranslator.util.CountingResourceProvider;
+
+import java.util.Locale;
+
+/**
+ * Throughput of loading an application.
+ * <p>
+ * Only content read from disk by the providers of {@link software.coley.dextranslator.Inputs} is counted
+ * towards the bytes read, see {@link CountingResourceProvider}. Inputs given as byte arrays are already in memory,
+ * and inputs from custom providers cannot be measured.
+ *
+ * @author Matt Coley
+ * @see ApplicationData#getLoadStatistics()
+ */
+public class LoadStatistics {
+	private final long bytesRead;
+	private final int classCount;
+	private final int archiveCount;
+	private final long elapsedNanos;
+
+	/**
+	 * @param bytesRead
+	 * 		Bytes of program content read from disk.
+	 * @param classCount
+	 * 		Number of program classes loaded.
+	 * @param archiveCount
+	 * 		Number of JAR archives read.
+	 * @param elapsedNanos
+	 * 		Time taken to load the application.
+	 */
+	public LoadStatistics(long bytesRead, int classCount, int archiveCount, long elapsedNanos) {
+		this.bytesRead = bytesRead;
+		this.classCount = classCount;
+		this.archiveCount = archiveCount;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return Bytes of program content read from disk. For compressed archives this is the size of the inflated content.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return Number of program classes loaded.
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * @return Number of JAR archives read.
+	 */
+	public int getArchiveCount() {
+		return archiveCount;
+	}
+
+	/**
+	 * @return Time taken to load the application, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return Megabytes of program content read per second.
+	 */
+	public double getMegabytesPerSecond() {
+		if (elapsedNanos <= 0)
+			return 0;
+		return (bytesRead / (1024.0 * 1024.0)) / (elapsedNanos / 1_000_000_000.0);
+	}
+
+	/**
+	 * @return Program classes loaded per second.
+	 */
+	public double getClassesPerSecond() {
+		if (elapsedNanos <= 0)
+			return 0;
+		return classCount / (elapsedNanos / 1_000_000_000.0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%d classes from %d archives (%.2f MiB) in %.3fms: %.2f MiB/s, %.0f classes/s",
+				classCount, archiveCount, bytesRead / (1024.0 * 1024.0), elapsedNanos / 1_000_000.0,
+				getMegabytesPerSecond(), getClassesPerSecond());
+	}
+}
@@ -0,0 +1,49 @@
+package software.coley.dextranslator.progress;
+
+import software.coley.dextranslator.Options;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener for the progress of loading and conversion.
+ * <p>
+ * Methods may be called concurrently from the threads of the pool doing the work, so implementations must be
+ * thread-safe. They are also called once per method and output item, so they should return quickly.
+ * Counts given to the listener are running totals, so a listener that only needs the latest state can
+ * just store the values it is given.
+ *
+ * @author Matt Coley
+ * @see Options#setProgressListener(ProgressListener)
+ * @see ProgressTracker
+ */
+public interface ProgressListener {
+	/**
+	 * When streaming conversion in windows, phases after loading are repeated once per window.
+	 *
+	 * @param phase
+	 * 		Phase that has started.
+	 */
+	default void onPhase(@Nonnull ProgressPhase phase) {}
+
+	/**
+	 * @param classCount
+	 * 		Number of program classes read from the inputs.
+	 */
+	default void onClassesRead(int classCount) {}
+
+	/**
+	 * @param lowered
+	 * 		Number of methods lowered so far, including any that failed.
+	 * @param total
+	 * 		Total number of methods to lower in the conversion.
+	 */
+	default void onMethodLowered(int lowered, int total) {}
+
+	/**
+	 * @param classCount
+	 * 		Number of classes written so far.
+	 * @param byteCount
+	 * 		Number of bytes written so far.
+	 */
+	default void onOutputWritten(int classCount, long byteCount) {}
+}
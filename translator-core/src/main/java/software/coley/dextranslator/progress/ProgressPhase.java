@@ -0,0 +1,25 @@
+package software.coley.dextranslator.progress;
+
+/**
+ * Phases of loading and conversion reported to a {@link ProgressListener}.
+ *
+ * @author Matt Coley
+ */
+public enum ProgressPhase {
+	/**
+	 * Reading classes from the inputs.
+	 */
+	LOADING,
+	/**
+	 * Lowering Dalvik method code into JVM code. Only occurs when targeting JVM output.
+	 */
+	LOWERING,
+	/**
+	 * Processing of classes by D8 for the target platform.
+	 */
+	CONVERTING,
+	/**
+	 * Writing classes to the configured output.
+	 */
+	WRITING
+}
@@ -0,0 +1,104 @@
+package software.coley.dextranslator.progress;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Listener recording the latest progress values, for callers that poll for progress rather than react to it.
+ *
+ * @author Matt Coley
+ */
+public class ProgressTracker implements ProgressListener {
+	private volatile ProgressPhase phase;
+	private volatile int classesRead;
+	private volatile int methodsLowered;
+	private volatile int methodsToLower;
+	private volatile int classesWritten;
+	private volatile long bytesWritten;
+
+	@Override
+	public void onPhase(@Nonnull ProgressPhase phase) {
+		this.phase = phase;
+	}
+
+	@Override
+	public void onClassesRead(int classCount) {
+		classesRead = classCount;
+	}
+
+	@Override
+	public void onMethodLowered(int lowered, int total) {
+		// Calls from different threads may arrive out of order, so only move forwards.
+		synchronized (this) {
+			if (lowered > methodsLowered || total != methodsToLower) {
+				methodsLowered = lowered;
+				methodsToLower = total;
+			}
+		}
+	}
+
+	@Override
+	public void onOutputWritten(int classCount, long byteCount) {
+		synchronized (this) {
+			if (byteCount > bytesWritten) {
+				classesWritten = classCount;
+				bytesWritten = byteCount;
+			}
+		}
+	}
+
+	/**
+	 * @return Current phase, or {@code null} if nothing has started yet.
+	 */
+	@Nullable
+	public ProgressPhase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * @return Number of program classes read from the inputs.
+	 */
+	public int getClassesRead() {
+		return classesRead;
+	}
+
+	/**
+	 * @return Number of methods lowered so far.
+	 */
+	public int getMethodsLowered() {
+		return methodsLowered;
+	}
+
+	/**
+	 * @return Total number of methods to lower, or zero if not yet known.
+	 */
+	public int getMethodsToLower() {
+		return methodsToLower;
+	}
+
+	/**
+	 * @return Number of classes written so far.
+	 */
+	public int getClassesWritten() {
+		return classesWritten;
+	}
+
+	/**
+	 * @return Number of bytes written so far.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(phase == null ? "PENDING" : phase.name());
+		sb.append(" | classes read: ").append(classesRead);
+		if (methodsToLower > 0)
+			sb.append(" | methods lowered: ").append(methodsLowered).append('/').append(methodsToLower);
+		sb.append(" | classes written: ").append(classesWritten)
+				.append(" (").append(bytesWritten / 1024).append(" KiB)");
+		return sb.toString();
+	}
+}
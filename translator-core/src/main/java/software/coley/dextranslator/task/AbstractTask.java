@@ -6,6 +6,7 @@ import javax.annotation.Nonnull;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Common task outline.
@@ -28,6 +29,10 @@ public abstract class AbstractTask<T> {
 
 	/**
 	 * Starts the task on a separate thread.
+	 * <p>
+	 * {@link CompletableFuture#cancel(boolean) Cancelling} the returned future interrupts the thread running the task.
+	 * Conversions observe the interrupt between classes and methods, stopping their remaining work
+	 * so that the thread pool is freed up for other tasks.
 	 *
 	 * @return Future of task result.
 	 */
@@ -35,8 +40,12 @@ public abstract class AbstractTask<T> {
 	public CompletableFuture<T> start() {
 		CompletableFuture<T> future = new CompletableFuture<>();
 		ExecutorService service = Executors.newSingleThreadExecutor();
-		service.submit(() -> run(future));
+		Future<?> work = service.submit(() -> run(future));
 		service.shutdown();
+		future.whenComplete((result, error) -> {
+			if (future.isCancelled())
+				work.cancel(true);
+		});
 		return future;
 	}
 
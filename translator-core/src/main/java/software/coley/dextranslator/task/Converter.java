@@ -3,8 +3,10 @@ package software.coley.dextranslator.task;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
 import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.progress.ProgressListener;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -15,6 +17,7 @@ import java.util.concurrent.CompletableFuture;
 public class Converter {
 	private Inputs inputs;
 	private Options options;
+	private ProgressListener progressListener;
 
 	/**
 	 * @param inputs
@@ -40,6 +43,19 @@ public class Converter {
 		return this;
 	}
 
+	/**
+	 * @param progressListener
+	 * 		Listener to report progress to. Replaces any {@link Options#setProgressListener(ProgressListener) listener}
+	 * 		on the options when the task is run. May be {@code null} to use the listener of the options as-is.
+	 *
+	 * @return Self
+	 */
+	@Nonnull
+	public Converter setProgressListener(@Nullable ProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
 	/**
 	 * Starts a {@link ConverterTask} with the current inputs and options.
 	 *
@@ -54,6 +70,8 @@ public class Converter {
 			throw new IllegalArgumentException("Inputs not provided");
 		if (options == null)
 			throw new IllegalArgumentException("Options not provided");
+		if (progressListener != null)
+			options.setProgressListener(progressListener);
 		if (!options.hasConfiguredOutput())
 			throw new IllegalArgumentException("Options has not configured an output sink");
 		return new Loader()
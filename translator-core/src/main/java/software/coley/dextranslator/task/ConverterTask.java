@@ -4,12 +4,17 @@ import com.android.tools.r8.ClassFileConsumer;
 import com.android.tools.r8.DexIndexedConsumer;
 import com.android.tools.r8.utils.ClassFilter;
 import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.cache.TranslationCache;
+import software.coley.dextranslator.ir.CachedConversion;
 import software.coley.dextranslator.ir.Conversion;
 import software.coley.dextranslator.ir.ConversionException;
 import software.coley.dextranslator.ir.ConversionResult;
 import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.PhaseTimings;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
@@ -33,6 +38,10 @@ import java.util.function.Supplier;
  *     <li>{@link Options#setDexOutput(DexIndexedConsumer)}</li>
  *     <li>{@link Options#setApkWrappedDexFileOutput(Path)}</li>
  * </ul>
+ * <p>
+ * When the {@link Options#setTranslationCache(TranslationCache) translation cache} is set, outputs of prior
+ * conversions are re-used where possible. When the {@link Options#setJdkClassIndex(JdkClassIndex) JDK class index}
+ * is set, it is saved once the conversion completes.
  *
  * @author Matt Coley
  */
@@ -54,8 +63,27 @@ public class ConverterTask extends AbstractTask<ConversionResult> {
 	protected boolean run(@Nonnull CompletableFuture<ConversionResult> future) {
 		try {
 			ApplicationData data = dataSupplier.get();
-			boolean replaceInvalid = options.isReplaceInvalidMethodBodies();
-			ConversionResult result = Conversion.convert(data, options.getInternalOptions(), ClassFilter.PASS_ALL, replaceInvalid);
+			TranslationCache cache = options.getTranslationCache();
+			ConversionResult result = cache == null ?
+					Conversion.convert(data, options, ClassFilter.PASS_ALL) :
+					CachedConversion.convert(data, options, ClassFilter.PASS_ALL, cache);
+
+			// The index only speeds up later runs, so failing to save it does not fail the conversion.
+			JdkClassIndex jdkClassIndex = options.getJdkClassIndex();
+			if (jdkClassIndex != null) {
+				try {
+					jdkClassIndex.save();
+				} catch (IOException ignored) {
+					// Will be saved by a later run
+				}
+			}
+
+			// Include the timings of loading the data, when both are recorded.
+			PhaseTimings loadTimings = data.getLoadTimings();
+			PhaseTimings conversionTimings = result.getTimings();
+			if (loadTimings != null && conversionTimings != null)
+				result = new ConversionResult(result.getInvalidMethods(),
+						PhaseTimings.combine("Total", loadTimings, conversionTimings), result.getMethodProfile());
 			return future.complete(result);
 		} catch (ConversionException ex) {
 			return future.completeExceptionally(ex);
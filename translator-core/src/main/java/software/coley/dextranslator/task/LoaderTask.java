@@ -30,7 +30,7 @@ public class LoaderTask extends AbstractTask<ApplicationData> {
 	@Override
 	protected boolean run(@Nonnull CompletableFuture<ApplicationData> future) {
 		try {
-			return future.complete(ApplicationData.from(inputs, options.getInternalOptions()));
+			return future.complete(ApplicationData.from(inputs, options));
 		} catch (IOException ex) {
 			return fail(ex, future);
 		}
@@ -0,0 +1,138 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.origin.ArchiveEntryOrigin;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Provider of the DEX files in an APK archive. Only {@code classes.dex} and the following {@code classesN.dex}
+ * entries at the root of the archive are provided. Resources and other entries are skipped.
+ * <p>
+ * The DEX entries are inflated in parallel directly into memory when the application is loaded.
+ *
+ * @author Matt Coley
+ */
+public class ApkArchiveResourceProvider implements CountingResourceProvider {
+	private static final Pattern DEX_ENTRY = Pattern.compile("classes(\\d*)\\.dex");
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final Path archivePath;
+	private final Origin origin;
+
+	/**
+	 * @param archivePath
+	 * 		Path to the APK archive.
+	 */
+	public ApkArchiveResourceProvider(@Nonnull Path archivePath) {
+		this.archivePath = archivePath;
+		this.origin = new PathOrigin(archivePath);
+	}
+
+	/**
+	 * @param entryName
+	 * 		Name of an entry in an APK.
+	 *
+	 * @return Number of the DEX file the entry holds, where {@code classes.dex} is {@code 1}.
+	 * Otherwise {@code -1} when the entry is not a DEX file of the application.
+	 */
+	public static int getDexFileNumber(@Nonnull String entryName) {
+		Matcher matcher = DEX_ENTRY.matcher(entryName);
+		if (!matcher.matches())
+			return -1;
+		String number = matcher.group(1);
+		if (number.isEmpty())
+			return 1;
+
+		// Android only loads 'classes2.dex' onwards, there is no 'classes1.dex' or zero-padded names.
+		if (number.charAt(0) == '0' || number.equals("1") || number.length() > 9)
+			return -1;
+		return Integer.parseInt(number);
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public Collection<ProgramResource> getProgramResources() throws ResourceException {
+		try (ZipFile zip = new ZipFile(archivePath.toFile())) {
+			List<ZipEntry> dexEntries = new ArrayList<>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!entry.isDirectory() && getDexFileNumber(entry.getName()) > 0)
+					dexEntries.add(entry);
+			}
+			dexEntries.sort(Comparator.comparingInt(entry -> getDexFileNumber(entry.getName())));
+
+			// Entries are inflated on the cached pool, as the loader may itself be calling us from the fixed pool.
+			ExecutorService service = ThreadPools.getCachedDaemonThreadPool();
+			List<Future<ProgramResource>> futures = new ArrayList<>(dexEntries.size());
+			for (ZipEntry entry : dexEntries)
+				futures.add(service.submit(() -> read(zip, entry)));
+			List<ProgramResource> resources = new ArrayList<>(dexEntries.size());
+			try {
+				for (Future<ProgramResource> future : futures)
+					resources.add(future.get());
+			} catch (ExecutionException ex) {
+				for (Future<?> future : futures)
+					future.cancel(true);
+				throw new ResourceException(origin, ex.getCause());
+			} catch (InterruptedException ex) {
+				for (Future<?> future : futures)
+					future.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new ResourceException(origin, ex);
+			}
+			return resources;
+		} catch (IOException ex) {
+			throw new ResourceException(origin, ex);
+		}
+	}
+
+	@Nonnull
+	private ProgramResource read(@Nonnull ZipFile zip, @Nonnull ZipEntry entry) throws IOException {
+		Origin entryOrigin = new ArchiveEntryOrigin(entry.getName(), origin);
+		try (InputStream in = zip.getInputStream(entry)) {
+			byte[] bytes = entry.getSize() >= 0 && entry.getSize() <= Integer.MAX_VALUE ?
+					readExactly(in, (int) entry.getSize()) :
+					in.readAllBytes();
+			bytesRead.addAndGet(bytes.length);
+			return ProgramResource.fromBytes(entryOrigin, ProgramResource.Kind.DEX, bytes, null);
+		}
+	}
+
+	@Nonnull
+	private static byte[] readExactly(@Nonnull InputStream in, int size) throws IOException {
+		// The size is known from the archive, so the content can be inflated straight into a buffer of the right size.
+		byte[] bytes = new byte[size];
+		int offset = 0;
+		while (offset < size) {
+			int read = in.read(bytes, offset, size - offset);
+			if (read < 0)
+				throw new IOException("Archive entry ended before its declared size");
+			offset += read;
+		}
+		return bytes;
+	}
+}
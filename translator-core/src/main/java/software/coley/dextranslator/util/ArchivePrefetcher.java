@@ -0,0 +1,144 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.ProgramResource;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the content of {@link JarArchiveResourceProvider archives} ahead of the application reader asking for it.
+ * Entries of all archives are inflated across a thread pool, while limiting how many archives are open at once.
+ * <p>
+ * Archives are opened in the order given, which should match the order the reader visits them in,
+ * so that the first archives the reader waits on are the first to be ready.
+ *
+ * @author Matt Coley
+ */
+public class ArchivePrefetcher {
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private final ExecutorService threadPool;
+	private final Semaphore openArchives;
+
+	/**
+	 * @param threadPool
+	 * 		Executor to inflate archive entries on.
+	 * @param maxOpenArchives
+	 * 		Maximum number of archives to have open at once.
+	 */
+	public ArchivePrefetcher(@Nonnull ExecutorService threadPool, int maxOpenArchives) {
+		this.threadPool = threadPool;
+		this.openArchives = new Semaphore(Math.max(1, maxOpenArchives));
+	}
+
+	/**
+	 * Begins reading the given archives in the background.
+	 * Each provider yields its content from {@link JarArchiveResourceProvider#getProgramResources()} once read.
+	 *
+	 * @param providers
+	 * 		Archives to read.
+	 */
+	public void prefetch(@Nonnull Collection<JarArchiveResourceProvider> providers) {
+		if (providers.isEmpty())
+			return;
+		List<JarArchiveResourceProvider> archives = List.copyOf(providers);
+		List<CompletableFuture<List<ProgramResource>>> futures = new ArrayList<>(archives.size());
+		for (JarArchiveResourceProvider archive : archives)
+			futures.add(archive.beginPrefetch());
+
+		// Opening archives waits on the open-archive limit, so it is done on its own thread rather than
+		// one of the pool threads that inflate entries and release archives once done.
+		ThreadPools.getCachedDaemonThreadPool().execute(() -> {
+			for (int i = 0; i < archives.size(); i++) {
+				CompletableFuture<List<ProgramResource>> future = futures.get(i);
+				if (cancelled.get()) {
+					future.cancel(false);
+					continue;
+				}
+				try {
+					openArchives.acquire();
+				} catch (InterruptedException ex) {
+					for (int j = i; j < futures.size(); j++)
+						futures.get(j).completeExceptionally(ex);
+					return;
+				}
+				try {
+					open(archives.get(i), future);
+				} catch (Throwable t) {
+					openArchives.release();
+					future.completeExceptionally(t);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stops opening archives that have not yet been opened. Archives already being read are read to completion.
+	 */
+	public void cancel() {
+		cancelled.set(true);
+	}
+
+	/**
+	 * Opens the archive and hands its entries off to the thread pool.
+	 * The archive is closed, and its open-archive permit released, once the last entry is inflated.
+	 *
+	 * @param archive
+	 * 		Archive to read.
+	 * @param future
+	 * 		Future to complete with the archive content.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be opened.
+	 */
+	private void open(@Nonnull JarArchiveResourceProvider archive,
+					  @Nonnull CompletableFuture<List<ProgramResource>> future) throws IOException {
+		ZipFile zip = new ZipFile(archive.getArchivePath().toFile());
+		List<ZipEntry> entries = archive.listClassEntries(zip);
+		if (entries.isEmpty()) {
+			close(zip);
+			future.complete(List.of());
+			return;
+		}
+
+		ProgramResource[] resources = new ProgramResource[entries.size()];
+		AtomicInteger remaining = new AtomicInteger(entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			int index = i;
+			ZipEntry entry = entries.get(i);
+			threadPool.execute(() -> {
+				try {
+					if (!future.isDone())
+						resources[index] = archive.read(zip, entry);
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				} finally {
+					if (remaining.decrementAndGet() == 0) {
+						close(zip);
+						future.complete(Arrays.asList(resources));
+					}
+				}
+			});
+		}
+	}
+
+	private void close(@Nonnull ZipFile zip) {
+		try {
+			zip.close();
+		} catch (IOException ignored) {
+			// Content is already read, so failing to close the archive does not affect the load.
+		} finally {
+			openArchives.release();
+		}
+	}
+}
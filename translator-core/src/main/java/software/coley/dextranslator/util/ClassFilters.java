@@ -0,0 +1,42 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.utils.ClassFilter;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Additional {@link ClassFilter} implementations.
+ *
+ * @author Matt Coley
+ */
+public class ClassFilters {
+	/**
+	 * @param internalNames
+	 * 		Internal names of classes to allow.
+	 *
+	 * @return Filter allowing only the given classes.
+	 */
+	@Nonnull
+	public static ClassFilter forTypes(@Nonnull Collection<String> internalNames) {
+		if (internalNames.isEmpty())
+			return ClassFilter.PASS_NONE;
+		Set<String> names = new HashSet<>(internalNames.size());
+		for (String name : internalNames)
+			names.add(normalize(name));
+		return type -> names.contains(normalize(type.getTypeName()));
+	}
+
+	/**
+	 * @param name
+	 * 		Class name, either in internal or source format.
+	 *
+	 * @return Internal format of the name.
+	 */
+	@Nonnull
+	private static String normalize(@Nonnull String name) {
+		return name.replace('.', '/');
+	}
+}
@@ -0,0 +1,17 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.ProgramResourceProvider;
+
+/**
+ * Program resource provider that reads its content from disk, and tracks how much it has read.
+ *
+ * @author Matt Coley
+ * @see software.coley.dextranslator.model.LoadStatistics
+ */
+public interface CountingResourceProvider extends ProgramResourceProvider {
+	/**
+	 * @return Number of bytes of program content read from disk so far.
+	 * For compressed archives this is the size of the inflated content.
+	 */
+	long getBytesRead();
+}
@@ -0,0 +1,166 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.DataResourceProvider;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.origin.ArchiveEntryOrigin;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+import com.android.tools.r8.utils.ArchiveResourceProvider;
+import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.ZipUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Provider of the class files in a JAR archive. Other entries are provided as data resources.
+ * <p>
+ * Normally the archive is read when the application is loaded and asks for its resources.
+ * When {@link ArchivePrefetcher prefetched}, the entries are instead inflated ahead of time across a thread pool,
+ * so that reading of many archives overlaps.
+ *
+ * @author Matt Coley
+ */
+public class JarArchiveResourceProvider implements CountingResourceProvider {
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final Path archivePath;
+	private final Origin origin;
+	private CompletableFuture<List<ProgramResource>> prefetched;
+
+	/**
+	 * @param archivePath
+	 * 		Path to the JAR archive.
+	 */
+	public JarArchiveResourceProvider(@Nonnull Path archivePath) {
+		this.archivePath = archivePath;
+		this.origin = new PathOrigin(archivePath);
+	}
+
+	/**
+	 * @param entryName
+	 * 		Name of an entry in a JAR.
+	 *
+	 * @return {@code true} when the entry is a class of the archive.
+	 * Module descriptors and classes within {@code META-INF}, such as multi-release versions, are excluded.
+	 * Names are compared ignoring case, the same as R8 does for its own archive inputs.
+	 */
+	public static boolean isClassEntry(@Nonnull String entryName) {
+		return ZipUtils.isClassFile(entryName);
+	}
+
+	/**
+	 * @return Path to the JAR archive.
+	 */
+	@Nonnull
+	public Path getArchivePath() {
+		return archivePath;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public DataResourceProvider getDataResourceProvider() {
+		// Entries that are not classes are read when visited, the same as for any other archive input.
+		return ArchiveResourceProvider.fromArchive(archivePath, true).getDataResourceProvider();
+	}
+
+	@Override
+	public Collection<ProgramResource> getProgramResources() throws ResourceException {
+		// Use the prefetched content if there is any. It is only used once, so later reads see the archive as it is then.
+		CompletableFuture<List<ProgramResource>> future;
+		synchronized (this) {
+			future = prefetched;
+			prefetched = null;
+		}
+		if (future != null) {
+			try {
+				return future.get();
+			} catch (ExecutionException ex) {
+				throw new ResourceException(origin, ex.getCause());
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new ResourceException(origin, ex);
+			}
+		}
+
+		// Not prefetched, so read the archive on this thread.
+		try (ZipFile zip = new ZipFile(archivePath.toFile())) {
+			List<ZipEntry> entries = listClassEntries(zip);
+			List<ProgramResource> resources = new ArrayList<>(entries.size());
+			for (ZipEntry entry : entries)
+				resources.add(read(zip, entry));
+			return resources;
+		} catch (IOException ex) {
+			throw new ResourceException(origin, ex);
+		}
+	}
+
+	/**
+	 * Marks the provider as being prefetched. The returned future is to be completed with the archive content.
+	 *
+	 * @return Future to complete with the content of the archive.
+	 */
+	@Nonnull
+	synchronized CompletableFuture<List<ProgramResource>> beginPrefetch() {
+		prefetched = new CompletableFuture<>();
+		return prefetched;
+	}
+
+	/**
+	 * @param zip
+	 * 		Opened archive.
+	 *
+	 * @return Class entries of the archive, in archive order.
+	 */
+	@Nonnull
+	List<ZipEntry> listClassEntries(@Nonnull ZipFile zip) {
+		List<ZipEntry> entries = new ArrayList<>();
+		Enumeration<? extends ZipEntry> enumeration = zip.entries();
+		while (enumeration.hasMoreElements()) {
+			ZipEntry entry = enumeration.nextElement();
+			if (!entry.isDirectory() && isClassEntry(entry.getName()))
+				entries.add(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 * @param zip
+	 * 		Opened archive.
+	 * @param entry
+	 * 		Class entry to read.
+	 *
+	 * @return Resource of the inflated class.
+	 *
+	 * @throws IOException
+	 * 		When the entry cannot be inflated.
+	 */
+	@Nonnull
+	ProgramResource read(@Nonnull ZipFile zip, @Nonnull ZipEntry entry) throws IOException {
+		String name = entry.getName();
+		byte[] bytes;
+		try (InputStream in = zip.getInputStream(entry)) {
+			bytes = in.readAllBytes();
+		}
+		bytesRead.addAndGet(bytes.length);
+		Origin entryOrigin = new ArchiveEntryOrigin(name, origin);
+		return ProgramResource.fromBytes(entryOrigin, ProgramResource.Kind.CF, bytes,
+				Collections.singleton(DescriptorUtils.guessTypeDescriptor(name)));
+	}
+}
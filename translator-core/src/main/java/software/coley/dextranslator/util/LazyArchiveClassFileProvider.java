@@ -0,0 +1,337 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.ClassFileResourceProvider;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.origin.ArchiveEntryOrigin;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+import com.android.tools.r8.utils.DescriptorUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Provider of the class files in a JAR archive, for use as a library or classpath input.
+ * <p>
+ * Classes are only read when the application asks for them by descriptor, such as when resolving a type
+ * referenced by a program class. The archive is not opened until first asked for anything, and is closed when
+ * the provider is {@link #finished(DiagnosticsHandler) finished}, which happens when the
+ * {@link software.coley.dextranslator.model.ApplicationData} is closed.
+ * <p>
+ * Large platform archives such as {@code android.jar} can instead be {@link #shared(Path) shared} by every
+ * application in the process. Shared providers stay open when an application is closed,
+ * and keep the content of recently read classes, up to a {@link #setSharedContentLimit(long) limit},
+ * so later applications do not inflate them again.
+ * <p>
+ * Reads hold the archive open until they are done, so closing the archive waits on any reads in progress.
+ * Reads after the archive is closed open it again on demand.
+ *
+ * @author Matt Coley
+ */
+public class LazyArchiveClassFileProvider implements ClassFileResourceProvider {
+	/**
+	 * Default number of bytes of class content each shared provider keeps, enough for the commonly used
+	 * portion of a platform archive without holding all of it.
+	 */
+	public static final long DEFAULT_SHARED_CONTENT_LIMIT = 32L * 1024 * 1024;
+	private static final Map<Path, LazyArchiveClassFileProvider> SHARED = new ConcurrentHashMap<>();
+	private static volatile long sharedContentLimit = DEFAULT_SHARED_CONTENT_LIMIT;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ContentCache sharedContent;
+	private final FileTime sharedModifiedTime;
+	private final Path archivePath;
+	private final Origin origin;
+	private Map<String, String> descriptorToEntry;
+	private ZipFile zip;
+
+	/**
+	 * @param archivePath
+	 * 		Path to the JAR archive.
+	 */
+	public LazyArchiveClassFileProvider(@Nonnull Path archivePath) {
+		this(archivePath, null);
+	}
+
+	private LazyArchiveClassFileProvider(@Nonnull Path archivePath, @Nullable FileTime sharedModifiedTime) {
+		this.archivePath = archivePath;
+		this.origin = new PathOrigin(archivePath);
+		this.sharedModifiedTime = sharedModifiedTime;
+		this.sharedContent = sharedModifiedTime == null ? null : new ContentCache();
+	}
+
+	/**
+	 * @param archivePath
+	 * 		Path to the JAR archive.
+	 *
+	 * @return Provider of the archive shared by the whole process. A new provider is only created
+	 * when there is no shared provider for the archive yet, or the archive has been modified since.
+	 * A provider replaced due to modification is closed, though applications still using it can re-open it on demand.
+	 *
+	 * @throws IOException
+	 * 		When the archive path cannot be resolved, or a replaced provider could not be closed.
+	 */
+	@Nonnull
+	public static LazyArchiveClassFileProvider shared(@Nonnull Path archivePath) throws IOException {
+		Path realPath = archivePath.toRealPath();
+		FileTime modifiedTime = Files.getLastModifiedTime(realPath);
+		LazyArchiveClassFileProvider[] replaced = new LazyArchiveClassFileProvider[1];
+		LazyArchiveClassFileProvider provider = SHARED.compute(realPath, (path, existing) -> {
+			if (existing != null && existing.sharedModifiedTime.equals(modifiedTime))
+				return existing;
+			replaced[0] = existing;
+			return new LazyArchiveClassFileProvider(path, modifiedTime);
+		});
+
+		// Closed outside of the map operation, as closing waits on reads still in progress.
+		if (replaced[0] != null)
+			replaced[0].close();
+		return provider;
+	}
+
+	/**
+	 * @param limit
+	 * 		Number of bytes of class content each {@link #shared(Path) shared} provider keeps.
+	 * 		Once exceeded, the content of the least recently read classes is dropped. Zero or less to keep none.
+	 * 		Defaults to {@link #DEFAULT_SHARED_CONTENT_LIMIT}.
+	 */
+	public static void setSharedContentLimit(long limit) {
+		sharedContentLimit = Math.max(0, limit);
+	}
+
+	/**
+	 * @return Number of bytes of class content each {@link #shared(Path) shared} provider keeps.
+	 */
+	public static long getSharedContentLimit() {
+		return sharedContentLimit;
+	}
+
+	/**
+	 * Closes all {@link #shared(Path) shared} providers. Applications still using them will re-open their archives
+	 * on demand, but later calls to {@link #shared(Path)} create new providers.
+	 *
+	 * @throws IOException
+	 * 		When an archive could not be closed.
+	 */
+	public static void releaseShared() throws IOException {
+		IOException failure = null;
+		for (Path path : SHARED.keySet()) {
+			LazyArchiveClassFileProvider provider = SHARED.remove(path);
+			if (provider == null)
+				continue;
+			try {
+				provider.close();
+			} catch (IOException ex) {
+				if (failure == null)
+					failure = ex;
+				else
+					failure.addSuppressed(ex);
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * @return {@code true} when this provider is shared by the whole process.
+	 *
+	 * @see #shared(Path)
+	 */
+	public boolean isShared() {
+		return sharedContent != null;
+	}
+
+	/**
+	 * @return Number of bytes of class content kept by this provider. Always zero for providers that are not shared.
+	 */
+	public long getSharedContentSize() {
+		return sharedContent == null ? 0 : sharedContent.size();
+	}
+
+	/**
+	 * @return Path to the JAR archive.
+	 */
+	@Nonnull
+	public Path getArchivePath() {
+		return archivePath;
+	}
+
+	/**
+	 * @return {@code true} when the archive is currently open.
+	 */
+	public boolean isOpen() {
+		lock.readLock().lock();
+		try {
+			return zip != null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getClassDescriptors() {
+		try {
+			lockOpen();
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to index archive: " + archivePath, ex);
+		}
+		try {
+			return Collections.unmodifiableSet(descriptorToEntry.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Nullable
+	@Override
+	public ProgramResource getProgramResource(String descriptor) {
+		try {
+			// Entries are inflated under the read lock, so lookups across the loader's thread pool run at once,
+			// while the archive cannot be closed until they are done.
+			lockOpen();
+			try {
+				String entryName = descriptorToEntry.get(descriptor);
+				if (entryName == null)
+					return null;
+				Origin entryOrigin = new ArchiveEntryOrigin(entryName, origin);
+				byte[] bytes = sharedContent == null ? null : sharedContent.get(descriptor);
+				if (bytes == null) {
+					ZipEntry entry = zip.getEntry(entryName);
+					if (entry == null)
+						return null;
+					try (InputStream in = zip.getInputStream(entry)) {
+						bytes = in.readAllBytes();
+					}
+					if (sharedContent != null)
+						sharedContent.put(descriptor, bytes, sharedContentLimit);
+				}
+				return ProgramResource.fromBytes(entryOrigin, ProgramResource.Kind.CF, bytes,
+						Collections.singleton(descriptor));
+			} finally {
+				lock.readLock().unlock();
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to read '" + descriptor + "' from archive: " + archivePath, ex);
+		}
+	}
+
+	@Override
+	public void finished(DiagnosticsHandler handler) throws IOException {
+		// Shared providers outlive any single application, see 'releaseShared()'.
+		if (sharedContent == null)
+			close();
+	}
+
+	/**
+	 * Closes the archive once reads in progress are done, and drops any kept class content.
+	 *
+	 * @throws IOException
+	 * 		When the archive could not be closed.
+	 */
+	private void close() throws IOException {
+		ZipFile closed;
+		lock.writeLock().lock();
+		try {
+			closed = zip;
+			zip = null;
+			descriptorToEntry = null;
+			if (sharedContent != null)
+				sharedContent.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		if (closed != null)
+			closed.close();
+	}
+
+	/**
+	 * Acquires the read lock, opening and indexing the archive if not already open.
+	 * When this returns, the read lock is held and the archive is open. The caller must release the read lock.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be read. The read lock is not held in this case.
+	 */
+	private void lockOpen() throws IOException {
+		lock.readLock().lock();
+		if (zip != null)
+			return;
+
+		// The read lock cannot be upgraded, so open under the write lock and then downgrade back to the read lock.
+		lock.readLock().unlock();
+		lock.writeLock().lock();
+		try {
+			if (zip == null) {
+				ZipFile opened = new ZipFile(archivePath.toFile());
+				Map<String, String> index = new HashMap<>();
+				Enumeration<? extends ZipEntry> entries = opened.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					String name = entry.getName();
+					if (!entry.isDirectory() && JarArchiveResourceProvider.isClassEntry(name))
+						index.putIfAbsent(DescriptorUtils.guessTypeDescriptor(name), name);
+				}
+				zip = opened;
+				descriptorToEntry = index;
+			}
+			lock.readLock().lock();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Class content kept by a shared provider, dropping the least recently read classes once over the limit.
+	 */
+	private static class ContentCache {
+		private final Map<String, byte[]> content = new LinkedHashMap<>(16, 0.75f, true);
+		private long size;
+
+		@Nullable
+		private synchronized byte[] get(@Nonnull String descriptor) {
+			return content.get(descriptor);
+		}
+
+		private synchronized void put(@Nonnull String descriptor, @Nonnull byte[] bytes, long limit) {
+			if (bytes.length > limit)
+				return;
+			byte[] previous = content.put(descriptor, bytes);
+			if (previous != null)
+				size -= previous.length;
+			size += bytes.length;
+
+			// Iteration starts at the least recently read class, and the class just added is last.
+			Iterator<byte[]> iterator = content.values().iterator();
+			while (size > limit && iterator.hasNext()) {
+				size -= iterator.next().length;
+				iterator.remove();
+			}
+		}
+
+		private synchronized long size() {
+			return size;
+		}
+
+		private synchronized void clear() {
+			content.clear();
+			size = 0;
+		}
+	}
+}
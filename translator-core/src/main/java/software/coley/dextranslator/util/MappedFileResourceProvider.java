@@ -0,0 +1,220 @@
+package software.coley.dextranslator.util;
+
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Provider of a single program file, which is not read until the application is loaded.
+ * <p>
+ * Files are mapped read-only into memory when first read, so their content does not need to be copied onto
+ * the heap up front. Small files are not worth the cost of a mapping, and are read into memory instead.
+ * The mapping is released when the provider is {@link #finished(DiagnosticsHandler) finished},
+ * which happens when the {@link software.coley.dextranslator.model.ApplicationData} is closed.
+ *
+ * @author Matt Coley
+ */
+public class MappedFileResourceProvider implements CountingResourceProvider {
+	/**
+	 * Files smaller than this are read into memory rather than mapped.
+	 */
+	private static final long MAP_THRESHOLD = 64 * 1024;
+	private static final Method INVOKE_CLEANER;
+	private static final Object UNSAFE;
+	private final Path path;
+	private final ProgramResource.Kind kind;
+	private final Origin origin;
+	private ByteBuffer buffer;
+	private long bytesRead;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Throwable t) {
+			// Not available on this JVM, mappings are released when collected instead
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * @param path
+	 * 		Path to the file.
+	 * @param kind
+	 * 		Kind of program file.
+	 */
+	public MappedFileResourceProvider(@Nonnull Path path, @Nonnull ProgramResource.Kind kind) {
+		this.path = path;
+		this.kind = kind;
+		this.origin = new PathOrigin(path);
+	}
+
+	/**
+	 * @return Path to the file.
+	 */
+	@Nonnull
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return {@code true} when the file content is currently held, either mapped or in memory.
+	 */
+	public synchronized boolean isOpen() {
+		return buffer != null;
+	}
+
+	@Override
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public Collection<ProgramResource> getProgramResources() {
+		return Collections.singletonList(new MappedFileResource());
+	}
+
+	@Override
+	public synchronized void finished(DiagnosticsHandler handler) throws IOException {
+		ByteBuffer released = buffer;
+		buffer = null;
+		if (released instanceof MappedByteBuffer && INVOKE_CLEANER != null) {
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, released);
+			} catch (ReflectiveOperationException ex) {
+				throw new IOException("Failed to release mapping of: " + path, ex);
+			}
+		}
+	}
+
+	/**
+	 * @return Content of the file, opening it if not already open.
+	 *
+	 * @throws IOException
+	 * 		When the file cannot be read.
+	 */
+	@Nonnull
+	private synchronized ByteBuffer open() throws IOException {
+		if (buffer == null) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long size = channel.size();
+				if (size < MAP_THRESHOLD) {
+					ByteBuffer content = ByteBuffer.allocate((int) size);
+					while (content.hasRemaining())
+						if (channel.read(content) < 0)
+							break;
+					content.flip();
+					buffer = content;
+				} else {
+					buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				}
+				bytesRead += size;
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Program resource of the file.
+	 */
+	private class MappedFileResource implements ProgramResource {
+		@Override
+		public Kind getKind() {
+			return kind;
+		}
+
+		@Override
+		public InputStream getByteStream() throws ResourceException {
+			try {
+				ByteBuffer source = open();
+				return new BufferInputStream(source, source.duplicate());
+			} catch (IOException ex) {
+				throw new ResourceException(origin, ex);
+			}
+		}
+
+		@Nullable
+		@Override
+		public Set<String> getClassDescriptors() {
+			return null;
+		}
+
+		@Override
+		public Origin getOrigin() {
+			return origin;
+		}
+	}
+
+	/**
+	 * Stream over the file content. Reads are done while holding the provider lock, so that the mapping
+	 * cannot be released during a read. Once released, reads fail rather than touching the unmapped memory.
+	 */
+	private class BufferInputStream extends InputStream {
+		private final ByteBuffer source;
+		private final ByteBuffer view;
+
+		private BufferInputStream(@Nonnull ByteBuffer source, @Nonnull ByteBuffer view) {
+			this.source = source;
+			this.view = view;
+		}
+
+		@Override
+		public int read() throws IOException {
+			synchronized (MappedFileResourceProvider.this) {
+				ensureOpen();
+				return view.hasRemaining() ? view.get() & 0xFF : -1;
+			}
+		}
+
+		@Override
+		public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+			synchronized (MappedFileResourceProvider.this) {
+				ensureOpen();
+				if (len == 0)
+					return 0;
+				if (!view.hasRemaining())
+					return -1;
+				int count = Math.min(len, view.remaining());
+				view.get(b, off, count);
+				return count;
+			}
+		}
+
+		@Override
+		public int available() throws IOException {
+			synchronized (MappedFileResourceProvider.this) {
+				ensureOpen();
+				return view.remaining();
+			}
+		}
+
+		private void ensureOpen() throws IOException {
+			// The file may have been re-opened since, but this stream's view is of the released content.
+			if (buffer != source)
+				throw new IOException("Content of '" + path + "' was released");
+		}
+	}
+}
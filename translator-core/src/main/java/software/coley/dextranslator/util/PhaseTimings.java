@@ -0,0 +1,237 @@
+package software.coley.dextranslator.util;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tree of named phases and how long each took. Phases are started with {@link #begin(String)} and
+ * completed with {@link #end()}, with phases begun inside another becoming its children.
+ * <p>
+ * R8's {@code Timing} only reports its tree by printing it, so we track our own phases around the R8 calls
+ * in order to offer the data in a usable form.
+ *
+ * @author Matt Coley
+ */
+public class PhaseTimings {
+	private static final PhaseTimings EMPTY = new PhaseTimings(null);
+	private final Deque<Phase> active = new ArrayDeque<>();
+	private final Phase root;
+
+	private PhaseTimings(Phase root) {
+		this.root = root;
+		if (root != null)
+			active.push(root);
+	}
+
+	/**
+	 * @param title
+	 * 		Title of the root phase, which begins immediately.
+	 *
+	 * @return New timings tree.
+	 */
+	@Nonnull
+	public static PhaseTimings create(@Nonnull String title) {
+		return new PhaseTimings(new Phase(title));
+	}
+
+	/**
+	 * @return Timings instance that records nothing.
+	 */
+	@Nonnull
+	public static PhaseTimings empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @param title
+	 * 		Title of the root phase.
+	 * @param timings
+	 * 		Completed timings to place under the root, in order.
+	 *
+	 * @return New completed timings tree, with a root spanning the given timings.
+	 */
+	@Nonnull
+	public static PhaseTimings combine(@Nonnull String title, @Nonnull PhaseTimings... timings) {
+		Phase root = new Phase(title);
+		long total = 0;
+		for (PhaseTimings timing : timings) {
+			if (timing.isEmpty())
+				continue;
+			root.children.add(timing.root);
+			total += timing.root.durationNanos;
+		}
+		root.durationNanos = total;
+		root.done = true;
+		PhaseTimings combined = new PhaseTimings(root);
+		combined.active.clear();
+		return combined;
+	}
+
+	/**
+	 * @return {@code true} when this instance records nothing.
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Begins a new phase within the current phase.
+	 *
+	 * @param title
+	 * 		Phase title.
+	 */
+	public synchronized void begin(@Nonnull String title) {
+		if (root == null || active.isEmpty())
+			return;
+		Phase phase = new Phase(title);
+		active.peek().children.add(phase);
+		active.push(phase);
+	}
+
+	/**
+	 * Ends the current phase. Ending the root phase completes the tree.
+	 */
+	public synchronized void end() {
+		if (root == null || active.isEmpty())
+			return;
+		active.pop().finish();
+	}
+
+	/**
+	 * Places completed timings within the current phase, as if they were begun and ended within it.
+	 *
+	 * @param timings
+	 * 		Completed timings to add.
+	 */
+	public synchronized void attach(@Nonnull PhaseTimings timings) {
+		if (root == null || active.isEmpty() || timings.isEmpty())
+			return;
+		active.peek().children.add(timings.root);
+	}
+
+	/**
+	 * Ends any phases still in progress, including the root phase.
+	 */
+	public synchronized void finish() {
+		while (!active.isEmpty())
+			end();
+	}
+
+	/**
+	 * @return Root phase, or {@code null} when {@link #isEmpty() empty}.
+	 */
+	public Phase getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return Tree as JSON, where each phase is an object with {@code title}, {@code nanos} and {@code children}.
+	 */
+	@Nonnull
+	public String toJson() {
+		if (root == null)
+			return "null";
+		StringBuilder sb = new StringBuilder();
+		root.appendJson(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * @return Tree as indented lines of phase titles, durations and share of the parent phase.
+	 */
+	@Nonnull
+	public String toPrettyString() {
+		if (root == null)
+			return "";
+		StringBuilder sb = new StringBuilder();
+		root.appendPretty(sb, 0, root.durationNanos);
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toPrettyString();
+	}
+
+	/**
+	 * Single phase in the tree.
+	 */
+	public static class Phase {
+		private final List<Phase> children = new ArrayList<>();
+		private final String title;
+		private final long start;
+		private long durationNanos;
+		private boolean done;
+
+		private Phase(@Nonnull String title) {
+			this.title = title;
+			this.start = System.nanoTime();
+		}
+
+		private void finish() {
+			if (done)
+				return;
+			durationNanos = System.nanoTime() - start;
+			done = true;
+		}
+
+		/**
+		 * @return Phase title.
+		 */
+		@Nonnull
+		public String getTitle() {
+			return title;
+		}
+
+		/**
+		 * @return Time spent in the phase, in nanoseconds. Zero if the phase has not ended.
+		 */
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		/**
+		 * @return Phases within this phase, in the order they were started.
+		 */
+		@Nonnull
+		public List<Phase> getChildren() {
+			return Collections.unmodifiableList(children);
+		}
+
+		private void appendJson(@Nonnull StringBuilder sb) {
+			sb.append("{\"title\":\"");
+			for (char c : title.toCharArray()) {
+				if (c == '"' || c == '\\')
+					sb.append('\\').append(c);
+				else if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+			sb.append("\",\"nanos\":").append(durationNanos).append(",\"children\":[");
+			for (int i = 0; i < children.size(); i++) {
+				if (i > 0)
+					sb.append(',');
+				children.get(i).appendJson(sb);
+			}
+			sb.append("]}");
+		}
+
+		private void appendPretty(@Nonnull StringBuilder sb, int depth, long parentNanos) {
+			for (int i = 0; i < depth; i++)
+				sb.append("  ");
+			sb.append(title).append(": ")
+					.append(String.format(Locale.ROOT, "%.3fms", durationNanos / 1_000_000.0));
+			if (depth > 0 && parentNanos > 0)
+				sb.append(String.format(Locale.ROOT, " (%.1f%%)", 100.0 * durationNanos / parentNanos));
+			sb.append('\n');
+			for (Phase child : children)
+				child.appendPretty(sb, depth + 1, durationNanos);
+		}
+	}
+}
@@ -11,6 +11,8 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class ThreadPools {
 	private static final AtomicReference<ExecutorService> sharedThreadPool = new AtomicReference<>();
+	private static final AtomicReference<ExecutorService> sharedCachedThreadPool = new AtomicReference<>();
+	private static final AtomicReference<ExecutorService> sharedTimeBudgetThreadPool = new AtomicReference<>();
 
 	/**
 	 * @return Shared fixed thread pool with max amount of threads recommended for the current system.
@@ -33,4 +35,58 @@ public class ThreadPools {
 			return service;
 		}
 	}
+
+	/**
+	 * @return Shared unbounded thread pool of daemon threads, for tasks that wait on work handed to other pools.
+	 */
+	public static ExecutorService getCachedDaemonThreadPool() {
+		synchronized (sharedCachedThreadPool) {
+			ExecutorService service = sharedCachedThreadPool.get();
+			if (service == null) {
+				service = Executors.newCachedThreadPool(r -> {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					return t;
+				});
+				sharedCachedThreadPool.set(service);
+			}
+			return service;
+		}
+	}
+
+	/**
+	 * @return Shared unbounded thread pool of daemon threads, for work that a caller may stop waiting on once its
+	 * time budget runs out. Each caller waits on one task at a time, so the work in progress is bounded by the
+	 * callers. Work that is abandoned while running only holds on to its own thread, and never delays other work.
+	 */
+	public static ExecutorService getTimeBudgetThreadPool() {
+		synchronized (sharedTimeBudgetThreadPool) {
+			ExecutorService service = sharedTimeBudgetThreadPool.get();
+			if (service == null) {
+				service = Executors.newCachedThreadPool(r -> {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					return t;
+				});
+				sharedTimeBudgetThreadPool.set(service);
+			}
+			return service;
+		}
+	}
+
+	/**
+	 * @param service
+	 * 		Some executor service.
+	 *
+	 * @return Number of threads the service can usefully run tasks on at once, at most the number of available processors.
+	 * Pools that grow on demand, such as {@link Executors#newCachedThreadPool()}, report an effectively
+	 * unbounded maximum size, which is of no use when deciding how to split up work.
+	 * If this cannot be determined, the number of available processors is assumed.
+	 */
+	public static int getParallelism(ExecutorService service) {
+		int processors = Runtime.getRuntime().availableProcessors();
+		if (service instanceof ThreadPoolExecutor)
+			return Math.min(((ThreadPoolExecutor) service).getMaximumPoolSize(), processors);
+		return processors;
+	}
 }
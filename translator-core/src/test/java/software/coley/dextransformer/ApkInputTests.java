@@ -0,0 +1,66 @@
+package software.coley.dextransformer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.ApkArchiveResourceProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApkInputTests extends TestBase {
+	private static final String FIRST_DEX = "/dx-samples/068-classloader/classes.dex";
+	private static final String SECOND_DEX = "/dx-samples/701-easy-div-rem/classes.dex";
+
+	@Test
+	void testApkMatchesDexInputs(@TempDir Path temp) {
+		byte[] first = assertDoesNotThrow(() -> Files.readAllBytes(Paths.get(ApkInputTests.class.getResource(FIRST_DEX).toURI())));
+		byte[] second = assertDoesNotThrow(() -> Files.readAllBytes(Paths.get(ApkInputTests.class.getResource(SECOND_DEX).toURI())));
+
+		// Create an APK holding both DEX files, along with entries that should be skipped
+		Path apkPath = temp.resolve("sample.apk");
+		assertDoesNotThrow(() -> {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(apkPath))) {
+				write(zos, "AndroidManifest.xml", new byte[]{0, 1, 2, 3});
+				write(zos, "classes2.dex", second);
+				write(zos, "classes.dex", first);
+				write(zos, "assets/classes3.dex", new byte[]{0, 1, 2, 3});
+				write(zos, "res/raw/data.bin", new byte[]{0, 1, 2, 3});
+			}
+		});
+
+		ApplicationData fromApk = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addApkArchive(apkPath),
+				new Options().getInternalOptions()));
+		ApplicationData fromDex = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addDex(first).addDex(second),
+				new Options().getInternalOptions()));
+		Set<String> expected = new TreeSet<>(fromDex.getClassNames());
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, new TreeSet<>(fromApk.getClassNames()));
+	}
+
+	@Test
+	void testDexFileNumbers() {
+		assertEquals(1, ApkArchiveResourceProvider.getDexFileNumber("classes.dex"));
+		assertEquals(2, ApkArchiveResourceProvider.getDexFileNumber("classes2.dex"));
+		assertEquals(12, ApkArchiveResourceProvider.getDexFileNumber("classes12.dex"));
+		assertEquals(-1, ApkArchiveResourceProvider.getDexFileNumber("classes1.dex"));
+		assertEquals(-1, ApkArchiveResourceProvider.getDexFileNumber("classes02.dex"));
+		assertEquals(-1, ApkArchiveResourceProvider.getDexFileNumber("assets/classes.dex"));
+		assertEquals(-1, ApkArchiveResourceProvider.getDexFileNumber("classes.jar"));
+	}
+
+	private static void write(ZipOutputStream zos, String name, byte[] content) throws Exception {
+		zos.putNextEntry(new ZipEntry(name));
+		zos.write(content);
+		zos.closeEntry();
+	}
+}
@@ -0,0 +1,149 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.model.LoadStatistics;
+import software.coley.dextranslator.util.JarArchiveResourceProvider;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveLoadingTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/003-omnibus-opcodes/classes.jar";
+	private static final int SPLIT_COUNT = 6;
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 2, Options.DEFAULT_MAX_OPEN_ARCHIVES})
+	void testSplitArchivesMatchSingleArchive(int maxOpenArchives, @TempDir Path temp) {
+		Path jarPath = assertDoesNotThrow(() -> Paths.get(ArchiveLoadingTests.class.getResource(RESOURCE_PATH).toURI()));
+
+		// Split the classes of the sample across multiple archives
+		List<Path> splitPaths = new ArrayList<>();
+		long[] classBytes = {0};
+		assertDoesNotThrow(() -> {
+			List<ZipOutputStream> outputs = new ArrayList<>();
+			for (int i = 0; i < SPLIT_COUNT; i++) {
+				Path splitPath = temp.resolve("split-" + i + ".jar");
+				splitPaths.add(splitPath);
+				outputs.add(new ZipOutputStream(Files.newOutputStream(splitPath)));
+			}
+			try (ZipFile zip = new ZipFile(jarPath.toFile())) {
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				int i = 0;
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (entry.isDirectory() || !JarArchiveResourceProvider.isClassEntry(entry.getName()))
+						continue;
+					byte[] content;
+					try (InputStream in = zip.getInputStream(entry)) {
+						content = in.readAllBytes();
+					}
+					classBytes[0] += content.length;
+					ZipOutputStream zos = outputs.get(i++ % SPLIT_COUNT);
+					zos.putNextEntry(new ZipEntry(entry.getName()));
+					zos.write(content);
+					zos.closeEntry();
+				}
+			}
+			for (ZipOutputStream zos : outputs)
+				zos.close();
+		});
+
+		Inputs splitInputs = new Inputs();
+		for (Path splitPath : splitPaths)
+			splitInputs.addJarArchive(splitPath);
+		Options options = new Options().setMaxOpenArchives(maxOpenArchives);
+		ApplicationData split = assertDoesNotThrow(() -> ApplicationData.from(splitInputs, options));
+		ApplicationData single = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addJarArchive(jarPath), new Options()));
+		assertEquals(single.getClassNames(), split.getClassNames());
+
+		// Statistics should cover all the split archives
+		LoadStatistics statistics = split.getLoadStatistics();
+		assertNotNull(statistics);
+		assertEquals(SPLIT_COUNT, statistics.getArchiveCount());
+		assertEquals(split.getClassNames().size(), statistics.getClassCount());
+		assertEquals(classBytes[0], statistics.getBytesRead());
+		assertTrue(statistics.getElapsedNanos() > 0);
+	}
+
+	@Test
+	void testResourceEntriesSurviveRoundTrip(@TempDir Path temp) {
+		Path jarPath = assertDoesNotThrow(() -> Paths.get(ArchiveLoadingTests.class.getResource(RESOURCE_PATH).toURI()));
+
+		// Copy the classes of the sample alongside some regular files
+		Map<String, byte[]> resources = new TreeMap<>();
+		resources.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n".getBytes(StandardCharsets.UTF_8));
+		resources.put("META-INF/services/java.lang.Runnable", "example.Task\n".getBytes(StandardCharsets.UTF_8));
+		resources.put("config/app.properties", "key=value\n".getBytes(StandardCharsets.UTF_8));
+		Path inputPath = temp.resolve("input.jar");
+		assertDoesNotThrow(() -> {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(inputPath));
+				 ZipFile zip = new ZipFile(jarPath.toFile())) {
+				for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+					zos.putNextEntry(new ZipEntry(resource.getKey()));
+					zos.write(resource.getValue());
+					zos.closeEntry();
+				}
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (entry.isDirectory() || !JarArchiveResourceProvider.isClassEntry(entry.getName()))
+						continue;
+					zos.putNextEntry(new ZipEntry(entry.getName()));
+					try (InputStream in = zip.getInputStream(entry)) {
+						in.transferTo(zos);
+					}
+					zos.closeEntry();
+				}
+			}
+		});
+
+		// Write back out to a JAR, keeping regular files
+		Path outputPath = temp.resolve("output.jar");
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addJarArchive(inputPath), new Options()));
+		Options options = new Options().setJvmArchiveOutput(outputPath, false);
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertDoesNotThrow(() -> {
+			try (ZipFile zip = new ZipFile(outputPath.toFile())) {
+				for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+					ZipEntry entry = zip.getEntry(resource.getKey());
+					assertNotNull(entry, "Missing resource: " + resource.getKey());
+					try (InputStream in = zip.getInputStream(entry)) {
+						assertArrayEquals(resource.getValue(), in.readAllBytes(), "Changed resource: " + resource.getKey());
+					}
+				}
+				for (String className : data.getClassNames())
+					assertNotNull(zip.getEntry(className.replace('.', '/') + ".class"), "Missing class: " + className);
+			}
+		});
+	}
+
+	@Test
+	void testMetaInfClassesAreNotClassEntries() {
+		assertTrue(JarArchiveResourceProvider.isClassEntry("com/example/Foo.class"));
+		assertFalse(JarArchiveResourceProvider.isClassEntry("module-info.class"));
+		assertFalse(JarArchiveResourceProvider.isClassEntry("META-INF/versions/9/com/example/Foo.class"));
+		assertFalse(JarArchiveResourceProvider.isClassEntry("meta-inf/versions/9/com/example/Foo.class"));
+		assertFalse(JarArchiveResourceProvider.isClassEntry("/Meta-Inf/versions/9/com/example/Foo.class"));
+	}
+}
@@ -0,0 +1,115 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.ConversionCancelledException;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.progress.ProgressListener;
+import software.coley.dextranslator.task.ConverterTask;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CancellationTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+	private static final String LARGE_RESOURCE_PATH = "/dx-samples/083-compiler-regressions/classes.dex";
+
+	@Test
+	void testInterruptedThreadCancelsConversion() {
+		ApplicationData data = load();
+		Options options = new Options().setJvmOutput(ClassFileConsumer.emptyConsumer());
+		Thread.currentThread().interrupt();
+		try {
+			assertThrows(ConversionCancelledException.class, () -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		} finally {
+			// Clear the flag so it does not leak into other tests
+			Thread.interrupted();
+		}
+
+		// The data should remain usable after a cancelled conversion
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+	}
+
+	@Test
+	void testCancelledTaskFuture() {
+		ApplicationData data = load();
+		Options options = new Options().setJvmOutput(ClassFileConsumer.emptyConsumer());
+		CompletableFuture<ConversionResult> future = new ConverterTask(() -> data, options).start();
+		future.cancel(true);
+		assertTrue(future.isCancelled());
+
+		// Follow-up work should not be held up by the cancelled task
+		ConversionResult result = assertDoesNotThrow(() -> new ConverterTask(() -> data, options).start().get());
+		assertTrue(result.getInvalidMethods().isEmpty());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void testCancelledTaskStopsLowering(boolean withTimeBudget) throws InterruptedException {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(CancellationTests.class.getResource(LARGE_RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+
+		// The first lowered method holds up its worker until the task is cancelled
+		AtomicInteger lowered = new AtomicInteger();
+		AtomicInteger total = new AtomicInteger();
+		CountDownLatch firstLowered = new CountDownLatch(1);
+		CountDownLatch cancelIssued = new CountDownLatch(1);
+		Options options = new Options()
+				.setMethodTimeBudget(withTimeBudget ? Duration.ofMinutes(1) : null)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer())
+				.setProgressListener(new ProgressListener() {
+					@Override
+					public void onMethodLowered(int count, int methodsToLower) {
+						lowered.incrementAndGet();
+						total.set(methodsToLower);
+						if (firstLowered.getCount() > 0) {
+							firstLowered.countDown();
+							try {
+								cancelIssued.await();
+							} catch (InterruptedException ex) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					}
+				});
+		AtomicReference<Thread> taskThread = new AtomicReference<>();
+		CompletableFuture<ConversionResult> future = new ConverterTask(() -> {
+			taskThread.set(Thread.currentThread());
+			return data;
+		}, options).start();
+		assertTrue(firstLowered.await(1, TimeUnit.MINUTES));
+		future.cancel(true);
+		cancelIssued.countDown();
+		assertTrue(future.isCancelled());
+
+		// Work in flight at the time of cancellation may still complete, but the conversion waits for it to stop.
+		// Once the task thread has ended, no more methods are lowered.
+		taskThread.get().join(TimeUnit.MINUTES.toMillis(1));
+		assertFalse(taskThread.get().isAlive(), "Task did not stop after cancellation");
+		int afterCancel = lowered.get();
+		assertTrue(afterCancel < total.get(), "All methods were lowered despite cancellation");
+		assertEquals(afterCancel, lowered.get(), "Methods were still lowered after cancellation");
+	}
+
+	private static ApplicationData load() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(CancellationTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+	}
+}
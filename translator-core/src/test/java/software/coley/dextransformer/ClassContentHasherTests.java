@@ -0,0 +1,116 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.graph.DexProgramClass;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.ClassContentHasher;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassContentHasherTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testSeparateDexLoadsHashEqual() {
+		Map<String, String> first = hashAll(loadDex());
+		Map<String, String> second = hashAll(loadDex());
+		assertFalse(first.isEmpty());
+		first.values().forEach(hash -> assertNotNull(hash, "Sample classes should all be hashable"));
+		assertEquals(first, second);
+	}
+
+	@Test
+	void testSeparateClassLoadsHashEqual() {
+		byte[] classFile = getRuntimeClassBytes(ClassContentHasherTests.class);
+		ApplicationData first = assertDoesNotThrow(() -> ApplicationData.fromClass(classFile));
+		ApplicationData second = assertDoesNotThrow(() -> ApplicationData.fromClass(classFile));
+		Map<String, String> firstHashes = hashAll(first);
+		assertNotNull(firstHashes.values().iterator().next());
+		assertEquals(firstHashes, hashAll(second));
+	}
+
+	@Test
+	void testChangedConstantChangesHash() {
+		// JVM code
+		ApplicationData original = assertDoesNotThrow(() -> ApplicationData.fromClass(createClass(1)));
+		ApplicationData changed = assertDoesNotThrow(() -> ApplicationData.fromClass(createClass(2)));
+		String originalHash = ClassContentHasher.computeHash(original.getClass("Sample"));
+		String changedHash = ClassContentHasher.computeHash(changed.getClass("Sample"));
+		assertNotNull(originalHash);
+		assertNotNull(changedHash);
+		assertNotEquals(originalHash, changedHash);
+
+		// Dalvik code
+		byte[] originalDex = assertDoesNotThrow(() -> original.exportToDexFile());
+		byte[] changedDex = assertDoesNotThrow(() -> changed.exportToDexFile());
+		String originalDexHash = ClassContentHasher.computeHash(assertDoesNotThrow(() -> ApplicationData.fromDex(originalDex)).getClass("Sample"));
+		String changedDexHash = ClassContentHasher.computeHash(assertDoesNotThrow(() -> ApplicationData.fromDex(changedDex)).getClass("Sample"));
+		assertNotNull(originalDexHash);
+		assertNotNull(changedDexHash);
+		assertNotEquals(originalDexHash, changedDexHash);
+	}
+
+	@Test
+	void testChangedSupertypeChangesContextHash() {
+		ApplicationData original = assertDoesNotThrow(() -> ApplicationData.fromClasses(List.of(
+				createClass("Parent", "java/lang/Object", 1), createClass("Sample", "Parent", 0))));
+		ApplicationData changed = assertDoesNotThrow(() -> ApplicationData.fromClasses(List.of(
+				createClass("Parent", "java/lang/Object", 2), createClass("Sample", "Parent", 0))));
+
+		// The class itself is the same, but what it is converted against is not
+		DexProgramClass originalClass = original.getClass("Sample");
+		DexProgramClass changedClass = changed.getClass("Sample");
+		assertEquals(ClassContentHasher.computeHash(originalClass), ClassContentHasher.computeHash(changedClass));
+		String originalHash = new ClassContentHasher().hashInContext(originalClass, original.getApplication()::programDefinitionFor);
+		String changedHash = new ClassContentHasher().hashInContext(changedClass, changed.getApplication()::programDefinitionFor);
+		assertNotNull(originalHash);
+		assertNotNull(changedHash);
+		assertNotEquals(originalHash, changedHash);
+	}
+
+	@Nonnull
+	private static Map<String, String> hashAll(@Nonnull ApplicationData data) {
+		Map<String, String> hashes = new TreeMap<>();
+		for (DexProgramClass programClass : data.getApplication().classes())
+			hashes.put(programClass.getTypeName(), ClassContentHasher.computeHash(programClass));
+		return hashes;
+	}
+
+	@Nonnull
+	private static ApplicationData loadDex() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(ClassContentHasherTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options()));
+	}
+
+	@Nonnull
+	private static byte[] createClass(int constant) {
+		return createClass("Sample", "java/lang/Object", constant);
+	}
+
+	@Nonnull
+	private static byte[] createClass(@Nonnull String name, @Nonnull String superName, int constant) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "value", "()I", null, null);
+		method.visitCode();
+		method.visitLdcInsn(constant);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+}
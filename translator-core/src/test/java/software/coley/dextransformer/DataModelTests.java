@@ -10,9 +10,11 @@ import org.junit.jupiter.api.Test;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
 import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.ClassFilters;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -56,6 +58,54 @@ public class DataModelTests extends TestBase {
 		assertSame(code, codePostExport);
 	}
 
+	@Test
+	void testFilteredJvmExportDoesNotTamperWithDataModel() {
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(DataModelTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+
+		// Initial state
+		Map<DexEncodedMethod, Code> codes = collectCodes(data);
+		Map<String, byte[]> fullExport = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+
+		// Export only some classes
+		byte[] base = assertDoesNotThrow(() -> data.exportToJvmClass("Base"));
+		assertNotNull(base);
+		assertArrayEquals(fullExport.get("Base"), base);
+
+		// Exporting should not have affected the state, or the output of later exports
+		assertSameCodes(codes, data);
+		Map<String, byte[]> fullExportAfter = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(fullExport.keySet(), fullExportAfter.keySet());
+		fullExport.forEach((name, bytecode) -> assertArrayEquals(bytecode, fullExportAfter.get(name), name));
+	}
+
+	@Test
+	void testFilteredDexExportDoesNotTamperWithDataModel() {
+		String resourcePath = "/dx-samples/068-classloader/classes.jar";
+		Path jarPath = assertDoesNotThrow(() -> Paths.get(DataModelTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = new Inputs().addJarArchive(jarPath);
+		Options options = new Options()
+				.setApiLevel(AndroidApiLevel.getAndroidApiLevel(30));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, options.getInternalOptions()));
+
+		// Initial state
+		Map<DexEncodedMethod, Code> codes = collectCodes(data);
+		byte[] fullExport = assertDoesNotThrow(() -> data.exportToDexFile());
+
+		// Export only some classes
+		byte[] partialExport = assertDoesNotThrow(() -> data.exportToDexFile(ClassFilters.forTypes(Set.of("Base"))));
+		assertNotNull(partialExport);
+		assertTrue(partialExport.length < fullExport.length);
+
+		// Exporting should not have affected the state, or the output of later exports
+		assertSameCodes(codes, data);
+		//  - Some stuff may be out of order, so length check should suffice
+		byte[] fullExportAfter = assertDoesNotThrow(() -> data.exportToDexFile());
+		assertEquals(fullExport.length, fullExportAfter.length);
+	}
+
 	@Test
 	void testDataFromProgramClassesYieldsSameResults() {
 		// Inputs
@@ -155,4 +205,21 @@ public class DataModelTests extends TestBase {
 		Map<String, byte[]> classes = assertDoesNotThrow(() -> dataCL.exportToJvmClassMap());
 		assertEquals(classes.keySet(), dataCL.getClassNames());
 	}
+
+	private static Map<DexEncodedMethod, Code> collectCodes(ApplicationData data) {
+		Map<DexEncodedMethod, Code> codes = new IdentityHashMap<>();
+		for (DexProgramClass programClass : data.getApplication().classes())
+			for (DexEncodedMethod method : programClass.methods())
+				codes.put(method, method.getCode());
+		return codes;
+	}
+
+	private static void assertSameCodes(Map<DexEncodedMethod, Code> expected, ApplicationData data) {
+		Map<DexEncodedMethod, Code> actual = collectCodes(data);
+		assertEquals(expected.size(), actual.size());
+		expected.forEach((method, code) -> {
+			assertTrue(actual.containsKey(method), "Method replaced: " + method);
+			assertSame(code, actual.get(method), "Code replaced: " + method);
+		});
+	}
 }
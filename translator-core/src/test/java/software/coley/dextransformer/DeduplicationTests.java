@@ -0,0 +1,110 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.graph.DexProgramClass;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.model.DeduplicationReport;
+import software.coley.dextranslator.model.DuplicateClassPolicy;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeduplicationTests extends TestBase {
+	@Test
+	void testIdenticalClassesAreDropped() {
+		Inputs inputs = new Inputs()
+				.addJvmClass(createClass("a"))
+				.addJvmClass(createClass("a"));
+		ApplicationData data = load(inputs, DuplicateClassPolicy.FAIL);
+		assertEquals(Collections.singleton("Dup"), data.getClassNames());
+
+		DeduplicationReport report = data.getDeduplicationReport();
+		assertNotNull(report);
+		assertEquals(1, report.getIdenticalCount());
+		assertEquals(0, report.getConflictingCount());
+		assertEquals("Dup", report.getDropped().get(0).getClassName());
+	}
+
+	@Test
+	void testIdenticalDexFilesAreDropped() {
+		byte[] dex = assertDoesNotThrow(() -> {
+			try (InputStream in = DeduplicationTests.class.getResourceAsStream("/dx-samples/068-classloader/classes.dex")) {
+				return in.readAllBytes();
+			}
+		});
+		ApplicationData single = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addDex(dex), new Options()));
+		ApplicationData data = load(new Inputs().addDex(dex).addDex(dex), DuplicateClassPolicy.FAIL);
+		assertEquals(single.getClassNames(), data.getClassNames());
+
+		DeduplicationReport report = data.getDeduplicationReport();
+		assertNotNull(report);
+		assertEquals(1, report.getIdenticalCount());
+		assertNull(report.getDropped().get(0).getClassName(), "Whole DEX files should be dropped");
+	}
+
+	@Test
+	void testConflictingClassFirstWins() {
+		Inputs inputs = new Inputs()
+				.addJvmClass(createClass("a"))
+				.addJvmClass(createClass("b"));
+		ApplicationData data = load(inputs, DuplicateClassPolicy.FIRST_WINS);
+		assertEquals("a", getFieldName(data));
+		assertEquals(1, data.getDeduplicationReport().getConflictingCount());
+	}
+
+	@Test
+	void testConflictingClassLastWins() {
+		Inputs inputs = new Inputs()
+				.addJvmClass(createClass("a"))
+				.addJvmClass(createClass("b"))
+				.addJvmClass(createClass("c"));
+		ApplicationData data = load(inputs, DuplicateClassPolicy.LAST_WINS);
+		assertEquals("c", getFieldName(data));
+		assertEquals(2, data.getDeduplicationReport().getConflictingCount());
+	}
+
+	@Test
+	void testConflictingClassFails() {
+		Inputs inputs = new Inputs()
+				.addJvmClass(createClass("a"))
+				.addJvmClass(createClass("b"));
+		Options options = new Options().setDuplicateClassPolicy(DuplicateClassPolicy.FAIL);
+		assertThrows(IOException.class, () -> ApplicationData.from(inputs, options));
+	}
+
+	@Test
+	void testDisabledByDefault() {
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addJvmClass(createClass("a")), new Options()));
+		assertNull(data.getDeduplicationReport());
+	}
+
+	@Nonnull
+	private static ApplicationData load(@Nonnull Inputs inputs, @Nonnull DuplicateClassPolicy policy) {
+		Options options = new Options().setDuplicateClassPolicy(policy);
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, options));
+	}
+
+	@Nonnull
+	private static String getFieldName(@Nonnull ApplicationData data) {
+		DexProgramClass cls = data.getClass("Dup");
+		assertNotNull(cls);
+		return cls.instanceFields().get(0).getName().toString();
+	}
+
+	@Nonnull
+	private static byte[] createClass(@Nonnull String fieldName) {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Dup", null, "java/lang/Object", null);
+		writer.visitField(Opcodes.ACC_PUBLIC, fieldName, "I", null, null).visitEnd();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+}
@@ -0,0 +1,131 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.graph.DexProgramClass;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.ExportCache;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExportCacheTests extends TestBase {
+	@Test
+	void testRepeatedExportsHitCache() {
+		// Inputs
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(ExportCacheTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+
+		// Model
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+		ExportCache cache = new ExportCache();
+		data.setExportCache(cache);
+
+		// First export fills the cache
+		Map<String, byte[]> first = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		int classCount = data.getClassNames().size();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(classCount, cache.getMissCount());
+		assertEquals(classCount, cache.getEntryCount());
+
+		// Second export should be served entirely from the cache, with the same output
+		Map<String, byte[]> second = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(classCount, cache.getHitCount());
+		assertEquals(first.keySet(), second.keySet());
+		first.forEach((name, bytecode) -> assertArrayEquals(bytecode, second.get(name), name));
+
+		// Single class export should also hit
+		byte[] base = assertDoesNotThrow(() -> data.exportToJvmClass("Base"));
+		assertArrayEquals(first.get("Base"), base);
+		assertEquals(classCount + 1, cache.getHitCount());
+
+		// Updating a class drops its entry
+		data.updateClass("Base", data.getClass("Base"));
+		assertEquals(classCount - 1, cache.getEntryCount());
+	}
+
+	@Test
+	void testUpdatedSupertypeMissesCache() {
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.fromClasses(List.of(
+				createClass("Parent", "java/lang/Object", 1), createClass("Child", "Parent", 0))));
+		ExportCache cache = new ExportCache();
+		data.setExportCache(cache);
+		assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(2, cache.getMissCount());
+
+		// Only the parent is updated, but the child is converted against it, so neither may be served from the cache
+		assertDoesNotThrow(() -> data.updateClasses(List.of(createClass("Parent", "java/lang/Object", 2))));
+		assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	void testEditedInPlaceMissesCache() {
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.fromClass(createClass("Sample", "java/lang/Object", 1)));
+		ExportCache cache = new ExportCache();
+		data.setExportCache(cache);
+		assertDoesNotThrow(() -> data.exportToJvmClassMap());
+
+		// Edit the class without replacing it in the model
+		DexProgramClass programClass = data.getClass("Sample");
+		programClass.sourceFile = data.getApplication().dexItemFactory().createString("Edited.java");
+		assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	void testEvictionWhenFull() {
+		ExportCache cache = new ExportCache(100);
+		cache.put("A", "hash", "opts", Map.of("A", new byte[40]));
+		cache.put("B", "hash", "opts", Map.of("B", new byte[40]));
+		assertEquals(2, cache.getEntryCount());
+
+		// Touch 'A' so that 'B' is the least recently used
+		assertNotNull(cache.get("A", "hash", "opts"));
+		cache.put("C", "hash", "opts", Map.of("C", new byte[40]));
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get("B", "hash", "opts"));
+		assertNotNull(cache.get("A", "hash", "opts"));
+		assertNotNull(cache.get("C", "hash", "opts"));
+		assertTrue(cache.getByteSize() <= 100);
+	}
+
+	@Test
+	void testSyntheticOutputsAttributedToTheirContext() {
+		Map<String, Map<String, byte[]>> attributed = ExportCache.attributeOutputs(
+				List.of("a/Foo", "a/Bar"),
+				Map.of("a/Foo", new byte[1], "a/Foo$$ExternalSyntheticLambda0", new byte[1], "a/Bar", new byte[1]));
+		assertNotNull(attributed);
+		assertEquals(2, attributed.get("a/Foo").size());
+		assertEquals(1, attributed.get("a/Bar").size());
+
+		// Outputs that do not belong to any input cannot be attributed
+		assertNull(ExportCache.attributeOutputs(List.of("a/Foo"), Map.of("b/Other", new byte[1])));
+	}
+
+	@Nonnull
+	private static byte[] createClass(@Nonnull String name, @Nonnull String superName, int constant) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "value", "()I", null, null);
+		method.visitCode();
+		method.visitLdcInsn(constant);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+}
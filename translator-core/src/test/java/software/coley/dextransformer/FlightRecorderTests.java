@@ -0,0 +1,72 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.utils.ClassFilter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.jfr.D8ConversionEvent;
+import software.coley.dextranslator.jfr.LoadEvent;
+import software.coley.dextranslator.jfr.LowerClassEvent;
+import software.coley.dextranslator.jfr.WriteEvent;
+import software.coley.dextranslator.model.ApplicationData;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderTests extends TestBase {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testEventsRecorded() throws Exception {
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = Paths.get(FlightRecorderTests.class.getResource(resourcePath).toURI());
+		Path recordingPath = tempDir.resolve("recording.jfr");
+
+		try (Recording recording = new Recording()) {
+			recording.enable(LoadEvent.class);
+			recording.enable(LowerClassEvent.class);
+			recording.enable(D8ConversionEvent.class);
+			recording.enable(WriteEvent.class);
+			recording.start();
+
+			Inputs inputs = new Inputs().addDex(dexPath);
+			ApplicationData data = ApplicationData.from(inputs, new Options().getInternalOptions());
+			Options options = new Options().setJvmOutput(ClassFileConsumer.emptyConsumer());
+			Conversion.convert(data, options, ClassFilter.PASS_ALL);
+
+			recording.stop();
+			recording.dump(recordingPath);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingPath);
+		List<String> names = events.stream()
+				.map(e -> e.getEventType().getName())
+				.collect(Collectors.toList());
+		assertTrue(names.contains("software.coley.dextranslator.Load"));
+		assertTrue(names.contains("software.coley.dextranslator.LowerClass"));
+		assertTrue(names.contains("software.coley.dextranslator.D8Conversion"));
+		assertTrue(names.contains("software.coley.dextranslator.Write"));
+
+		// Lowered classes should be named, and the write should have produced output
+		for (RecordedEvent event : events) {
+			String name = event.getEventType().getName();
+			if (name.endsWith("LowerClass")) {
+				assertNotNull(event.getString("className"));
+				assertTrue(event.getInt("methodCount") > 0);
+			} else if (name.endsWith("Write")) {
+				assertTrue(event.getLong("outputBytes") > 0);
+			}
+		}
+	}
+}
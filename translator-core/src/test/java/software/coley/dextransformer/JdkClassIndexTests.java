@@ -0,0 +1,82 @@
+package software.coley.dextransformer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdkClassIndexTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testIndexIsReusedAcrossRuns(@TempDir Path temp) {
+		JdkClassIndex first = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		assertFalse(Files.exists(first.getIndexPath()));
+		Map<String, byte[]> expected = convert(first);
+		assertTrue(first.getUnsavedClassCount() > 0, "Conversion should have looked up JDK classes");
+		assertTrue(assertDoesNotThrow(first::save));
+		assertTrue(Files.isRegularFile(first.getIndexPath()));
+		assertEquals(0, first.getUnsavedClassCount());
+		assertFalse(assertDoesNotThrow(first::save), "Nothing new to save");
+
+		// A later run should be served from the index without opening the JDK
+		JdkClassIndex second = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		assertEquals(first.getIndexedClassCount(), second.getIndexedClassCount());
+		Map<String, byte[]> actual = convert(second);
+		assertFalse(second.isJdkOpened());
+		assertEquals(expected.keySet(), actual.keySet());
+		expected.forEach((name, bytes) -> assertArrayEquals(bytes, actual.get(name), name));
+	}
+
+	@Test
+	void testUnreadableIndexIsReplaced(@TempDir Path temp) {
+		JdkClassIndex index = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		assertDoesNotThrow(() -> Files.write(index.getIndexPath(), new byte[]{1, 2, 3}));
+
+		JdkClassIndex replaced = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		assertEquals(0, replaced.getIndexedClassCount());
+		convert(replaced);
+		assertTrue(assertDoesNotThrow(replaced::save));
+		assertTrue(assertDoesNotThrow(() -> new JdkClassIndex(temp)).getIndexedClassCount() > 0);
+	}
+
+	@Test
+	void testConcurrentSavesKeepEachOthersClasses(@TempDir Path temp) {
+		// Both indices are loaded before either saves, as separate processes sharing the directory would be
+		JdkClassIndex first = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		JdkClassIndex second = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		assertNotNull(first.getProgramResource("Ljava/lang/String;"));
+		assertNotNull(second.getProgramResource("Ljava/util/ArrayList;"));
+		assertTrue(assertDoesNotThrow(first::save));
+		assertTrue(assertDoesNotThrow(second::save));
+
+		// The later save must not drop the classes of the earlier one
+		JdkClassIndex merged = assertDoesNotThrow(() -> new JdkClassIndex(temp));
+		assertEquals(2, merged.getIndexedClassCount());
+		assertNotNull(merged.getProgramResource("Ljava/lang/String;"));
+		assertNotNull(merged.getProgramResource("Ljava/util/ArrayList;"));
+		assertFalse(merged.isJdkOpened());
+	}
+
+	@Nonnull
+	private static Map<String, byte[]> convert(@Nonnull JdkClassIndex index) {
+		byte[] dex = assertDoesNotThrow(() -> {
+			try (InputStream in = JdkClassIndexTests.class.getResourceAsStream(RESOURCE_PATH)) {
+				return in.readAllBytes();
+			}
+		});
+		Options options = new Options().setJdkClassIndex(index);
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addDex(dex), options));
+		return assertDoesNotThrow(() -> data.exportToJvmClassMap());
+	}
+}
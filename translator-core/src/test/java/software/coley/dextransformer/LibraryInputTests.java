@@ -0,0 +1,201 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ProgramResource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.LazyArchiveClassFileProvider;
+
+import javax.annotation.Nonnull;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryInputTests extends TestBase {
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void testDependencyClassesAreNotConverted(boolean library, @TempDir Path temp) {
+		Path dependency = writeDependency(temp);
+		Inputs inputs = new Inputs().addJvmClass(createClass("App", "Dependency"));
+		assertDoesNotThrow(() -> {
+			if (library)
+				inputs.addLibraryArchive(dependency);
+			else
+				inputs.addClasspathArchive(dependency);
+		});
+
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options()));
+		assertEquals(Collections.singleton("App"), data.getClassNames());
+		Map<String, byte[]> classes = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(Collections.singleton("App"), classes.keySet());
+		assertDoesNotThrow(() -> data.exportToDexFile());
+		assertDoesNotThrow(data::close);
+	}
+
+	@Test
+	void testArchiveOpenedOnDemand(@TempDir Path temp) {
+		Path dependency = writeDependency(temp);
+		LazyArchiveClassFileProvider provider = new LazyArchiveClassFileProvider(dependency);
+		assertFalse(provider.isOpen(), "Archive should not be opened until asked for a class");
+
+		ProgramResource resource = provider.getProgramResource("LDependency;");
+		assertNotNull(resource);
+		assertEquals(ProgramResource.Kind.CF, resource.getKind());
+		assertNull(provider.getProgramResource("LMissing;"));
+		assertEquals(Collections.singleton("LDependency;"), provider.getClassDescriptors());
+		assertTrue(provider.isOpen());
+
+		assertDoesNotThrow(() -> provider.finished(null));
+		assertFalse(provider.isOpen(), "Archive should be closed when finished");
+	}
+
+	@Test
+	void testSharedArchiveOutlivesApplications(@TempDir Path temp) {
+		Path platform = writeDependency(temp);
+		LazyArchiveClassFileProvider shared = assertDoesNotThrow(() -> LazyArchiveClassFileProvider.shared(platform));
+		assertTrue(shared.isShared());
+		assertSame(shared, assertDoesNotThrow(() -> LazyArchiveClassFileProvider.shared(platform)));
+
+		// Closing an application should not close the archive for others still using it
+		for (int i = 0; i < 2; i++) {
+			Inputs inputs = new Inputs().addJvmClass(createClass("App", "Dependency"));
+			assertDoesNotThrow(() -> inputs.addAndroidLibrary(platform));
+			ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options()));
+			assertDoesNotThrow(() -> data.exportToJvmClassMap());
+			assertDoesNotThrow(data::close);
+			assertTrue(shared.isOpen());
+		}
+
+		assertDoesNotThrow(LazyArchiveClassFileProvider::releaseShared);
+		assertFalse(shared.isOpen());
+		assertNotSame(shared, assertDoesNotThrow(() -> LazyArchiveClassFileProvider.shared(platform)));
+		assertDoesNotThrow(LazyArchiveClassFileProvider::releaseShared);
+	}
+
+	@Test
+	void testReplacedSharedArchiveIsClosed(@TempDir Path temp) {
+		Path platform = writeDependency(temp);
+		LazyArchiveClassFileProvider shared = assertDoesNotThrow(() -> LazyArchiveClassFileProvider.shared(platform));
+		assertNotNull(shared.getProgramResource("LDependency;"));
+		assertTrue(shared.isOpen());
+
+		// Modifying the archive replaces the shared provider, and the old one should not keep its archive open
+		assertDoesNotThrow(() -> Files.setLastModifiedTime(platform,
+				FileTime.fromMillis(Files.getLastModifiedTime(platform).toMillis() + 10_000)));
+		LazyArchiveClassFileProvider replacement = assertDoesNotThrow(() -> LazyArchiveClassFileProvider.shared(platform));
+		assertNotSame(shared, replacement);
+		assertFalse(shared.isOpen());
+		assertDoesNotThrow(LazyArchiveClassFileProvider::releaseShared);
+	}
+
+	@Test
+	void testSharedContentIsBounded(@TempDir Path temp) {
+		// Classes with names of the same length have content of the same size
+		Path platform = writeArchive(temp, "A", "B", "C");
+		int classSize = createClass("A", "java/lang/Object").length;
+		long defaultLimit = LazyArchiveClassFileProvider.getSharedContentLimit();
+		LazyArchiveClassFileProvider.setSharedContentLimit(2L * classSize);
+		try {
+			LazyArchiveClassFileProvider shared = assertDoesNotThrow(() -> LazyArchiveClassFileProvider.shared(platform));
+			for (String name : new String[]{"A", "B", "C", "A"}) {
+				ProgramResource resource = shared.getProgramResource("L" + name + ";");
+				assertNotNull(resource);
+				assertArrayEquals(createClass(name, "java/lang/Object"), assertDoesNotThrow(resource::getBytes));
+				assertTrue(shared.getSharedContentSize() <= 2L * classSize);
+			}
+		} finally {
+			LazyArchiveClassFileProvider.setSharedContentLimit(defaultLimit);
+			assertDoesNotThrow(LazyArchiveClassFileProvider::releaseShared);
+		}
+	}
+
+	@Test
+	void testCloseWaitsOnReads(@TempDir Path temp) {
+		Path dependency = writeDependency(temp);
+		byte[] expected = createClass("Dependency", "java/lang/Object");
+		LazyArchiveClassFileProvider provider = new LazyArchiveClassFileProvider(dependency);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			// Reads racing with the archive being closed should see either the open archive, or re-open it
+			List<Future<?>> readers = new ArrayList<>();
+			for (int i = 0; i < 4; i++)
+				readers.add(pool.submit(() -> {
+					for (int j = 0; j < 500; j++) {
+						ProgramResource resource = provider.getProgramResource("LDependency;");
+						assertNotNull(resource);
+						assertArrayEquals(expected, assertDoesNotThrow(resource::getBytes));
+					}
+				}));
+			while (!readers.stream().allMatch(Future::isDone))
+				assertDoesNotThrow(() -> provider.finished(null));
+			for (Future<?> reader : readers)
+				assertDoesNotThrow(() -> reader.get());
+		} finally {
+			pool.shutdownNow();
+			assertDoesNotThrow(() -> provider.finished(null));
+		}
+	}
+
+	@Test
+	void testMissingArchiveIsRejected(@TempDir Path temp) {
+		Path missing = temp.resolve("missing.jar");
+		assertThrows(Exception.class, () -> new Inputs().addLibraryArchive(missing));
+		assertThrows(Exception.class, () -> new Inputs().addClasspathArchive(missing));
+	}
+
+	@Nonnull
+	private static Path writeArchive(@Nonnull Path temp, @Nonnull String... names) {
+		Path path = temp.resolve("archive.jar");
+		assertDoesNotThrow(() -> {
+			try (OutputStream os = Files.newOutputStream(path);
+				 ZipOutputStream zos = new ZipOutputStream(os)) {
+				for (String name : names) {
+					zos.putNextEntry(new ZipEntry(name + ".class"));
+					zos.write(createClass(name, "java/lang/Object"));
+					zos.closeEntry();
+				}
+			}
+		});
+		return path;
+	}
+
+	@Nonnull
+	private static Path writeDependency(@Nonnull Path temp) {
+		Path path = temp.resolve("dependency.jar");
+		assertDoesNotThrow(() -> {
+			try (OutputStream os = Files.newOutputStream(path);
+				 ZipOutputStream zos = new ZipOutputStream(os)) {
+				zos.putNextEntry(new ZipEntry("Dependency.class"));
+				zos.write(createClass("Dependency", "java/lang/Object"));
+				zos.closeEntry();
+			}
+		});
+		return path;
+	}
+
+	@Nonnull
+	private static byte[] createClass(@Nonnull String name, @Nonnull String superName) {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+}
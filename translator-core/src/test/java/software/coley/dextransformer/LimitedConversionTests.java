@@ -1,15 +1,23 @@
 package software.coley.dextransformer;
 
+import com.android.tools.r8.graph.AppInfo;
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexProgramClass;
 import com.android.tools.r8.utils.AndroidApiLevel;
 import com.android.tools.r8.utils.ClassFilter;
 import org.junit.jupiter.api.Test;
 import software.coley.dextranslator.Inputs;
 import software.coley.dextranslator.Options;
 import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.model.ExportResult;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -47,4 +55,71 @@ public class LimitedConversionTests extends TestBase {
 		assertEquals(1, exported.size());
 		assertArrayEquals(exported.get("BaseOkay"), assertDoesNotThrow(() -> data.exportToJvmClass("BaseOkay")));
 	}
+
+	@Test
+	void testFilteredViewOnlyCopiesRequiredClasses() {
+		// Inputs
+		String resourcePath = "/dx-samples/068-classloader/classes.jar";
+		Path jarPath = assertDoesNotThrow(() -> Paths.get(DataModelTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = new Inputs().addJarArchive(jarPath);
+		Options options = new Options()
+				.setApiLevel(AndroidApiLevel.getAndroidApiLevel(30));
+
+		// Model
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, options.getInternalOptions()));
+		int classCount = data.getClassNames().size();
+
+		// The view for a single class should not copy the whole application.
+		// Classes it does not copy are the instances of the model, kept as context.
+		AppView<AppInfo> view = data.createView(options.getInternalOptions(), ClassFilter.forType("Base"));
+		Set<DexProgramClass> modelClasses = Collections.newSetFromMap(new IdentityHashMap<>());
+		modelClasses.addAll(data.getApplication().classes());
+		long copiedCount = view.appInfo().app().classes().stream()
+				.filter(programClass -> !modelClasses.contains(programClass))
+				.count();
+		assertEquals(classCount, view.appInfo().app().classes().size());
+		assertTrue(copiedCount >= 1);
+		assertTrue(copiedCount < classCount);
+
+		// Every class should still be exportable on its own
+		for (String name : data.getClassNames()) {
+			String internalName = name.replace('.', '/');
+			assertNotNull(assertDoesNotThrow(() -> data.exportToJvmClass(internalName)), internalName);
+		}
+	}
+
+	@Test
+	void testBatchExport() {
+		// Inputs
+		String resourcePath = "/dx-samples/068-classloader/classes.jar";
+		Path jarPath = assertDoesNotThrow(() -> Paths.get(DataModelTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = new Inputs().addJarArchive(jarPath);
+		Options options = new Options()
+				.setApiLevel(AndroidApiLevel.getAndroidApiLevel(30));
+
+		// Model
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, options.getInternalOptions()));
+		List<String> names = List.of("Base", "BaseOkay", "DoesNotExist");
+
+		// JVM export should yield the found classes, and report the missing one
+		ExportResult<Map<String, byte[]>> jvmResult = assertDoesNotThrow(() -> data.exportToJvmClasses(names));
+		Map<String, byte[]> classes = jvmResult.getOutput();
+		assertNotNull(classes);
+		assertNotNull(classes.get("Base"));
+		assertNotNull(classes.get("BaseOkay"));
+		assertEquals(Set.of("DoesNotExist"), jvmResult.getMissingClasses());
+		assertFalse(jvmResult.isComplete());
+
+		// DEX export should hold the found classes, and report the missing one
+		ExportResult<byte[]> dexResult = assertDoesNotThrow(() -> data.exportToDexFile(names));
+		assertNotNull(dexResult.getOutput());
+		assertEquals(Set.of("DoesNotExist"), dexResult.getMissingClasses());
+		ApplicationData dexData = assertDoesNotThrow(() -> ApplicationData.fromDex(dexResult.getOutput()));
+		assertTrue(dexData.getClassNames().containsAll(Set.of("Base", "BaseOkay")));
+		assertFalse(dexData.getClassNames().contains("DoesNotExist"));
+
+		// Nothing found, nothing exported
+		ExportResult<byte[]> emptyResult = assertDoesNotThrow(() -> data.exportToDexFile(List.of("DoesNotExist")));
+		assertNull(emptyResult.getOutput());
+	}
 }
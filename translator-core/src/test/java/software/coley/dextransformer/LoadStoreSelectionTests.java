@@ -0,0 +1,100 @@
+package software.coley.dextransformer;
+
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.LoadStoreMode;
+import software.coley.dextranslator.ir.LoadStoreSelector;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.progress.ProgressListener;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadStoreSelectionTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testSelectingAllMatchesFullOptimization() {
+		ApplicationData data = load();
+		data.setOperationOptionsProvider(() -> new Options().enableLoadStoreOptimization());
+		Map<String, byte[]> all = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		data.setOperationOptionsProvider(() -> new Options()
+				.enableSelectiveLoadStoreOptimization(LoadStoreSelector.minInstructions(0)));
+		Map<String, byte[]> selective = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertOutputsEqual(all, selective);
+	}
+
+	@Test
+	void testSelectingNoneMatchesNoOptimization() {
+		ApplicationData data = load();
+		data.setOperationOptionsProvider(() -> new Options().disableLoadStoreOptimization());
+		Map<String, byte[]> off = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		data.setOperationOptionsProvider(() -> new Options()
+				.enableSelectiveLoadStoreOptimization(LoadStoreSelector.minInstructions(Integer.MAX_VALUE)));
+		Map<String, byte[]> selective = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertOutputsEqual(off, selective);
+	}
+
+	@Test
+	void testSelectorSeesEveryMethod() {
+		ApplicationData data = load();
+		AtomicInteger tested = new AtomicInteger();
+		data.setOperationOptionsProvider(() -> new Options()
+				.enableSelectiveLoadStoreOptimization((method, code) -> tested.incrementAndGet() % 2 == 0));
+		assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertTrue(tested.get() > 0);
+	}
+
+	@Test
+	void testSelectiveModeDoesNotChangeSharedOptions() {
+		// Other work may be using the same options while methods are lowered, so the flag on them must hold still
+		ApplicationData data = load();
+		AtomicInteger changed = new AtomicInteger();
+		Options options = new Options().enableSelectiveLoadStoreOptimization(LoadStoreSelector.minInstructions(0));
+		options.setProgressListener(new ProgressListener() {
+			@Override
+			public void onMethodLowered(int lowered, int total) {
+				if (options.getInternalOptions().enableLoadStoreOptimization)
+					changed.incrementAndGet();
+			}
+		});
+		data.setOperationOptionsProvider(() -> options);
+		assertDoesNotThrow(() -> data.exportToJvmClassMap());
+		assertEquals(0, changed.get());
+		assertFalse(options.getInternalOptions().enableLoadStoreOptimization);
+	}
+
+	@Test
+	void testModesAndFingerprints() {
+		Options off = new Options();
+		Options all = new Options().enableLoadStoreOptimization();
+		Options small = new Options().enableSelectiveLoadStoreOptimization(LoadStoreSelector.minInstructions(8));
+		Options large = new Options().enableSelectiveLoadStoreOptimization(LoadStoreSelector.minInstructions(64));
+		assertEquals(LoadStoreMode.OFF, off.getLoadStoreMode());
+		assertEquals(LoadStoreMode.ALL, all.getLoadStoreMode());
+		assertEquals(LoadStoreMode.SELECTIVE, small.getLoadStoreMode());
+		assertNotEquals(small.getOutputFingerprint(), large.getOutputFingerprint());
+		assertNotEquals(off.getOutputFingerprint(), all.getOutputFingerprint());
+
+		// Equal selections should describe themselves equally, regardless of order
+		assertEquals(LoadStoreSelector.inClasses(List.of("a/A", "b/B")).toString(),
+				LoadStoreSelector.inClasses(List.of("b/B", "a/A")).toString());
+	}
+
+	private static void assertOutputsEqual(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		expected.forEach((name, bytes) -> assertArrayEquals(bytes, actual.get(name), name));
+	}
+
+	private static ApplicationData load() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(LoadStoreSelectionTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+	}
+}
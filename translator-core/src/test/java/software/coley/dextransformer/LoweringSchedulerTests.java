@@ -0,0 +1,66 @@
+package software.coley.dextransformer;
+
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.ir.LoweringScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoweringSchedulerTests {
+	@Test
+	void testLargeItemsComeFirstInOwnUnits() {
+		List<Long> costs = Arrays.asList(1L, 2L, 1000L, 3L, 4L, 500L, 5L);
+		List<List<Long>> units = LoweringScheduler.createWorkUnits(costs, Long::longValue, 2);
+
+		// The two outliers should each be alone, most expensive first.
+		assertEquals(List.of(1000L), units.get(0));
+		assertEquals(List.of(500L), units.get(1));
+	}
+
+	@Test
+	void testAllItemsScheduledExactlyOnce() {
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+			items.add(i);
+		List<List<Integer>> units = LoweringScheduler.createWorkUnits(items, i -> (i * 31L) % 97, 8);
+		Set<Integer> seen = new HashSet<>();
+		int count = 0;
+		for (List<Integer> unit : units) {
+			assertFalse(unit.isEmpty(), "Units should never be empty");
+			for (Integer item : unit) {
+				seen.add(item);
+				count++;
+			}
+		}
+		assertEquals(items.size(), count);
+		assertEquals(items.size(), seen.size());
+	}
+
+	@Test
+	void testRemainingUnitsAreBalanced() {
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 400; i++)
+			items.add(1 + (i % 10));
+		List<List<Integer>> units = LoweringScheduler.createWorkUnits(items, Integer::longValue, 4);
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (List<Integer> unit : units) {
+			long sum = unit.stream().mapToLong(Integer::longValue).sum();
+			min = Math.min(min, sum);
+			max = Math.max(max, sum);
+		}
+
+		// Greedy placement of descending items keeps units within the cost of the largest item.
+		assertTrue(max - min <= 10, "Units not balanced, min=" + min + ", max=" + max);
+	}
+
+	@Test
+	void testEmpty() {
+		assertTrue(LoweringScheduler.createWorkUnits(List.<Long>of(), Long::longValue, 4).isEmpty());
+	}
+}
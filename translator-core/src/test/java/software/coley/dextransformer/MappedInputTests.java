@@ -0,0 +1,60 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ProgramResource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.MappedFileResourceProvider;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedInputTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+	// Large enough to be mapped rather than read into memory
+	private static final String LARGE_RESOURCE_PATH = "/dx-samples/701-easy-div-rem/classes.dex";
+
+	@ParameterizedTest
+	@ValueSource(strings = {RESOURCE_PATH, LARGE_RESOURCE_PATH})
+	void testFileInputMatchesByteInput(String resourcePath) {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MappedInputTests.class.getResource(resourcePath).toURI()));
+		byte[] dexBytes = assertDoesNotThrow(() -> Files.readAllBytes(dexPath));
+
+		ApplicationData fromFile = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addDex(dexPath),
+				new Options().getInternalOptions()));
+		ApplicationData fromBytes = assertDoesNotThrow(() -> ApplicationData.from(new Inputs().addDex(dexBytes),
+				new Options().getInternalOptions()));
+		assertEquals(fromBytes.getClassNames(), fromFile.getClassNames());
+	}
+
+	@Test
+	void testContentOnlyHeldWhileOpen() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MappedInputTests.class.getResource(LARGE_RESOURCE_PATH).toURI()));
+		MappedFileResourceProvider provider = new MappedFileResourceProvider(dexPath, ProgramResource.Kind.DEX);
+		Inputs inputs = new Inputs().addProgramProvider(provider);
+
+		// Nothing is read until loading
+		assertFalse(provider.isOpen());
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+		assertTrue(provider.isOpen());
+		assertFalse(data.getClassNames().isEmpty());
+
+		// Closing the data releases the content
+		assertDoesNotThrow(data::close);
+		assertFalse(provider.isOpen());
+	}
+
+	@Test
+	void testMissingFileFailsWhenAdded() {
+		Path missing = Paths.get("does-not-exist.dex");
+		assertThrows(NoSuchFileException.class, () -> new Inputs().addDex(missing));
+		assertThrows(NoSuchFileException.class, () -> new Inputs().addJvmClass(missing));
+	}
+}
@@ -0,0 +1,59 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.ir.MethodProfile;
+import software.coley.dextranslator.model.ApplicationData;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodProfileTests extends TestBase {
+	@Test
+	void testProfileOfConversion() {
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MethodProfileTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+
+		Options options = new Options()
+				.setMethodProfileSize(3)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		MethodProfile profile = result.getMethodProfile();
+		assertNotNull(profile);
+
+		// Only the requested number of methods are retained, slowest first
+		List<MethodProfile.MethodSample> slowest = profile.getSlowestMethods();
+		assertEquals(3, slowest.size());
+		for (int i = 1; i < slowest.size(); i++)
+			assertTrue(slowest.get(i - 1).getWallNanos() >= slowest.get(i).getWallNanos());
+		assertFalse(slowest.get(0).getDescriptor().isEmpty());
+
+		// Every method is counted in the histogram
+		assertTrue(profile.getMethodCount() >= slowest.size());
+		assertEquals(profile.getMethodCount(), Arrays.stream(profile.getLatencyHistogram()).sum());
+		assertTrue(profile.toPrettyString().contains(slowest.get(0).toString()));
+	}
+
+	@Test
+	void testNoProfileByDefault() {
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MethodProfileTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+
+		Options options = new Options().setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertNull(result.getMethodProfile());
+	}
+}
@@ -0,0 +1,195 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.ConversionIRReplacementException;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Isolated("Checks the global count of abandoned work, which other conversions would affect")
+public class MethodTimeBudgetTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+	private static final String LARGE_RESOURCE_PATH = "/dx-samples/083-compiler-regressions/classes.dex";
+	private static final String RUNAWAY_METHOD = "runaway";
+
+	@Test
+	void testGenerousBudgetReplacesNothing() {
+		ApplicationData data = load();
+		Options options = new Options()
+				.setMethodTimeBudget(Duration.ofMinutes(1))
+				.setReplaceInvalidMethodBodies(true)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertTrue(result.getInvalidMethods().isEmpty());
+	}
+
+	@Test
+	void testExceededBudgetReplacesMethods() {
+		ApplicationData data = load();
+		Options options = new Options()
+				.setMethodTimeBudget(Duration.ofNanos(1))
+				.setReplaceInvalidMethodBodies(true)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertFalse(result.getInvalidMethods().isEmpty());
+		for (ConversionResult.InvalidMethod invalidMethod : result.getInvalidMethods())
+			assertInstanceOf(TimeoutException.class, invalidMethod.getException());
+	}
+
+	@Test
+	void testExceededBudgetFailsWithoutReplacement() {
+		ApplicationData data = load();
+		Options options = new Options()
+				.setMethodTimeBudget(Duration.ofNanos(1))
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		assertThrows(ConversionIRReplacementException.class, () -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+	}
+
+	@Test
+	void testAbandonedWorkRunsOut() {
+		// Use a larger input so that work is abandoned while running, and not just before it starts
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MethodTimeBudgetTests.class.getResource(LARGE_RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+		Options options = new Options()
+				.setMethodTimeBudget(Duration.ofNanos(1))
+				.setReplaceInvalidMethodBodies(true)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertFalse(result.getInvalidMethods().isEmpty());
+
+		// Abandoned work may outlive the conversion, but it must run out on its own
+		awaitAbandonedWork(Duration.ofMinutes(1));
+	}
+
+	@Test
+	void testRunawayMethodDoesNotHoldUpConversion() {
+		ApplicationData runawayData = loadRunaway();
+
+		// Lowering the runaway method does not check for interrupts, so this is how long abandoned work runs for
+		long start = System.nanoTime();
+		assertDoesNotThrow(() -> Conversion.convert(runawayData, new Options()
+				.setJvmOutput(ClassFileConsumer.emptyConsumer()), ClassFilter.PASS_ALL));
+		Duration unbudgeted = Duration.ofNanos(System.nanoTime() - start);
+		assumeTrue(unbudgeted.toMillis() >= 200, "Runaway method lowered too quickly to exceed a budget: " + unbudgeted);
+
+		// Several conversions abandon the runaway method at once, and their work keeps running
+		Duration runawayBudget = unbudgeted.dividedBy(20);
+		int runaways = Runtime.getRuntime().availableProcessors() * 2;
+		ExecutorService service = Executors.newFixedThreadPool(runaways);
+		try {
+			List<Future<ConversionResult>> futures = new ArrayList<>();
+			for (int i = 0; i < runaways; i++)
+				futures.add(service.submit(() -> Conversion.convert(runawayData, new Options()
+						.setMethodTimeBudget(runawayBudget)
+						.setReplaceInvalidMethodBodies(true)
+						.setJvmOutput(ClassFileConsumer.emptyConsumer()), ClassFilter.PASS_ALL)));
+			for (Future<ConversionResult> future : futures) {
+				ConversionResult result = assertDoesNotThrow(() -> future.get());
+				assertEquals(1, result.getInvalidMethods().size());
+				ConversionResult.InvalidMethod invalidMethod = result.getInvalidMethods().get(0);
+				assertEquals(RUNAWAY_METHOD, invalidMethod.getMethod().getReference().name.toString());
+				assertInstanceOf(TimeoutException.class, invalidMethod.getException());
+			}
+		} finally {
+			service.shutdownNow();
+		}
+
+		// Other methods still get their full budget while the abandoned work runs out
+		ApplicationData data = load();
+		Options options = new Options()
+				.setMethodTimeBudget(unbudgeted.dividedBy(2))
+				.setReplaceInvalidMethodBodies(true)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertTrue(result.getInvalidMethods().isEmpty());
+
+		awaitAbandonedWork(unbudgeted.multipliedBy(runaways).plusMinutes(1));
+	}
+
+	private static void awaitAbandonedWork(@Nonnull Duration timeout) {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		while (Conversion.getRunningAbandonedLoweringCount() > 0) {
+			if (System.nanoTime() - deadline > 0)
+				fail("Abandoned work did not run out within " + timeout);
+			assertDoesNotThrow(() -> Thread.sleep(50));
+		}
+	}
+
+	/**
+	 * @return Model of a class with a single method that takes a long time to lower.
+	 * Every array access in its try block can throw, and the handler reads each local the block writes to,
+	 * so the handler merges a value of every local from every access.
+	 */
+	@Nonnull
+	private static ApplicationData loadRunaway() {
+		int locals = 200;
+		int accesses = 3000;
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Runaway", null, "java/lang/Object", null);
+		MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, RUNAWAY_METHOD, "([I)I", null, null);
+		mv.visitCode();
+		for (int i = 1; i <= locals; i++) {
+			mv.visitInsn(Opcodes.ICONST_0);
+			mv.visitVarInsn(Opcodes.ISTORE, i);
+		}
+		Label tryStart = new Label();
+		Label tryEnd = new Label();
+		Label handler = new Label();
+		mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+		mv.visitLabel(tryStart);
+		for (int i = 0; i < accesses; i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitLdcInsn(i);
+			mv.visitInsn(Opcodes.IALOAD);
+			mv.visitVarInsn(Opcodes.ISTORE, 1 + i % locals);
+		}
+		mv.visitLabel(tryEnd);
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitLabel(handler);
+		mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.ICONST_0);
+		for (int i = 1; i <= locals; i++) {
+			mv.visitVarInsn(Opcodes.ILOAD, i);
+			mv.visitInsn(Opcodes.IADD);
+		}
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		writer.visitEnd();
+
+		// Lowering is only budgeted for DEX inputs, so the class is compiled to DEX first
+		byte[] dex = assertDoesNotThrow(() -> ApplicationData.fromClass(writer.toByteArray()).exportToDexFile());
+		return assertDoesNotThrow(() -> ApplicationData.fromDex(dex));
+	}
+
+	private static ApplicationData load() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MethodTimeBudgetTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+	}
+}
@@ -0,0 +1,59 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.ThreadPools;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiDexExportTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testSingleDexMatchesExportToDexFile() {
+		ApplicationData data = load();
+		byte[] single = assertDoesNotThrow(() -> data.exportToDexFile());
+		SortedMap<Integer, byte[]> files = assertDoesNotThrow(() -> data.exportToDexFiles());
+
+		// Small input fits in one file, which should be the same as the single file export
+		assertEquals(1, files.size());
+		assertArrayEquals(single, files.get(0));
+	}
+
+	@Test
+	void testSinkReceivesEveryFile() {
+		ApplicationData data = load();
+		SortedMap<Integer, byte[]> files = assertDoesNotThrow(() -> data.exportToDexFiles());
+		Map<Integer, byte[]> streamed = new ConcurrentHashMap<>();
+		assertDoesNotThrow(() -> data.exportToDexFiles(ClassFilter.PASS_ALL, ThreadPools.getMaxFixedThreadPool(),
+				(index, bytes) -> streamed.put(index, bytes.copyByteData())));
+		assertEquals(files.keySet(), streamed.keySet());
+		files.forEach((index, bytes) -> assertArrayEquals(bytes, streamed.get(index)));
+	}
+
+	@Test
+	void testDexFilePathNaming() {
+		Path path = Paths.get("out", "output.dex");
+		assertEquals(path, Options.getDexFilePath(path, 0));
+		assertEquals(Paths.get("out", "output2.dex"), Options.getDexFilePath(path, 1));
+		assertEquals(Paths.get("out", "output10.dex"), Options.getDexFilePath(path, 9));
+		assertEquals(Paths.get("out", "output2"), Options.getDexFilePath(Paths.get("out", "output"), 1));
+	}
+
+	@Nonnull
+	private static ApplicationData load() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(MultiDexExportTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+	}
+}
@@ -0,0 +1,123 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.ClassWriteMode;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.util.ThreadPools;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelClassWriteTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testOrderedMatchesSequential() {
+		ApplicationData data = load();
+		RecordingConsumer sequential = convert(data, ClassWriteMode.SEQUENTIAL);
+		RecordingConsumer ordered = convert(data, ClassWriteMode.PARALLEL_ORDERED);
+
+		// Same classes, in the same order, with the same content
+		assertEquals(sequential.order, ordered.order);
+		sequential.classes.forEach((name, bytes) -> assertArrayEquals(bytes, ordered.classes.get(name), name));
+		assertEquals(1, ordered.finishedCount);
+	}
+
+	@Test
+	void testUnorderedMatchesSequentialContent() {
+		ApplicationData data = load();
+		RecordingConsumer sequential = convert(data, ClassWriteMode.SEQUENTIAL);
+		RecordingConsumer unordered = convert(data, ClassWriteMode.PARALLEL_UNORDERED);
+
+		// Same classes with the same content, in any order
+		assertEquals(sequential.order.size(), unordered.order.size());
+		assertEquals(new HashSet<>(sequential.order), new HashSet<>(unordered.order));
+		sequential.classes.forEach((name, bytes) -> assertArrayEquals(bytes, unordered.classes.get(name), name));
+		assertEquals(1, unordered.finishedCount);
+	}
+
+	@Test
+	void testCachedPoolMatchesSequential() {
+		// Cached pools report a maximum size of Integer.MAX_VALUE
+		ApplicationData data = load();
+		ExecutorService cachedPool = Executors.newCachedThreadPool();
+		try {
+			assertTrue(ThreadPools.getParallelism(cachedPool) <= Runtime.getRuntime().availableProcessors());
+			RecordingConsumer sequential = convert(data, ClassWriteMode.SEQUENTIAL);
+			RecordingConsumer ordered = convert(data, ClassWriteMode.PARALLEL_ORDERED, cachedPool);
+			RecordingConsumer unordered = convert(data, ClassWriteMode.PARALLEL_UNORDERED, cachedPool);
+			assertEquals(sequential.order, ordered.order);
+			assertEquals(new HashSet<>(sequential.order), new HashSet<>(unordered.order));
+			sequential.classes.forEach((name, bytes) -> {
+				assertArrayEquals(bytes, ordered.classes.get(name), name);
+				assertArrayEquals(bytes, unordered.classes.get(name), name);
+			});
+			assertEquals(1, ordered.finishedCount);
+			assertEquals(1, unordered.finishedCount);
+		} finally {
+			cachedPool.shutdownNow();
+		}
+	}
+
+	@Nonnull
+	private static RecordingConsumer convert(@Nonnull ApplicationData data, @Nonnull ClassWriteMode mode) {
+		RecordingConsumer consumer = new RecordingConsumer();
+		Options options = new Options()
+				.setClassWriteMode(mode)
+				.setJvmOutput(consumer);
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		return consumer;
+	}
+
+	@Nonnull
+	private static RecordingConsumer convert(@Nonnull ApplicationData data, @Nonnull ClassWriteMode mode,
+											 @Nonnull ExecutorService threadPool) {
+		RecordingConsumer consumer = new RecordingConsumer();
+		Options options = new Options()
+				.setClassWriteMode(mode)
+				.setJvmOutput(consumer);
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL, threadPool));
+		return consumer;
+	}
+
+	@Nonnull
+	private static ApplicationData load() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(ParallelClassWriteTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+	}
+
+	private static class RecordingConsumer implements ClassFileConsumer {
+		private final List<String> order = new ArrayList<>();
+		private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+		private int finishedCount;
+
+		@Override
+		public synchronized void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+			order.add(descriptor);
+			classes.put(descriptor, data.copyByteData());
+		}
+
+		@Override
+		public void finished(DiagnosticsHandler handler) {
+			finishedCount++;
+		}
+	}
+}
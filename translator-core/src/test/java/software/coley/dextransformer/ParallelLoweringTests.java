@@ -0,0 +1,163 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.ConversionIRReplacementException;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.model.DuplicateClassPolicy;
+import software.coley.dextranslator.util.ThreadPools;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelLoweringTests extends TestBase {
+	private static final String[] FAILING_SAMPLES = {
+			"/dx-samples/457-regs/classes.dex",
+			"/dx-samples/459-dead-phi/classes.dex",
+			"/dx-samples/506-verify-aput/classes.dex",
+			"/dx-samples/518-null-array-get/classes.dex",
+			"/dx-samples/552-checker-primitive-typeprop/classes.dex"
+	};
+	private static final int RUNS = 5;
+
+	@ParameterizedTest
+	@MethodSource("findDexResources")
+	void testParallelMatchesSerial(@Nonnull Path inputPath) {
+		if (getKnownFailureType(inputPath, true) != null)
+			return;
+
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(inputPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options()));
+
+		ExecutorService serialPool = Executors.newSingleThreadExecutor();
+		try {
+			Map<String, byte[]> serial = new TreeMap<>();
+			Map<String, byte[]> parallel = new TreeMap<>();
+			List<String> serialInvalid = convert(data, serial, serialPool);
+			List<String> parallelInvalid = convert(data, parallel, ThreadPools.getMaxFixedThreadPool());
+
+			// Same classes with the same content, and the same methods replaced
+			assertEquals(serial.keySet(), parallel.keySet(), inputPath.toString());
+			serial.forEach((name, bytes) -> assertArrayEquals(bytes, parallel.get(name), name));
+			assertEquals(serialInvalid, parallelInvalid);
+		} finally {
+			serialPool.shutdownNow();
+			assertDoesNotThrow(data::close);
+		}
+	}
+
+	@Test
+	void testFailureReportingIsStable() {
+		ApplicationData data = loadFailingSamples();
+		ExecutorService serialPool = Executors.newSingleThreadExecutor();
+		try {
+			// Reference result from a serial pass
+			List<String> expected = convert(data, new HashMap<>(), serialPool);
+			assertTrue(expected.size() > 1, "Expected several methods to fail, found: " + expected);
+			String expectedFirst = failFast(data, serialPool);
+			assertEquals(expected.get(0), expectedFirst);
+
+			// Parallel passes must report the same failures in the same order,
+			// and fail fast on the same method, no matter how the work is interleaved
+			ExecutorService cachedPool = Executors.newCachedThreadPool();
+			try {
+				for (int i = 0; i < RUNS; i++) {
+					assertEquals(expected, convert(data, new HashMap<>(), ThreadPools.getMaxFixedThreadPool()));
+					assertEquals(expected, convert(data, new HashMap<>(), cachedPool));
+					assertEquals(expectedFirst, failFast(data, ThreadPools.getMaxFixedThreadPool()));
+					assertEquals(expectedFirst, failFast(data, cachedPool));
+				}
+			} finally {
+				cachedPool.shutdownNow();
+			}
+		} finally {
+			serialPool.shutdownNow();
+			assertDoesNotThrow(data::close);
+		}
+	}
+
+	/**
+	 * @param data
+	 * 		Application to convert.
+	 * @param output
+	 * 		Map to record output classes in.
+	 * @param threadPool
+	 * 		Executor to convert on.
+	 *
+	 * @return Methods replaced in the conversion, in reported order.
+	 */
+	@Nonnull
+	private static List<String> convert(@Nonnull ApplicationData data, @Nonnull Map<String, byte[]> output,
+										@Nonnull ExecutorService threadPool) {
+		Options options = new Options()
+				.setReplaceInvalidMethodBodies(true)
+				.setJvmOutput(new RecordingConsumer(output));
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL, threadPool));
+		List<String> invalid = new ArrayList<>();
+		for (ConversionResult.InvalidMethod invalidMethod : result.getInvalidMethods())
+			invalid.add(invalidMethod.getMethod().getReference().toSourceString());
+		return invalid;
+	}
+
+	/**
+	 * @param data
+	 * 		Application to convert.
+	 * @param threadPool
+	 * 		Executor to convert on.
+	 *
+	 * @return Method reported by the failure of a conversion that does not replace invalid methods.
+	 */
+	@Nonnull
+	private static String failFast(@Nonnull ApplicationData data, @Nonnull ExecutorService threadPool) {
+		Options options = new Options()
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionIRReplacementException ex = assertThrows(ConversionIRReplacementException.class,
+				() -> Conversion.convert(data, options, ClassFilter.PASS_ALL, threadPool));
+		return ex.getTargetMethod().getReference().toSourceString();
+	}
+
+	@Nonnull
+	private static ApplicationData loadFailingSamples() {
+		// The samples share some class names like 'Main', but the classes that fail to lower are all unique.
+		Inputs inputs = new Inputs();
+		for (String sample : FAILING_SAMPLES) {
+			Path dexPath = assertDoesNotThrow(() -> Paths.get(ParallelLoweringTests.class.getResource(sample).toURI()));
+			assertDoesNotThrow(() -> inputs.addDex(dexPath));
+		}
+		Options options = new Options().setDuplicateClassPolicy(DuplicateClassPolicy.FIRST_WINS);
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, options));
+	}
+
+	private static class RecordingConsumer implements ClassFileConsumer {
+		private final Map<String, byte[]> classes;
+
+		private RecordingConsumer(@Nonnull Map<String, byte[]> classes) {
+			this.classes = classes;
+		}
+
+		@Override
+		public synchronized void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+			classes.put(descriptor, data.copyByteData());
+		}
+
+		@Override
+		public void finished(DiagnosticsHandler handler) {
+			// no-op
+		}
+	}
+}
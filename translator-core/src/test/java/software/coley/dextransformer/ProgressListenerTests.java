@@ -0,0 +1,75 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.model.ApplicationData;
+import software.coley.dextranslator.progress.ProgressListener;
+import software.coley.dextranslator.progress.ProgressPhase;
+import software.coley.dextranslator.progress.ProgressTracker;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProgressListenerTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testProgressReported() {
+		List<ProgressPhase> phases = new CopyOnWriteArrayList<>();
+		ProgressTracker tracker = new ProgressTracker() {
+			@Override
+			public void onPhase(ProgressPhase phase) {
+				super.onPhase(phase);
+				phases.add(phase);
+			}
+		};
+
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(ProgressListenerTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		Options options = new Options()
+				.setProgressListener(tracker)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, options));
+		assertEquals(data.getClassNames().size(), tracker.getClassesRead());
+
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertEquals(List.of(ProgressPhase.LOADING, ProgressPhase.LOWERING, ProgressPhase.CONVERTING, ProgressPhase.WRITING), phases);
+		assertTrue(tracker.getMethodsToLower() > 0);
+		assertEquals(tracker.getMethodsToLower(), tracker.getMethodsLowered());
+		assertTrue(tracker.getClassesWritten() >= tracker.getClassesRead());
+		assertTrue(tracker.getBytesWritten() > 0);
+	}
+
+	@Test
+	void testRunningTotalsAcrossWindows() {
+		int[] lastLowered = {0};
+		ProgressListener listener = new ProgressListener() {
+			@Override
+			public synchronized void onMethodLowered(int lowered, int total) {
+				lastLowered[0] = Math.max(lastLowered[0], lowered);
+				assertTrue(lowered <= total);
+			}
+		};
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(ProgressListenerTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		Options options = new Options()
+				.setStreamingClassWindow(1)
+				.setProgressListener(listener)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, options));
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+
+		ProgressTracker tracker = new ProgressTracker();
+		options.setStreamingClassWindow(0).setProgressListener(tracker);
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertEquals(tracker.getMethodsToLower(), lastLowered[0]);
+	}
+}
@@ -0,0 +1,142 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.graph.Code;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedConversionTests extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+
+	@Test
+	void testSequentialShardsMatchRegularOutput() {
+		ApplicationData data = load();
+		RecordingConsumer regular = convert(data, new Options());
+		RecordingConsumer sharded = convert(data, new Options().setShardedConversion(3, 1));
+		assertSameOutput(regular, sharded);
+	}
+
+	@Test
+	void testConcurrentShardsMatchRegularOutput() {
+		ApplicationData data = load();
+		RecordingConsumer regular = convert(data, new Options());
+		RecordingConsumer sharded = convert(data, new Options().setShardedConversion(2, 4));
+		assertSameOutput(regular, sharded);
+	}
+
+	@ParameterizedTest
+	@MethodSource("findDexResources")
+	void testShardsMatchRegularOutputOverCorpus(@Nonnull Path inputPath) {
+		if (getKnownFailureType(inputPath, true) != null)
+			return;
+
+		// Single class shards only see the rest of the application as context,
+		// so any reference across classes must resolve the same as in a regular conversion.
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(inputPath));
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+		Map<DexEncodedMethod, Code> codes = collectCodes(data);
+		RecordingConsumer regular = convert(data, new Options());
+		RecordingConsumer sequential = convert(data, new Options().setShardedConversion(1, 1));
+		RecordingConsumer concurrent = convert(data, new Options().setShardedConversion(3, 4));
+		assertSameContent(regular, sequential, inputPath);
+		assertSameContent(regular, concurrent, inputPath);
+
+		// The model given to the conversions is left as it was
+		assertSameCodes(codes, data);
+	}
+
+	@Test
+	void testShardTimingsAreCollected() {
+		Options options = new Options()
+				.setShardedConversion(2, 4)
+				.setCollectTimings(true);
+		ApplicationData data = load();
+		options.setJvmOutput(new RecordingConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		assertNotNull(result.getTimings());
+		assertTrue(result.getTimings().toPrettyString().contains("Shard 1"));
+	}
+
+	private static void assertSameContent(@Nonnull RecordingConsumer expected, @Nonnull RecordingConsumer actual,
+										  @Nonnull Path inputPath) {
+		assertEquals(expected.classes.keySet(), actual.classes.keySet(), inputPath.toString());
+		expected.classes.forEach((name, bytes) -> assertArrayEquals(bytes, actual.classes.get(name), inputPath + ": " + name));
+		assertEquals(1, actual.finishedCount);
+	}
+
+	private static void assertSameCodes(@Nonnull Map<DexEncodedMethod, Code> expected, @Nonnull ApplicationData data) {
+		Map<DexEncodedMethod, Code> actual = collectCodes(data);
+		assertEquals(expected.size(), actual.size());
+		expected.forEach((method, code) -> assertSame(code, actual.get(method), "Code replaced: " + method));
+	}
+
+	@Nonnull
+	private static Map<DexEncodedMethod, Code> collectCodes(@Nonnull ApplicationData data) {
+		Map<DexEncodedMethod, Code> codes = new IdentityHashMap<>();
+		for (DexProgramClass programClass : data.getApplication().classes())
+			for (DexEncodedMethod method : programClass.methods())
+				codes.put(method, method.getCode());
+		return codes;
+	}
+
+	private static void assertSameOutput(@Nonnull RecordingConsumer expected, @Nonnull RecordingConsumer actual) {
+		// Same classes, in the same order, with the same content
+		assertEquals(expected.order, actual.order);
+		expected.classes.forEach((name, bytes) -> assertArrayEquals(bytes, actual.classes.get(name), name));
+		assertEquals(1, actual.finishedCount);
+	}
+
+	@Nonnull
+	private static RecordingConsumer convert(@Nonnull ApplicationData data, @Nonnull Options options) {
+		RecordingConsumer consumer = new RecordingConsumer();
+		options.setJvmOutput(consumer);
+		assertDoesNotThrow(() -> Conversion.convert(data, options, ClassFilter.PASS_ALL));
+		return consumer;
+	}
+
+	@Nonnull
+	private static ApplicationData load() {
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(ShardedConversionTests.class.getResource(RESOURCE_PATH).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		return assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+	}
+
+	private static class RecordingConsumer implements ClassFileConsumer {
+		private final List<String> order = new ArrayList<>();
+		private final Map<String, byte[]> classes = new HashMap<>();
+		private int finishedCount;
+
+		@Override
+		public synchronized void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+			order.add(descriptor);
+			classes.put(descriptor, data.copyByteData());
+		}
+
+		@Override
+		public void finished(DiagnosticsHandler handler) {
+			finishedCount++;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package software.coley.dextransformer;
+
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingConversionTests extends TestBase {
+	@Test
+	void testStreamedOutputMatchesRegularOutput() {
+		// Inputs
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(StreamingConversionTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+
+		// Model
+		ApplicationData data = assertDoesNotThrow(() -> ApplicationData.from(inputs, new Options().getInternalOptions()));
+
+		// Regular export
+		Map<String, byte[]> regular = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+
+		// Streamed export, with windows small enough that there are multiple of them
+		data.setOperationOptionsProvider(() -> new Options().setStreamingClassWindow(3));
+		Map<String, byte[]> streamed = assertDoesNotThrow(() -> data.exportToJvmClassMap());
+
+		// Should be identical
+		assertEquals(regular.keySet(), streamed.keySet());
+		regular.forEach((name, regularBytecode) -> assertArrayEquals(regularBytecode, streamed.get(name), name));
+	}
+}
@@ -0,0 +1,72 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ClassFileConsumer;
+import org.junit.jupiter.api.Test;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.task.Converter;
+import software.coley.dextranslator.util.PhaseTimings;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingsTests extends TestBase {
+	@Test
+	void testPhaseTree() {
+		PhaseTimings timings = PhaseTimings.create("Root");
+		timings.begin("A");
+		timings.begin("A1");
+		timings.end();
+		timings.end();
+		timings.begin("B \"quoted\"");
+		timings.end();
+		timings.finish();
+
+		PhaseTimings.Phase root = timings.getRoot();
+		assertNotNull(root);
+		assertEquals(2, root.getChildren().size());
+		assertEquals("A1", root.getChildren().get(0).getChildren().get(0).getTitle());
+		assertTrue(root.getDurationNanos() >= root.getChildren().get(0).getDurationNanos());
+		assertTrue(timings.toJson().contains("\"title\":\"B \\\"quoted\\\"\""));
+		assertTrue(timings.toPrettyString().startsWith("Root: "));
+
+		// Empty timings record nothing
+		PhaseTimings empty = PhaseTimings.empty();
+		empty.begin("A");
+		empty.end();
+		assertTrue(empty.isEmpty());
+		assertNull(empty.getRoot());
+	}
+
+	@Test
+	void testConversionTimings() {
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(TimingsTests.class.getResource(resourcePath).toURI()));
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		Options options = new Options()
+				.setCollectTimings(true)
+				.setJvmOutput(ClassFileConsumer.emptyConsumer());
+		ConversionResult result = assertDoesNotThrow(() -> new Converter()
+				.setInputs(inputs)
+				.setOptions(options)
+				.run()
+				.get());
+
+		// Should have the load phase, followed by the conversion phase
+		PhaseTimings timings = result.getTimings();
+		assertNotNull(timings);
+		List<String> titles = timings.getRoot().getChildren().stream()
+				.map(PhaseTimings.Phase::getTitle)
+				.collect(Collectors.toList());
+		assertEquals(List.of("Load", "Conversion"), titles);
+		List<String> conversionPhases = timings.getRoot().getChildren().get(1).getChildren().stream()
+				.map(PhaseTimings.Phase::getTitle)
+				.collect(Collectors.toList());
+		assertTrue(conversionPhases.containsAll(List.of("Create view", "Lower DEX code", "D8 conversion", "Write output")));
+	}
+}
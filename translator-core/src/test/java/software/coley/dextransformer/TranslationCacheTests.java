@@ -0,0 +1,198 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.DataDirectoryResource;
+import com.android.tools.r8.DataEntryResource;
+import com.android.tools.r8.DataResourceConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.TranslationCache;
+import software.coley.dextranslator.ir.ConversionResult;
+import software.coley.dextranslator.task.Converter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TranslationCacheTests extends TestBase {
+	@TempDir
+	Path cacheDir;
+
+	@Test
+	void testRoundTrip() {
+		TranslationCache cache = assertDoesNotThrow(() -> new TranslationCache(cacheDir));
+		String key = TranslationCache.createKey("hash", "options");
+		assertNull(cache.get(key));
+
+		assertDoesNotThrow(() -> cache.put(key, Map.of("A", new byte[]{1, 2, 3}, "A$$Lambda$1", new byte[]{4})));
+		Map<String, byte[]> outputs = cache.get(key);
+		assertNotNull(outputs);
+		assertArrayEquals(new byte[]{1, 2, 3}, outputs.get("A"));
+		assertArrayEquals(new byte[]{4}, outputs.get("A$$Lambda$1"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// Another instance over the same directory sees the entry
+		TranslationCache other = assertDoesNotThrow(() -> new TranslationCache(cacheDir));
+		assertNotNull(other.get(key));
+	}
+
+	@Test
+	void testCorruptEntryIsMiss() {
+		TranslationCache cache = assertDoesNotThrow(() -> new TranslationCache(cacheDir));
+		String key = TranslationCache.createKey("hash", "options");
+		assertDoesNotThrow(() -> cache.put(key, Map.of("A", new byte[10])));
+
+		Path entry = assertDoesNotThrow(() -> {
+			try (Stream<Path> stream = Files.walk(cacheDir)) {
+				return stream.filter(Files::isRegularFile).findFirst().orElseThrow();
+			}
+		});
+		assertDoesNotThrow(() -> Files.write(entry, new byte[]{0, 1, 2}));
+		assertNull(cache.get(key));
+	}
+
+	@Test
+	void testPrune() {
+		TranslationCache cache = assertDoesNotThrow(() -> new TranslationCache(cacheDir));
+		for (int i = 0; i < 4; i++) {
+			String key = TranslationCache.createKey("hash" + i);
+			assertDoesNotThrow(() -> cache.put(key, Map.of("A", new byte[100])));
+		}
+		long size = assertDoesNotThrow(cache::getByteSize);
+		assertTrue(size > 400);
+
+		// Pruning to half the size should remove half the entries
+		assertEquals(2, assertDoesNotThrow(() -> cache.pruneToSize(size / 2)));
+		assertEquals(size / 2, assertDoesNotThrow(cache::getByteSize));
+
+		// Nothing is older than an hour, but everything is older than 'now'
+		assertEquals(0, assertDoesNotThrow(() -> cache.pruneOlderThan(Duration.ofHours(1))));
+		assertEquals(2, assertDoesNotThrow(() -> cache.pruneOlderThan(Duration.ofMillis(-1000))));
+		assertEquals(0, assertDoesNotThrow(cache::getByteSize));
+	}
+
+	@Test
+	void testRepeatedConversionUsesCache() {
+		String resourcePath = "/dx-samples/068-classloader/classes.dex";
+		Path dexPath = assertDoesNotThrow(() -> Paths.get(TranslationCacheTests.class.getResource(resourcePath).toURI()));
+		TranslationCache cache = assertDoesNotThrow(() -> new TranslationCache(cacheDir));
+
+		Map<String, byte[]> first = convert(dexPath, cache);
+		assertEquals(0, cache.getHitCount());
+		long classCount = cache.getMissCount();
+		assertTrue(classCount > 0);
+
+		// Second conversion should be served entirely from the cache, with the same output
+		Map<String, byte[]> second = convert(dexPath, cache);
+		assertEquals(classCount, cache.getHitCount());
+		assertEquals(first.keySet(), second.keySet());
+		first.forEach((name, bytecode) -> assertArrayEquals(bytecode, second.get(name), name));
+	}
+
+	@Test
+	void testCacheHitsPassAlongResources(@TempDir Path temp) {
+		// Input of a single class with a regular file alongside it
+		Path jarPath = temp.resolve("input.jar");
+		byte[] resource = "key=value\n".getBytes(StandardCharsets.UTF_8);
+		assertDoesNotThrow(() -> {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jarPath))) {
+				ClassWriter writer = new ClassWriter(0);
+				writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Sample", null, "java/lang/Object", null);
+				writer.visitEnd();
+				zos.putNextEntry(new ZipEntry("Sample.class"));
+				zos.write(writer.toByteArray());
+				zos.closeEntry();
+				zos.putNextEntry(new ZipEntry("config/app.properties"));
+				zos.write(resource);
+				zos.closeEntry();
+			}
+		});
+		TranslationCache cache = assertDoesNotThrow(() -> new TranslationCache(cacheDir));
+
+		// The second conversion is served entirely from the cache, and must still pass along the regular file
+		for (int i = 0; i < 2; i++) {
+			Map<String, byte[]> resources = new ConcurrentHashMap<>();
+			Options options = new Options()
+					.setTranslationCache(cache)
+					.setJvmOutput(new ClassFileConsumer() {
+						@Override
+						public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+							// no-op
+						}
+
+						@Override
+						public DataResourceConsumer getDataResourceConsumer() {
+							return new DataResourceConsumer() {
+								@Override
+								public void accept(DataDirectoryResource directory, DiagnosticsHandler handler) {
+									// no-op
+								}
+
+								@Override
+								public void accept(DataEntryResource file, DiagnosticsHandler handler) {
+									resources.put(file.getName(), assertDoesNotThrow(() -> file.getByteStream().readAllBytes()));
+								}
+
+								@Override
+								public void finished(DiagnosticsHandler handler) {
+									// no-op
+								}
+							};
+						}
+
+						@Override
+						public void finished(DiagnosticsHandler handler) {
+							// no-op
+						}
+					});
+			assertDoesNotThrow(() -> new Converter()
+					.setInputs(new Inputs().addJarArchive(jarPath))
+					.setOptions(options)
+					.run()
+					.get());
+			assertArrayEquals(resource, resources.get("config/app.properties"), "Conversion " + i);
+		}
+		assertEquals(1, cache.getHitCount());
+	}
+
+	private static Map<String, byte[]> convert(Path dexPath, TranslationCache cache) {
+		Map<String, byte[]> outputs = new ConcurrentHashMap<>();
+		Inputs inputs = assertDoesNotThrow(() -> new Inputs().addDex(dexPath));
+		Options options = new Options()
+				.setTranslationCache(cache)
+				.setJvmOutput(new ClassFileConsumer() {
+					@Override
+					public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+						outputs.put(descriptor, data.copyByteData());
+					}
+
+					@Override
+					public void finished(DiagnosticsHandler handler) {
+						// no-op
+					}
+				});
+		ConversionResult result = assertDoesNotThrow(() -> new Converter()
+				.setInputs(inputs)
+				.setOptions(options)
+				.run()
+				.get());
+		assertTrue(result.getInvalidMethods().isEmpty());
+		return outputs;
+	}
+}
@@ -0,0 +1,115 @@
+package software.coley.dextransformer;
+
+import com.android.tools.r8.utils.AndroidApiLevel;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceClassVisitor;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential tests comparing the trivial method fast path against the regular IR path.
+ */
+public class TrivialMethodLoweringTests extends TestBase {
+	@ParameterizedTest
+	@MethodSource("findJarResources")
+	void testFastPathMatchesIrPath(@Nonnull Path inputPath) {
+		if (getKnownFailureType(inputPath, false) != null)
+			return;
+
+		// The fast path only applies to code without debug info, so we strip it before creating our DEX input.
+		List<byte[]> classes = assertDoesNotThrow(() -> readClassesWithoutDebug(inputPath));
+		if (classes.isEmpty())
+			return;
+		Options inputOptions = new Options()
+				.setApiLevel(AndroidApiLevel.getAndroidApiLevel(30));
+		ApplicationData jarData = assertDoesNotThrow(() -> ApplicationData.fromClasses(classes, inputOptions));
+		byte[] dexFile = assertDoesNotThrow(jarData::exportToDexFile);
+
+		// Convert back to JVM bytecode with and without the fast path.
+		ApplicationData dexData = assertDoesNotThrow(() -> ApplicationData.fromDex(dexFile));
+		dexData.setOperationOptionsProvider(() -> new Options()
+				.enableLoadStoreOptimization()
+				.setTrivialMethodFastPath(false));
+		Map<String, byte[]> irOutput = assertDoesNotThrow(() -> dexData.exportToJvmClassMap());
+		dexData.setOperationOptionsProvider(() -> new Options()
+				.enableLoadStoreOptimization()
+				.setTrivialMethodFastPath(true));
+		Map<String, byte[]> fastOutput = assertDoesNotThrow(() -> dexData.exportToJvmClassMap());
+
+		// Code should be equivalent. Stack and local sizes are not compared, as the IR path may over-estimate them.
+		assertEquals(irOutput.keySet(), fastOutput.keySet());
+		irOutput.forEach((name, irClass) ->
+				assertEquals(disassemble(irClass), disassemble(fastOutput.get(name)), name));
+
+		// Instead, the sizes of the fast path output must be at least what ASM computes, and hold up to analysis.
+		fastOutput.forEach(TrivialMethodLoweringTests::assertSufficientFrameSizes);
+	}
+
+	private static void assertSufficientFrameSizes(@Nonnull String name, @Nonnull byte[] classFile) {
+		ClassNode declared = new ClassNode();
+		new ClassReader(classFile).accept(declared, 0);
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		new ClassReader(classFile).accept(writer, 0);
+		ClassNode computed = new ClassNode();
+		new ClassReader(writer.toByteArray()).accept(computed, 0);
+		for (int i = 0; i < declared.methods.size(); i++) {
+			MethodNode declaredMethod = declared.methods.get(i);
+			MethodNode computedMethod = computed.methods.get(i);
+			String methodName = name + "." + declaredMethod.name + declaredMethod.desc;
+			assertTrue(declaredMethod.maxStack >= computedMethod.maxStack, "Max stack too small: " + methodName);
+			assertTrue(declaredMethod.maxLocals >= computedMethod.maxLocals, "Max locals too small: " + methodName);
+			if ((declaredMethod.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0)
+				assertDoesNotThrow(() -> new Analyzer<>(new BasicVerifier()).analyze(declared.name, declaredMethod), methodName);
+		}
+	}
+
+	@Nonnull
+	private static List<byte[]> readClassesWithoutDebug(@Nonnull Path jarPath) throws Exception {
+		List<byte[]> classes = new ArrayList<>();
+		try (ZipFile zip = new ZipFile(jarPath.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!entry.getName().endsWith(".class"))
+					continue;
+				try (InputStream in = zip.getInputStream(entry)) {
+					classes.add(filterDebug(in.readAllBytes()));
+				}
+			}
+		}
+		return classes;
+	}
+
+	@Nonnull
+	private static String disassemble(@Nonnull byte[] classFile) {
+		StringWriter out = new StringWriter();
+		new ClassReader(filterDebug(classFile)).accept(new TraceClassVisitor(null, new Textifier(), new PrintWriter(out)), 0);
+		return out.toString().lines()
+				.filter(line -> !line.trim().startsWith("MAXSTACK") && !line.trim().startsWith("MAXLOCALS"))
+				.collect(Collectors.joining("\n"));
+	}
+}
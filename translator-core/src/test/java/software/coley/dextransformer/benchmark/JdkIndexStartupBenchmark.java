@@ -0,0 +1,106 @@
+package software.coley.dextransformer.benchmark;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.coley.dextransformer.TestBase;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.cache.JdkClassIndex;
+import software.coley.dextranslator.task.Converter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cold {@code d2j} style runs, each in a new JVM, with and without a {@link JdkClassIndex}.
+ * The index is populated by a run before timing begins, so that timed runs with the index measure the warm-index case.
+ * <p>
+ * Disabled by default as it is slow, and the results only mean something on an otherwise idle machine.
+ */
+@Disabled("Benchmark, run manually")
+public class JdkIndexStartupBenchmark extends TestBase {
+	private static final String RESOURCE_PATH = "/dx-samples/068-classloader/classes.dex";
+	private static final int ROUNDS = 10;
+
+	@Test
+	void compareColdStarts(@TempDir Path temp) throws Exception {
+		Path dexPath = Paths.get(JdkIndexStartupBenchmark.class.getResource(RESOURCE_PATH).toURI());
+		Path indexDirectory = temp.resolve("jdk-index");
+		launch(dexPath, temp.resolve("populate.jar"), indexDirectory);
+
+		// Alternate between runs so that any drift in machine state affects both equally.
+		List<Long> withoutIndex = new ArrayList<>();
+		List<Long> withIndex = new ArrayList<>();
+		for (int i = 0; i < ROUNDS; i++) {
+			withoutIndex.add(launch(dexPath, temp.resolve("out-" + i + ".jar"), null));
+			withIndex.add(launch(dexPath, temp.resolve("out-indexed-" + i + ".jar"), indexDirectory));
+		}
+
+		System.out.printf("Cold runs per mode: %d%n", ROUNDS);
+		System.out.printf("%-12s %10s %10s %10s%n", "Mode", "p50 (ms)", "p99 (ms)", "max (ms)");
+		print("No index", withoutIndex);
+		print("Index", withIndex);
+	}
+
+	/**
+	 * @return Wall-clock time of the run, including JVM startup.
+	 */
+	private static long launch(@Nonnull Path dexPath, @Nonnull Path outputPath, @Nullable Path indexDirectory) throws Exception {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ColdRun.class.getName());
+		command.add(dexPath.toString());
+		command.add(outputPath.toString());
+		if (indexDirectory != null)
+			command.add(indexDirectory.toString());
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).inheritIO().start();
+		if (!process.waitFor(5, TimeUnit.MINUTES)) {
+			process.destroyForcibly();
+			throw new IllegalStateException("Run did not complete in time");
+		}
+		long elapsed = System.nanoTime() - start;
+		if (process.exitValue() != 0)
+			throw new IllegalStateException("Run failed with exit code: " + process.exitValue());
+		return elapsed;
+	}
+
+	private static void print(@Nonnull String name, @Nonnull List<Long> times) {
+		long[] sorted = times.stream().mapToLong(Long::longValue).sorted().toArray();
+		System.out.printf("%-12s %10.2f %10.2f %10.2f%n", name,
+				percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+	}
+
+	private static long percentile(@Nonnull long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	/**
+	 * Entry point of a single cold run, mirroring the {@code d2j} command.
+	 * Arguments are the input DEX file, the output JAR, and optionally the index directory.
+	 */
+	public static class ColdRun {
+		public static void main(String[] args) throws Exception {
+			Options options = new Options()
+					.setReplaceInvalidMethodBodies(true)
+					.setJdkClassIndex(args.length > 2 ? new JdkClassIndex(Paths.get(args[2])) : null)
+					.setJvmArchiveOutput(Paths.get(args[1]), true);
+			options.enableLoadStoreOptimization();
+			new Converter()
+					.setInputs(new Inputs().addDex(Paths.get(args[0])))
+					.setOptions(options)
+					.run()
+					.get();
+			System.exit(0);
+		}
+	}
+}
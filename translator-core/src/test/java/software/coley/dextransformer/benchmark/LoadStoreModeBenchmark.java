@@ -0,0 +1,105 @@
+package software.coley.dextransformer.benchmark;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.utils.ClassFilter;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import software.coley.dextransformer.TestBase;
+import software.coley.dextranslator.Inputs;
+import software.coley.dextranslator.Options;
+import software.coley.dextranslator.ir.Conversion;
+import software.coley.dextranslator.ir.LoadStoreMode;
+import software.coley.dextranslator.ir.LoadStoreSelector;
+import software.coley.dextranslator.model.ApplicationData;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compares each {@link LoadStoreMode} over the DEX files in the dx-samples corpus,
+ * with {@link LoadStoreMode#SELECTIVE} only optimizing methods of {@link #SELECTIVE_MIN_INSTRUCTIONS} or more.
+ * <p>
+ * Disabled by default as it is slow, and the results only mean something on an otherwise idle machine.
+ */
+@Disabled("Benchmark, run manually")
+public class LoadStoreModeBenchmark extends TestBase {
+	private static final int SELECTIVE_MIN_INSTRUCTIONS = 32;
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 15;
+
+	@Test
+	void compareModes() throws Exception {
+		List<Path> paths = findDexResources()
+				.map(args -> (Path) args.get()[0])
+				.sorted()
+				.collect(Collectors.toList());
+		List<ApplicationData> corpus = new ArrayList<>();
+		for (Path path : paths)
+			corpus.add(ApplicationData.from(new Inputs().addDex(path), new Options().getInternalOptions()));
+
+		LoadStoreMode[] modes = LoadStoreMode.values();
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+			for (LoadStoreMode mode : modes)
+				run(corpus, mode);
+
+		// Alternate between modes so that any drift in machine state affects all equally.
+		Map<LoadStoreMode, List<Long>> times = new EnumMap<>(LoadStoreMode.class);
+		for (int i = 0; i < ROUNDS; i++)
+			for (LoadStoreMode mode : modes)
+				times.computeIfAbsent(mode, m -> new ArrayList<>()).addAll(run(corpus, mode));
+
+		System.out.printf("Conversions per mode: %d (%d inputs x %d rounds)%n", corpus.size() * ROUNDS, corpus.size(), ROUNDS);
+		System.out.printf("%-12s %10s %10s %10s%n", "Mode", "p50 (ms)", "p99 (ms)", "max (ms)");
+		times.forEach((mode, modeTimes) -> print(mode.name(), modeTimes));
+	}
+
+	@Nonnull
+	private static List<Long> run(@Nonnull List<ApplicationData> corpus, @Nonnull LoadStoreMode mode) {
+		List<Long> times = new ArrayList<>(corpus.size());
+		for (ApplicationData data : corpus) {
+			Options options = new Options()
+					.setReplaceInvalidMethodBodies(true)
+					.setJvmOutput(new ClassFileConsumer() {
+						@Override
+						public void accept(ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+							// no-op
+						}
+
+						@Override
+						public void finished(DiagnosticsHandler handler) {
+							// no-op
+						}
+					});
+			if (mode == LoadStoreMode.ALL)
+				options.enableLoadStoreOptimization();
+			else if (mode == LoadStoreMode.SELECTIVE)
+				options.enableSelectiveLoadStoreOptimization(LoadStoreSelector.minInstructions(SELECTIVE_MIN_INSTRUCTIONS));
+			long start = System.nanoTime();
+			try {
+				Conversion.convert(data, options, ClassFilter.PASS_ALL);
+			} catch (Exception ignored) {
+				// Some inputs are known to fail, but the time spent before failing still counts.
+			}
+			times.add(System.nanoTime() - start);
+		}
+		return times;
+	}
+
+	private static void print(@Nonnull String name, @Nonnull List<Long> times) {
+		long[] sorted = times.stream().mapToLong(Long::longValue).sorted().toArray();
+		System.out.printf("%-12s %10.2f %10.2f %10.2f%n", name,
+				percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+	}
+
+	private static long percentile(@Nonnull long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}